@@ -0,0 +1,125 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor.jfr;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.green.tractor.TractorEvents;
+
+/**
+ * Emits the tractor's events to Java Flight Recorder. Found by {@link java.util.ServiceLoader}.
+ */
+public class JfrTractorEvents implements TractorEvents, FlightRecorderListener {
+    private volatile boolean recording;
+
+    public JfrTractorEvents() {
+        FlightRecorder.addListener(this); // recorderInitialized() is called at once if JFR is initialized already
+    }
+
+    @Override
+    public void recorderInitialized(final FlightRecorder recorder) {
+        updateRecording(recorder);
+    }
+
+    @Override
+    public void recordingStateChanged(final Recording changed) {
+        updateRecording(FlightRecorder.getFlightRecorder());
+    }
+
+    private void updateRecording(final FlightRecorder recorder) {
+        boolean running = false;
+        for (final Recording r : recorder.getRecordings()) {
+            if (r.getState() == RecordingState.RUNNING) {
+                running = true;
+                break;
+            }
+        }
+        recording = running;
+    }
+
+    @Override
+    public boolean isRecording() {
+        return recording;
+    }
+
+    @Override
+    public void commandExecuted(
+            final String worker,
+            final Class<?> commandClass,
+            final long executionNanos,
+            final boolean failed) {
+
+        final CommandExecutionEvent event = new CommandExecutionEvent();
+        if (event.isEnabled()) {
+            event.worker = worker;
+            event.commandClass = commandClass;
+            event.executionTime = executionNanos;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void entryBatchProcessed(final String worker, final int numberOfEntries, final long processingNanos) {
+        final EntryBatchEvent event = new EntryBatchEvent();
+        if (event.isEnabled()) {
+            event.worker = worker;
+            event.numberOfEntries = numberOfEntries;
+            event.processingTime = processingNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void workerIdle(final String worker, final long idleNanos) {
+        final WorkerIdleEvent event = new WorkerIdleEvent();
+        if (event.isEnabled()) {
+            event.worker = worker;
+            event.idleTime = idleNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void poolExhausted(final Class<?> objectClass, final long waitNanos) {
+        final PoolExhaustionEvent event = new PoolExhaustionEvent();
+        if (event.isEnabled()) {
+            event.objectClass = objectClass;
+            event.waitTime = waitNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void producerBackPressure(final Class<?> entryClass, final long waitNanos) {
+        final ProducerBackPressureEvent event = new ProducerBackPressureEvent();
+        if (event.isEnabled()) {
+            event.entryClass = entryClass;
+            event.waitTime = waitNanos;
+            event.commit();
+        }
+    }
+}
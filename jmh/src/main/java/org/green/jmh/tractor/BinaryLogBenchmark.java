@@ -0,0 +1,110 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.jmh.tractor;
+
+import org.green.tractor.BinaryLog;
+import org.green.tractor.BinaryLogWriter;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@Fork(3)
+@Measurement(iterations = 3)
+@Warmup(iterations = 3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BinaryLogBenchmark {
+    private static final int WRITER_CAPACITY = 1 << 20;
+
+    @State(Scope.Thread)
+    public static class LogSetup {
+        private Path file;
+        private BinaryLog log;
+        private BinaryLogWriter writer;
+        private int template;
+        private long sequence;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            file = Files.createTempFile("tractor", ".blog");
+            log = new BinaryLog(file);
+            template = log.template("Order {} of {} filled at {}");
+            writer = log.newWriter(WRITER_CAPACITY);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException, InterruptedException {
+            log.close();
+            Files.delete(file);
+        }
+    }
+
+    // the unpaced writer outruns the log's thread, so, the time of an operation is the one of a written record
+    // only as far as the records are written, not dropped
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Records {
+        public long written;
+        public long dropped;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            written = 0;
+            dropped = 0;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void logRecord(final LogSetup setup, final Records records) {
+        final BinaryLogWriter writer = setup.writer;
+        final long dropped = writer.droppedRecords();
+        writer.begin(setup.template)
+                .append(setup.sequence++)
+                .appendAscii("EURUSD")
+                .append(1.25)
+                .commit();
+        if (writer.droppedRecords() == dropped) {
+            records.written++;
+        } else {
+            records.dropped++;
+        }
+    }
+}
\ No newline at end of file
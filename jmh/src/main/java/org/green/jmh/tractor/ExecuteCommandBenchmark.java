@@ -91,4 +91,13 @@ public class ExecuteCommandBenchmark extends TractorBenchmark {
 
         processSetup.process.start();
     }
+
+    @Benchmark
+    @Threads(4)
+    public void fourStartCallersWithCabBackingOff(
+            final CabBackingOffBasedProcessSetup processSetup)
+            throws TractorClosedException, InterruptedException {
+
+        processSetup.process.start();
+    }
 }
\ No newline at end of file
@@ -145,4 +145,68 @@ public class SendEntryBenchmark extends TractorBenchmark {
         envelope.entry().value = 100;
         envelope.send();
     }
+
+    @Benchmark
+    @Threads(4)
+    public void fourSendersWithCabBackingOff(
+            final CabBackingOffBasedProcessSetup processSetup,
+            final EntrySenderSetup entrySetup)
+            throws TractorClosedException, InterruptedException {
+
+        if (entrySetup.entrySender == null) {
+            entrySetup.doSetup(processSetup);
+        }
+
+        final EntryEnvelope<LongEntry> envelope = entrySetup.entrySender.nextEnvelope();
+        envelope.entry().value = 100;
+        envelope.send();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void oneSenderWithLanes(
+            final LanesBasedProcessSetup processSetup,
+            final EntrySenderSetup entrySetup)
+            throws TractorClosedException, InterruptedException {
+
+        if (entrySetup.entrySender == null) {
+            entrySetup.doSetup(processSetup);
+        }
+
+        final EntryEnvelope<LongEntry> envelope = entrySetup.entrySender.nextEnvelope();
+        envelope.entry().value = 100;
+        envelope.send();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void twoSendersWithLanes(
+            final LanesBasedProcessSetup processSetup,
+            final EntrySenderSetup entrySetup)
+            throws TractorClosedException, InterruptedException {
+
+        if (entrySetup.entrySender == null) {
+            entrySetup.doSetup(processSetup);
+        }
+
+        final EntryEnvelope<LongEntry> envelope = entrySetup.entrySender.nextEnvelope();
+        envelope.entry().value = 100;
+        envelope.send();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourSendersWithLanes(
+            final LanesBasedProcessSetup processSetup,
+            final EntrySenderSetup entrySetup)
+            throws TractorClosedException, InterruptedException {
+
+        if (entrySetup.entrySender == null) {
+            entrySetup.doSetup(processSetup);
+        }
+
+        final EntryEnvelope<LongEntry> envelope = entrySetup.entrySender.nextEnvelope();
+        envelope.entry().value = 100;
+        envelope.send();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.jmh.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.green.tractor.DefaultExecutor;
+import org.green.tractor.DefaultTractor;
+import org.green.tractor.LongExecutor;
+import org.green.tractor.LongSender;
+import org.green.tractor.TractorClosedException;
+import org.green.tractor.TractorListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Fork(3)
+@Measurement(iterations = 3)
+@Warmup(iterations = 3)
+@BenchmarkMode(Mode.Throughput)
+public class SendLongBenchmark extends TractorBenchmark {
+    static class SummingExecutor extends DefaultExecutor<LongEntry, TractorListener> implements LongExecutor {
+        long sum;
+
+        SummingExecutor() {
+            super(SendLongBenchmark.class.getSimpleName() + "'s executor");
+        }
+
+        @Override
+        public void processLong(final int channel, final long value) {
+            sum += value;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LongProcessSetup {
+        DefaultTractor<LongEntry, SummingExecutor, TractorListener<LongEntry, SummingExecutor>> process;
+        final AtomicInteger channels = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void doSetup() {
+            process = new DefaultTractor<>(
+                    new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS),
+                    new SummingExecutor(),
+                    LANE_CAPACITY);
+        }
+
+        @TearDown(Level.Trial)
+        public void doTearDown() throws Exception {
+            process.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LongSenderSetup {
+        private LongSender longSender;
+
+        public void doSetup(final LongProcessSetup processSetup) {
+            longSender = processSetup.process.newLongSender(processSetup.channels.getAndIncrement());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void oneSender(final LongProcessSetup processSetup, final LongSenderSetup senderSetup)
+            throws TractorClosedException, InterruptedException {
+
+        if (senderSetup.longSender == null) {
+            senderSetup.doSetup(processSetup);
+        }
+
+        senderSetup.longSender.send(100);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void twoSenders(final LongProcessSetup processSetup, final LongSenderSetup senderSetup)
+            throws TractorClosedException, InterruptedException {
+
+        if (senderSetup.longSender == null) {
+            senderSetup.doSetup(processSetup);
+        }
+
+        senderSetup.longSender.send(100);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourSenders(final LongProcessSetup processSetup, final LongSenderSetup senderSetup)
+            throws TractorClosedException, InterruptedException {
+
+        if (senderSetup.longSender == null) {
+            senderSetup.doSetup(processSetup);
+        }
+
+        senderSetup.longSender.send(100);
+    }
+}
\ No newline at end of file
@@ -43,6 +43,7 @@ public class TractorBenchmark {
     public static final int CAB_SIZE = 1_000;
     public static final int BACKING_OFF_MAX_SPINS = 1_000;
     public static final int BACKING_OFF_MAX_YIELDS = 10_000;
+    public static final int LANE_CAPACITY = 1_024;
 
     abstract static class AbstractProcessSetup {
         Tractor<LongEntry, Executor<LongEntry>,
@@ -52,7 +53,8 @@ public class TractorBenchmark {
         @Setup(Level.Trial)
         public void doSetup() {
             process = new DefaultTractor<>(prepareCab(),
-                    new DefaultExecutor<>(ExecuteCommandBenchmark.class.getSimpleName() + "'s executor"));
+                    new DefaultExecutor<>(ExecuteCommandBenchmark.class.getSimpleName() + "'s executor"),
+                    laneCapacity());
         }
 
         @TearDown(Level.Trial)
@@ -61,6 +63,10 @@ public class TractorBenchmark {
         }
 
         protected abstract Cab<LongEntry, Future> prepareCab();
+
+        protected int laneCapacity() {
+            return 0;
+        }
     }
 
     @State(Scope.Benchmark)
@@ -86,4 +92,17 @@ public class TractorBenchmark {
             return new CabYielding<>(CAB_SIZE);
         }
     }
+
+    @State(Scope.Benchmark)
+    public static class LanesBasedProcessSetup extends AbstractProcessSetup {
+        @Override
+        protected Cab<LongEntry, Future> prepareCab() {
+            return new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS);
+        }
+
+        @Override
+        protected int laneCapacity() {
+            return LANE_CAPACITY;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,555 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the commands, the results, the executor and the tractor for the interfaces annotated
+ * with {@code org.green.tractor.TractorOperations}. See the annotation for the names of the generated classes.
+ */
+@SupportedAnnotationTypes(TractorOperationsProcessor.ANNOTATION)
+public class TractorOperationsProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "org.green.tractor.TractorOperations";
+
+    // superclasses of the generated tractor and executor, their methods cannot be operations
+    private static final String TRACTOR_CLASS = "org.green.tractor.DefaultTractor";
+    private static final String EXECUTOR_CLASS = "org.green.tractor.DefaultExecutor";
+    private static final String DISPATCHER_METHOD = "dispatch"; // generated into the executor
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (final TypeElement annotation : annotations) {
+            for (final Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                final Operations operations = parse(element);
+                if (operations != null) {
+                    try {
+                        generate(operations);
+                    } catch (final IOException e) {
+                        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                                "Cannot generate the tractor: " + e.getLocalizedMessage(), element);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private Operations parse(final Element element) {
+        final Messager messager = processingEnv.getMessager();
+
+        if (element.getKind() != ElementKind.INTERFACE) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "@TractorOperations is applicable to interfaces only",
+                    element);
+            return null;
+        }
+
+        final TypeElement type = (TypeElement) element;
+        if (!type.getTypeParameters().isEmpty() || type.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                    "@TractorOperations interface must be a top level interface without type parameters", element);
+            return null;
+        }
+
+        final Operations operations = new Operations(
+                ((PackageElement) type.getEnclosingElement()).getQualifiedName().toString(),
+                type.getSimpleName().toString());
+
+        final Set<String> tractorMethods = methods(TRACTOR_CLASS, element);
+        final Set<String> executorMethods = methods(EXECUTOR_CLASS, element);
+        if (tractorMethods == null || executorMethods == null) {
+            return null;
+        }
+        executorMethods.add(DISPATCHER_METHOD);
+
+        boolean valid = true;
+        final Set<String> names = new HashSet<>();
+        final Set<String> classNames = new HashSet<>();
+        final Set<String> constants = new HashSet<>();
+        final List<ExecutableElement> methods = new ArrayList<>();
+
+        for (final Element member : type.getEnclosedElements()) {
+            if (!isOperation(member)) {
+                continue;
+            }
+
+            final ExecutableElement method = (ExecutableElement) member;
+            final String name = method.getSimpleName().toString();
+            methods.add(method);
+
+            if (!method.getTypeParameters().isEmpty()) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Operation cannot have type parameters", method);
+                valid = false;
+                continue;
+            }
+            if (!names.add(name)) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Operations cannot be overloaded", method);
+                valid = false;
+                continue;
+            }
+            if (tractorMethods.contains(name)) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "Operation '" + name + "' clashes with a method of the tractor", method);
+                valid = false;
+            }
+            if (executorMethods.contains(name)) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "Operation '" + name + "' clashes with a method of the executor", method);
+                valid = false;
+            }
+
+            final TypeMirror returnType = method.getReturnType();
+            if (returnType.getKind() != TypeKind.VOID && !returnType.getKind().isPrimitive()) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Operation must return a primitive or void", method);
+                valid = false;
+            }
+
+            final Operation operation = new Operation(name, returnType.toString());
+            if (!classNames.add(operation.capitalizedName())) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "Operation '" + name + "' has the same command class as another operation", method);
+                valid = false;
+            }
+            if (!constants.add(operation.constant())) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "Operation '" + name + "' has the same constant " + operation.constant() +
+                                " as another operation", method);
+                valid = false;
+            }
+            for (final VariableElement parameter : method.getParameters()) {
+                if (!parameter.asType().getKind().isPrimitive()) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "Parameter of operation must be a primitive",
+                            parameter);
+                    valid = false;
+                }
+                if ("command".contentEquals(parameter.getSimpleName())) {
+                    messager.printMessage(Diagnostic.Kind.ERROR, "Parameter cannot be named 'command'", parameter);
+                    valid = false;
+                }
+                operation.parameterNames.add(parameter.getSimpleName().toString());
+                operation.parameterTypes.add(parameter.asType().toString());
+            }
+
+            operations.list.add(operation);
+        }
+
+        if (!checkInherited(type, type, methods)) {
+            valid = false;
+        }
+
+        return valid ? operations : null;
+    }
+
+    // the executor must implement the abstract methods of the superinterfaces, which aren't operations
+    private boolean checkInherited(
+            final TypeElement type,
+            final TypeElement annotated,
+            final List<ExecutableElement> operations) {
+
+        boolean valid = true;
+        for (final TypeMirror superinterface : type.getInterfaces()) {
+            final TypeElement element = (TypeElement) ((DeclaredType) superinterface).asElement();
+            for (final Element member : element.getEnclosedElements()) {
+                if (isOperation(member) && !isOverridden((ExecutableElement) member, annotated, operations)) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "Method inherited by " + annotated.getQualifiedName() +
+                                    " must be declared in it as an operation", member);
+                    valid = false;
+                }
+            }
+            if (!checkInherited(element, annotated, operations)) {
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
+    private boolean isOverridden(
+            final ExecutableElement inherited,
+            final TypeElement annotated,
+            final List<ExecutableElement> operations) {
+
+        for (int i = 0; i < operations.size(); i++) {
+            if (processingEnv.getElementUtils().overrides(operations.get(i), inherited, annotated)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOperation(final Element member) {
+        return member.getKind() == ElementKind.METHOD &&
+                !member.getModifiers().contains(Modifier.STATIC) &&
+                !member.getModifiers().contains(Modifier.DEFAULT) &&
+                !member.getModifiers().contains(Modifier.PRIVATE);
+    }
+
+    // names of the methods the generated subclass of the class inherits, including the ones of Object
+    private Set<String> methods(final String className, final Element element) {
+        final TypeElement type = processingEnv.getElementUtils().getTypeElement(className);
+        if (type == null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    className + " isn't found, org.green.tractor must be on the classpath", element);
+            return null;
+        }
+        final Set<String> names = new HashSet<>();
+        for (final Element member : processingEnv.getElementUtils().getAllMembers(type)) {
+            if (member.getKind() == ElementKind.METHOD && !member.getModifiers().contains(Modifier.PRIVATE)) {
+                names.add(member.getSimpleName().toString());
+            }
+        }
+        return names;
+    }
+
+    private void generate(final Operations operations) throws IOException {
+        generateCommand(operations);
+        for (int i = 0; i < operations.list.size(); i++) {
+            final Operation operation = operations.list.get(i);
+            if (!operation.isVoid()) {
+                generateResult(operations, operation);
+            }
+            generateOperationCommand(operations, operation);
+        }
+        generateExecutor(operations);
+        generateTractor(operations);
+    }
+
+    private void generateCommand(final Operations operations) throws IOException {
+        final StringBuilder sb = header(operations);
+        sb.append("import org.green.tractor.Command;\n");
+        sb.append("import org.green.tractor.ErrorableResult;\n\n");
+        sb.append("public abstract class ").append(operations.commandClass())
+                .append("<R extends ErrorableResult> extends Command<R> {\n");
+        for (int i = 0; i < operations.list.size(); i++) {
+            sb.append("    static final int ").append(operations.list.get(i).constant())
+                    .append(" = ").append(i).append(";\n");
+        }
+        sb.append("\n    final int operation;\n\n");
+        sb.append("    ").append(operations.commandClass()).append("(final int operation, final R result) {\n");
+        sb.append("        super(result);\n");
+        sb.append("        this.operation = operation;\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        write(operations, operations.commandClass(), sb);
+    }
+
+    private void generateResult(final Operations operations, final Operation operation) throws IOException {
+        final String resultClass = operations.resultClass(operation);
+
+        final StringBuilder sb = header(operations);
+        sb.append("import org.green.tractor.ErrorableResult;\n\n");
+        sb.append("public final class ").append(resultClass).append(" extends ErrorableResult {\n");
+        sb.append("    ").append(operation.returnType).append(" value;\n\n");
+        sb.append("    public ").append(operation.returnType).append(" value() {\n");
+        sb.append("        return value;\n");
+        sb.append("    }\n\n");
+        sb.append("    @Override\n");
+        sb.append("    public String toString() {\n");
+        sb.append("        return super.toString() + \", value=\" + value;\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        write(operations, resultClass, sb);
+    }
+
+    private void generateOperationCommand(final Operations operations, final Operation operation)
+            throws IOException {
+
+        final String commandClass = operations.commandClass(operation);
+        final String resultClass = operations.resultClass(operation);
+
+        final StringBuilder sb = header(operations);
+        if (operation.isVoid()) {
+            sb.append("import org.green.tractor.VoidResult;\n\n");
+        }
+        sb.append("public final class ").append(commandClass).append(" extends ")
+                .append(operations.commandClass()).append('<').append(resultClass).append("> {\n");
+        for (int i = 0; i < operation.parameterNames.size(); i++) {
+            sb.append("    ").append(operation.parameterTypes.get(i)).append(' ')
+                    .append(operation.parameterNames.get(i)).append(";\n");
+        }
+        if (!operation.parameterNames.isEmpty()) {
+            sb.append('\n');
+        }
+        sb.append("    public ").append(commandClass).append("() {\n");
+        sb.append("        super(").append(operation.constant()).append(", new ").append(resultClass)
+                .append("());\n");
+        sb.append("    }\n\n");
+        sb.append("    @Override\n");
+        sb.append("    public String toString() {\n");
+        sb.append("        return \"").append(operations.name).append('.').append(operation.name).append("{\"");
+        for (int i = 0; i < operation.parameterNames.size(); i++) {
+            final String parameter = operation.parameterNames.get(i);
+            sb.append(" +\n                \"").append(i == 0 ? "" : ", ").append(parameter).append("=\" + ")
+                    .append(parameter);
+        }
+        sb.append(" + '}';\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        write(operations, commandClass, sb);
+    }
+
+    private void generateExecutor(final Operations operations) throws IOException {
+        final String executorClass = operations.executorClass();
+
+        final StringBuilder sb = header(operations);
+        sb.append("import org.green.tractor.CommandHandler;\n");
+        sb.append("import org.green.tractor.DefaultExecutor;\n");
+        sb.append("import org.green.tractor.Entry;\n");
+        sb.append("import org.green.tractor.ErrorHandler;\n");
+        sb.append("import org.green.tractor.JulLoggingErrorHandler;\n");
+        sb.append("import org.green.tractor.TractorListener;\n");
+        if (operations.hasVoid()) {
+            sb.append("import org.green.tractor.VoidResult;\n");
+        }
+        sb.append("\nimport java.util.List;\n\n");
+        sb.append("/**\n");
+        sb.append(" * Executes the operations of {@link ").append(operations.name)
+                .append("} on the worker. All the operations are\n");
+        sb.append(" * dispatched by the single handler, which switches over the operation's number.\n");
+        sb.append(" */\n");
+        sb.append("public abstract class ").append(executorClass)
+                .append("<E extends Entry, L extends TractorListener>\n");
+        sb.append("        extends DefaultExecutor<E, L> implements ").append(operations.name).append(" {\n\n");
+        sb.append("    protected ").append(executorClass).append("(final String name) {\n");
+        sb.append("        this(name, new JulLoggingErrorHandler(").append(executorClass).append(".class));\n");
+        sb.append("    }\n\n");
+        sb.append("    @SuppressWarnings(\"unchecked\")\n");
+        sb.append("    protected ").append(executorClass)
+                .append("(final String name, final ErrorHandler errorHandler) {\n");
+        sb.append("        super(name, errorHandler);\n\n");
+        sb.append("        final CommandHandler dispatcher = (CommandHandler<")
+                .append(operations.commandClass()).append("<?>, L>) this::dispatch;\n");
+        for (int i = 0; i < operations.list.size(); i++) {
+            sb.append("        registerCommandHandler(").append(operations.commandClass(operations.list.get(i)))
+                    .append(".class, dispatcher);\n");
+        }
+        sb.append("    }\n\n");
+        sb.append("    private void dispatch(final ").append(operations.commandClass())
+                .append("<?> command, final List<L> listeners) {\n");
+        sb.append("        switch (command.operation) {\n");
+        for (int i = 0; i < operations.list.size(); i++) {
+            final Operation operation = operations.list.get(i);
+            final String commandClass = operations.commandClass(operation);
+            final String resultClass = operations.resultClass(operation);
+
+            sb.append("            case ").append(operations.commandClass()).append('.')
+                    .append(operation.constant()).append(": {\n");
+            sb.append("                final ").append(commandClass).append(" c = (").append(commandClass)
+                    .append(") command;\n");
+            sb.append("                final ").append(resultClass).append(" r = c.result();\n");
+            sb.append("                applyError(r, null);\n");
+            sb.append("                try {\n");
+            sb.append("                    ").append(operation.isVoid() ? "" : "r.value = ")
+                    .append(operation.name).append('(');
+            for (int j = 0; j < operation.parameterNames.size(); j++) {
+                sb.append(j == 0 ? "" : ", ").append("c.").append(operation.parameterNames.get(j));
+            }
+            sb.append(");\n");
+            sb.append("                } catch (final Exception e) {\n");
+            sb.append("                    applyError(r, e);\n");
+            sb.append("                }\n");
+            sb.append("                break;\n");
+            sb.append("            }\n");
+        }
+        sb.append("            default:\n");
+        sb.append("                doCustom(command, listeners);\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        write(operations, executorClass, sb);
+    }
+
+    private void generateTractor(final Operations operations) throws IOException {
+        final String tractorClass = operations.tractorClass();
+
+        final StringBuilder sb = header(operations);
+        sb.append("import org.green.cab.Cab;\n");
+        sb.append("import org.green.tractor.DefaultTractor;\n");
+        sb.append("import org.green.tractor.Entry;\n");
+        sb.append("import org.green.tractor.Future;\n");
+        sb.append("import org.green.tractor.TractorClosedException;\n");
+        sb.append("import org.green.tractor.TractorListener;\n");
+        if (operations.hasVoid()) {
+            sb.append("import org.green.tractor.VoidResult;\n");
+        }
+        sb.append('\n');
+        sb.append("/**\n");
+        sb.append(" * Tractor, which executes the operations of {@link ").append(operations.name)
+                .append("} on its worker.\n");
+        sb.append(" * The commands are pooled and created without reflection.\n");
+        sb.append(" */\n");
+        sb.append("public class ").append(tractorClass).append('\n');
+        sb.append("        <E extends Entry, X extends ").append(operations.executorClass())
+                .append("<E, L>, L extends TractorListener<E, X>>\n");
+        sb.append("        extends DefaultTractor<E, X, L> {\n\n");
+        sb.append("    public ").append(tractorClass).append("(final Cab<E, Future> cab, final X executor) {\n");
+        sb.append("        super(cab, executor);\n");
+        sb.append("    }\n");
+        for (int i = 0; i < operations.list.size(); i++) {
+            final Operation operation = operations.list.get(i);
+            final String commandClass = operations.commandClass(operation);
+
+            sb.append("\n    public final Future<").append(operations.resultClass(operation)).append("> ")
+                    .append(operation.name).append('(');
+            for (int j = 0; j < operation.parameterNames.size(); j++) {
+                sb.append(j == 0 ? "" : ", ").append("final ").append(operation.parameterTypes.get(j)).append(' ')
+                        .append(operation.parameterNames.get(j));
+            }
+            sb.append(")\n");
+            sb.append("            throws TractorClosedException, InterruptedException {\n\n");
+            sb.append("        final ").append(commandClass).append(" command = prepareCommand(")
+                    .append(commandClass).append(".class, ").append(commandClass).append("::new);\n");
+            for (int j = 0; j < operation.parameterNames.size(); j++) {
+                final String parameter = operation.parameterNames.get(j);
+                sb.append("        command.").append(parameter).append(" = ").append(parameter).append(";\n");
+            }
+            sb.append("        return executeCommand(command);\n");
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+        write(operations, tractorClass, sb);
+    }
+
+    private static StringBuilder header(final Operations operations) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("// Generated by ").append(TractorOperationsProcessor.class.getName())
+                .append(" from ").append(operations.name).append(", do not edit\n");
+        if (!operations.packageName.isEmpty()) {
+            sb.append("package ").append(operations.packageName).append(";\n");
+        }
+        sb.append('\n');
+        return sb;
+    }
+
+    private void write(final Operations operations, final String simpleName, final StringBuilder source)
+            throws IOException {
+
+        final String name = operations.packageName.isEmpty() ?
+                simpleName : operations.packageName + '.' + simpleName;
+
+        final JavaFileObject file = processingEnv.getFiler().createSourceFile(name);
+        try (Writer writer = file.openWriter()) {
+            writer.append(source);
+        }
+    }
+
+    private static final class Operations {
+        final String packageName;
+        final String name;
+        final List<Operation> list = new ArrayList<>();
+
+        Operations(final String packageName, final String name) {
+            this.packageName = packageName;
+            this.name = name;
+        }
+
+        String commandClass() {
+            return name + "Command";
+        }
+
+        String commandClass(final Operation operation) {
+            return name + operation.capitalizedName() + "Command";
+        }
+
+        String resultClass(final Operation operation) {
+            return operation.isVoid() ? "VoidResult" : name + operation.capitalizedName() + "Result";
+        }
+
+        String executorClass() {
+            return name + "Executor";
+        }
+
+        String tractorClass() {
+            return name + "Tractor";
+        }
+
+        boolean hasVoid() {
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i).isVoid()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Operation {
+        final String name;
+        final String returnType;
+        final List<String> parameterNames = new ArrayList<>();
+        final List<String> parameterTypes = new ArrayList<>();
+
+        Operation(final String name, final String returnType) {
+            this.name = name;
+            this.returnType = returnType;
+        }
+
+        boolean isVoid() {
+            return "void".equals(returnType);
+        }
+
+        String capitalizedName() {
+            return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+
+        String constant() {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < name.length(); i++) {
+                final char c = name.charAt(i);
+                if (Character.isUpperCase(c) && i > 0) {
+                    sb.append('_');
+                }
+                sb.append(Character.toUpperCase(c));
+            }
+            return sb.toString();
+        }
+    }
+}
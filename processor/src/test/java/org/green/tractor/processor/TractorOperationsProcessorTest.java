@@ -0,0 +1,209 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor.processor;
+
+import org.junit.jupiter.api.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class TractorOperationsProcessorTest {
+    @Test
+    public void testValidOperationsAreGenerated() throws Exception {
+        final Compilation compilation = compile(
+                "package calc;\n" +
+                "public interface Base {\n" +
+                "    long add(long a, long b);\n" +
+                "    default long twice(final long a) {\n" +
+                "        return add(a, a);\n" +
+                "    }\n" +
+                "}\n",
+                "package calc;\n" +
+                "@org.green.tractor.TractorOperations\n" +
+                "public interface Calc extends Base {\n" +
+                "    long add(long a, long b);\n" +
+                "    void reset();\n" +
+                "    boolean isZero(int scale);\n" +
+                "    static Calc none() {\n" +
+                "        return null;\n" +
+                "    }\n" +
+                "}\n");
+
+        assertEquals(Collections.emptyList(), compilation.errors);
+        for (final String name : Arrays.asList("CalcCommand", "CalcAddCommand", "CalcAddResult",
+                "CalcResetCommand", "CalcIsZeroCommand", "CalcIsZeroResult", "CalcExecutor", "CalcTractor")) {
+            assertTrue(Files.exists(compilation.generated.resolve("calc").resolve(name + ".java")), name);
+        }
+        assertTrue(new String(Files.readAllBytes(compilation.generated.resolve("calc/CalcCommand.java")), "UTF-8")
+                .contains("static final int IS_ZERO = 2;"));
+    }
+
+    @Test
+    public void testOperationCannotClashWithTractor() throws Exception {
+        for (final String name : Arrays.asList(
+                "start", "stop", "close", "metrics", "addListener", "removeListener", "runOnWorker", "register",
+                "newLongSender", "cacheQueries", "hashCode")) {
+            assertErrors(operations("void " + name + "();"), "clashes with a method of the tractor");
+        }
+    }
+
+    @Test
+    public void testOperationCannotClashWithExecutor() throws Exception {
+        for (final String name : Arrays.asList("name", "processEntry", "executeCommand")) {
+            assertErrors(operations("void " + name + "();"), "clashes with a method of the executor");
+        }
+    }
+
+    @Test
+    public void testOperationsCannotShareConstant() throws Exception {
+        assertErrors(operations("void fooBar();", "void foo_bar();"), "has the same constant FOO_BAR");
+    }
+
+    @Test
+    public void testOperationsCannotShareCommandClass() throws Exception {
+        assertErrors(operations("void foo();", "void Foo();"), "has the same command class");
+    }
+
+    @Test
+    public void testOperationCannotBeInheritedOnly() throws Exception {
+        final Compilation compilation = compile(
+                "package calc;\n" +
+                "public interface Base {\n" +
+                "    long add(long a, long b);\n" +
+                "}\n",
+                "package calc;\n" +
+                "@org.green.tractor.TractorOperations\n" +
+                "public interface Calc extends Base {\n" +
+                "    long add(int a);\n" +
+                "}\n");
+
+        assertEquals(1, compilation.errors.size(), compilation.errors.toString());
+        assertTrue(compilation.errors.get(0).contains("must be declared in it as an operation"),
+                compilation.errors.get(0));
+    }
+
+    @Test
+    public void testOperationsMustBePrimitive() throws Exception {
+        assertErrors(operations("String label(int id);"), "must return a primitive or void");
+        assertErrors(operations("void set(String value);"), "must be a primitive");
+        assertErrors(operations("void set(int value);", "void set(long value);"), "cannot be overloaded");
+    }
+
+    private static String operations(final String... operations) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("package calc;\n");
+        sb.append("@org.green.tractor.TractorOperations\n");
+        sb.append("public interface Calc {\n");
+        for (final String operation : operations) {
+            sb.append("    ").append(operation).append('\n');
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static void assertErrors(final String source, final String message) throws IOException {
+        final Compilation compilation = compile(source);
+        for (final String error : compilation.errors) {
+            if (error.contains(message)) {
+                return;
+            }
+        }
+        fail("No error '" + message + "' for " + source + compilation.errors);
+    }
+
+    // the generated sources are compiled against the core on the class path of the test
+    private static Compilation compile(final String... sources) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final Path generated = Files.createTempDirectory("generated");
+        final Path classes = Files.createTempDirectory("classes");
+
+        final List<JavaFileObject> units = new ArrayList<>();
+        for (int i = 0; i < sources.length; i++) {
+            units.add(new Source("calc/" + interfaceName(sources[i]), sources[i]));
+        }
+
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                            "-s", generated.toString(), "-d", classes.toString()), null, units);
+            task.setProcessors(Collections.singletonList(new TractorOperationsProcessor()));
+            task.call();
+        }
+
+        final List<String> errors = new ArrayList<>();
+        for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return new Compilation(generated, errors);
+    }
+
+    private static String interfaceName(final String source) {
+        final int start = source.indexOf("interface ") + "interface ".length();
+        return source.substring(start, source.indexOf(' ', start));
+    }
+
+    private static final class Compilation {
+        final Path generated;
+        final List<String> errors;
+
+        Compilation(final Path generated, final List<String> errors) {
+            this.generated = generated;
+            this.errors = errors;
+        }
+    }
+
+    private static final class Source extends SimpleJavaFileObject {
+        private final String code;
+
+        Source(final String path, final String code) {
+            super(URI.create("string:///" + path + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+}
\ No newline at end of file
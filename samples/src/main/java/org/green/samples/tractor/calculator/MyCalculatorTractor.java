@@ -0,0 +1,56 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.samples.tractor.calculator;
+
+import org.green.cab.CabBlocking;
+import org.green.tractor.Entry;
+
+public class MyCalculatorTractor extends CalculatorTractor<Entry, MyCalculatorExecutor, MyCalculatorListener> {
+    public MyCalculatorTractor(final String name) {
+        super(new CabBlocking<>(100), new MyCalculatorExecutor(name));
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final MyCalculatorTractor tractor = new MyCalculatorTractor("My calculator");
+
+        tractor.start().sync();
+
+        System.out.println("Average before adding: " + tractor.average().sync());
+
+        for (int i = 1; i <= 10; i++) {
+            tractor.add(i).sync();
+        }
+
+        System.out.println("Total=" + tractor.total().sync().value());
+        System.out.println("Average=" + tractor.average().sync().value());
+
+        tractor.reset().sync();
+
+        System.out.println("Total after reset=" + tractor.total().sync().value());
+
+        tractor.stop().sync();
+
+        tractor.close();
+    }
+}
@@ -31,6 +31,9 @@ import java.util.List;
 public class MyExecutor extends DefaultExecutor<MyEntry, MyTractorListener> {
     public MyExecutor(final String name) {
         super(name);
+
+        registerCommandHandler(MySum.class, this::sum);
+        registerCommandHandler(MyMultiply.class, this::multiply);
     }
 
     @Override
@@ -48,34 +51,32 @@ public class MyExecutor extends DefaultExecutor<MyEntry, MyTractorListener> {
         System.out.println("My Executor: Stop");
     }
 
-    @Override
-    protected void doCustom(final Command command, final List<MyTractorListener> listeners) {
-        System.out.println("My Executor: " + command);
+    private void sum(final MySum sum, final List<MyTractorListener> listeners) {
+        System.out.println("My Executor: " + sum);
 
-        if (command instanceof MySum) {
-            final MySum sum = (MySum) command;
-            final MyResult sumResult = sum.result();
+        final MyResult sumResult = sum.result();
 
-            sumResult.setValue(sum.a() + sum.b());
+        sumResult.setValue(sum.a() + sum.b());
 
-            for (int i = 0; i < listeners.size(); i++) {
-                listeners.get(i).onSum(this, sumResult);
-            }
-            return;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onSum(this, sumResult);
         }
+    }
 
-        if (command instanceof MyMultiply) {
-            final MyMultiply mul = (MyMultiply) command;
-            final MyResult mulResult = mul.result();
+    private void multiply(final MyMultiply mul, final List<MyTractorListener> listeners) {
+        System.out.println("My Executor: " + mul);
 
-            mulResult.setValue(mul.a() * mul.b());
+        final MyResult mulResult = mul.result();
 
-            for (int i = 0; i < listeners.size(); i++) {
-                listeners.get(i).onMultiply(this, mulResult);
-            }
-            return;
+        mulResult.setValue(mul.a() * mul.b());
+
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onMultiply(this, mulResult);
         }
+    }
 
+    @Override
+    protected void doCustom(final Command command, final List<MyTractorListener> listeners) {
         throw new UnsupportedOperationException("Unknown command: " + command);
     }
 }
\ No newline at end of file
@@ -26,14 +26,69 @@ package org.green.tractor;
 import org.green.cab.Cab;
 import org.green.cab.ConsumerInterruptedException;
 
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 public abstract class AbstractTractor
         <E extends Entry, X extends Executor<E>, L extends TractorListener<E, X>>
         implements Tractor<E, X, L> {
 
     private static final int SIMULTANEOUS_COMMAND_EXECUTIONS_PER_THREAD = 2;
+    private static final int ENTRIES_PER_SENDER = 2;
+    private static final int ENTRIES_RELEASE_BATCH_SIZE = 64;
+    private static final int INITIAL_NUMBER_OF_ENTRY_POOLS = 4;
+    private static final int ENTRIES_PER_LANE_TURN = 16;
+    private static final int ENTRIES_PER_BATCH = 16; // the released entries are published at least this often
+    private static final int BUSY_TURNS_PER_SELECT = 16; // the ready channels are checked at least this often
+    private static final long LANE_FULL_PARK_NANOS = 1;
+    private static final long COMMAND_QUEUE_FULL_PARK_NANOS = 1;
+    private static final int COALESCED_COMMANDS_SLOTS = 64;
+    private static final int COALESCED_COMMANDS_BATCH_LIMIT = 256;
+
+    // maximum number of the commands in flight, must be a power of two
+    private static final int COMMAND_QUEUE_CAPACITY = Integer.getInteger("org.green.tractor.commands.capacity", 1024);
+
+    // two System.nanoTime() calls per processed item are too expensive to be done by default
+    private static final boolean MEASURE_WORKER_TIME = Boolean.getBoolean("org.green.tractor.metrics.worker_time");
+    private static final boolean RECORD_LATENCIES = Boolean.getBoolean("org.green.tractor.metrics.latencies");
+    static final boolean WATCH_WORKER = Boolean.getBoolean("org.green.tractor.watchdog");
+
+    // the load shedding drops the entries, which wait in the ring longer than the target age for the interval,
+    // it's on only if the org.green.tractor.shedding.target_age_us system property is set
+    private static final long SHEDDING_TARGET_AGE_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Long.getLong("org.green.tractor.shedding.target_age_us", 0));
+    private static final long SHEDDING_INTERVAL_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("org.green.tractor.shedding.interval_ms", 100));
+
+    private static final CommandExpiredException COMMAND_EXPIRED = new CommandExpiredException();
+
+    // wakes up the worker waiting for entries in the lanes, never processed
+    private static final Entry LANES_DOORBELL = new Entry() {
+    };
+
+    private static final TractorEvents EVENTS = TractorEvents.current();
+
+    private static final int ENTRIES_PROCESSED = 0;
+    private static final int ENTRY_ERRORS = 1;
+    private static final int COMMANDS_EXECUTED = 2;
+    private static final int COMMAND_ERRORS = 3;
+    private static final int WORKER_BUSY_NANOS = 4;
+    private static final int WORKER_IDLE_NANOS = 5;
+    private static final int ENTRIES_EXPIRED = 6;
+    private static final int COMMANDS_EXPIRED = 7;
+    private static final int COMMANDS_COALESCED = 8;
+    private static final int NUMBER_OF_WORKER_COUNTERS = 9;
 
     private final ThreadLocal<IdentityHashMap<Class<? extends Command>, MbsrConsatantObjectPool<? extends Command>>>
             commandExecutionsPools = ThreadLocal.withInitial(() -> new IdentityHashMap<>());
@@ -45,12 +100,53 @@ public abstract class AbstractTractor
         }
     };
 
+    // all the senders of the same class of entries share one pool, which is sized to the ring,
+    // the worker's release batch and a small reserve per sender, so, borrowing never waits forever
+    private final IdentityHashMap<Class<? extends Entry>, MbsrGrowingObjectPool<? extends Entry>>
+            entryPools = new IdentityHashMap<>(); // guarded by this
+    private final List<EntrySenderImpl<?>> entrySenders = new ArrayList<>(); // guarded by this
+    private final List<LongSenderImpl> longSenders = new ArrayList<>(); // guarded by this
+    private long entriesSentByRetiredSenders; // guarded by this
+    private long laneFullWaitsOfRetiredSenders; // guarded by this
+    // entries the pools have grown by for the retired senders, which are reused by the next senders
+    private final IdentityHashMap<Class<? extends Entry>, Integer> retiredReserves =
+            new IdentityHashMap<>(); // guarded by this
+    // entries borrowed by the retired senders, but never sent, the worker returns them to their pools
+    private final ConcurrentLinkedQueue<E> unsentEntries = new ConcurrentLinkedQueue<>();
+    private final List<MbsrConsatantObjectPool<?>> commandPools = new ArrayList<>(); // guarded by this
+
+    private volatile QueryCache<?>[] queryCaches = new QueryCache<?>[0]; // indexed by the type id, guarded by this
+    // on write
+
     private final Cab<E, Future> cab;
     private final Executor<E> executor;
+    private final LongExecutor longExecutor; // null if the executor doesn't process primitive values
+    private final EntryLanes entryLanes; // null if all the entries are sent through the cab
+    private final Selector selector; // null if the worker doesn't wait for the channels
+    private final CommandQueue commandQueue = new CommandQueue(COMMAND_QUEUE_CAPACITY);
 
     protected final ErrorHandler exceptionHandler;
 
     private final Worker worker;
+    private final WorkerProgress workerProgress;
+    private final SingleWriterCounters workerCounters = new SingleWriterCounters(NUMBER_OF_WORKER_COUNTERS);
+
+    // recorded by the worker's thread only, null if the latencies aren't recorded
+    private final LatencyHistogram entryStartLatencies = RECORD_LATENCIES ? new LatencyHistogram() : null;
+    private final LatencyHistogram entryEndLatencies = RECORD_LATENCIES ? new LatencyHistogram() : null;
+    private final LatencyHistogram commandLatencies = RECORD_LATENCIES ? new LatencyHistogram() : null;
+
+    // pools with released, but not yet published entries, accessed by the worker's thread only
+    private MbsrGrowingObjectPool[] entryPoolsToFlush = new MbsrGrowingObjectPool[INITIAL_NUMBER_OF_ENTRY_POOLS];
+    private int numberOfEntryPoolsToFlush;
+
+    // entries of the upstream stages' pools released by this worker, accessed by the worker's thread only
+    private final ForeignReleases foreignReleases = new ForeignReleases(ENTRIES_RELEASE_BATCH_SIZE);
+
+    private volatile AbstractTractor<E, ?, ?> downstream; // set by TractorPipeline before entries are sent
+    private boolean hasUpstream; // guarded by this
+    private int downstreamCapacity; // number of entries the downstream stages can hold, guarded by this
+    private final SingleWriterCounters forwardedCounters = new SingleWriterCounters(1); // written by the upstream
 
     private boolean closing; // guarded by this
     private volatile boolean closed;
@@ -63,18 +159,155 @@ public abstract class AbstractTractor
             final Cab<E, Future> cab,
             final Executor<E> executor,
             final ErrorHandler exceptionHandler) {
+        this(cab, executor, exceptionHandler, 0);
+    }
+
+    /**
+     * @param cab the ring of the commands and, if there are no lanes, of the entries
+     * @param executor executor of the entries and the commands
+     * @param exceptionHandler handler of the errors of the worker
+     * @param laneCapacity if positive, each entry sender gets its own lane of this capacity, which must be
+     *                     a power of two, so, the senders don't contend with each other; if 0, all the entries
+     *                     are sent through the cab
+     */
+    protected AbstractTractor(
+            final Cab<E, Future> cab,
+            final Executor<E> executor,
+            final ErrorHandler exceptionHandler,
+            final int laneCapacity) {
+        this(cab, executor, exceptionHandler, laneCapacity, null);
+    }
+
+    /**
+     * @param cab the ring of the commands and of the forwarded entries
+     * @param executor executor of the entries and the commands
+     * @param exceptionHandler handler of the errors of the worker
+     * @param laneCapacity capacity of the lane of each entry sender, must be a positive power of two
+     * @param selector if not null, the worker waits in the selector instead of the cab, handles the readiness
+     *                 of the channels registered with {@link #register(SelectableChannel, int, ChannelHandler)}
+     *                 along with the entries and the commands, and closes the selector at the end
+     */
+    protected AbstractTractor(
+            final Cab<E, Future> cab,
+            final Executor<E> executor,
+            final ErrorHandler exceptionHandler,
+            final int laneCapacity,
+            final Selector selector) {
+
+        if (selector != null && laneCapacity == 0) {
+            throw new IllegalArgumentException("The worker waiting in the selector requires the entry lanes");
+        }
 
         this.cab = cab;
         this.executor = executor;
+        this.longExecutor = executor instanceof LongExecutor ? (LongExecutor) executor : null;
         this.exceptionHandler = exceptionHandler;
+        this.entryLanes = laneCapacity == 0 ? null : new EntryLanes(laneCapacity);
+        this.selector = selector;
 
         worker = new Worker();
+        workerProgress = new WorkerProgress(worker);
         worker.start();
     }
 
     @Override
     public final <EE extends E> EntrySender<EE> newEntrySender(final Class<EE> classOfEntry) {
-        return new EntrySenderImpl(classOfEntry);
+        return newEntrySender(classOfEntry, 1);
+    }
+
+    /**
+     * The same as {@link #newEntrySender(Class)}, but if the tractor has lanes, the worker takes up to
+     * weight times more entries from the sender's lane in one turn than from the lane of a sender of weight 1.
+     * Without lanes the weight is ignored.
+     * @param classOfEntry class of the entries
+     * @param weight positive weight of the sender
+     * @param <EE> type of the entries
+     * @return the sender, which can be used by the calling thread only
+     */
+    public final <EE extends E> EntrySender<EE> newEntrySender(final Class<EE> classOfEntry, final int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        }
+        retireAbandonedSenders();
+
+        final EntrySenderImpl<EE> sender;
+        if (entryLanes == null) {
+            sender = new EntrySenderImpl<>(classOfEntry, entryPool(classOfEntry, ENTRIES_PER_SENDER), null,
+                    ENTRIES_PER_SENDER);
+        } else {
+            final int reserve = ENTRIES_PER_SENDER + entryLanes.laneCapacity();
+            sender = new EntrySenderImpl<>(classOfEntry, entryPool(classOfEntry, reserve),
+                    entryLanes.newLane(weight * ENTRIES_PER_LANE_TURN), reserve);
+        }
+        synchronized (this) {
+            entrySenders.add(sender);
+        }
+        return sender;
+    }
+
+    /**
+     * Creates a sender of primitive values, which are passed to {@link LongExecutor#processLong(int, long)}
+     * of the executor. The values go through the sender's own lane of the lanes' capacity.
+     * @param channel id of the channel passed to the executor with the values
+     * @return the sender, which can be used by the calling thread only
+     */
+    public final LongSender newLongSender(final int channel) {
+        if (longExecutor == null) {
+            throw new IllegalStateException("The executor doesn't implement " + LongExecutor.class.getName());
+        }
+        if (entryLanes == null) {
+            throw new IllegalStateException("The primitive values require the entry lanes");
+        }
+        retireAbandonedSenders();
+
+        final LongSenderImpl sender = new LongSenderImpl(entryLanes.newLongLane(ENTRIES_PER_LANE_TURN, channel));
+        synchronized (this) {
+            longSenders.add(sender);
+        }
+        return sender;
+    }
+
+    public final TractorMetrics metrics() {
+        long entriesSent = 0;
+        long laneFullWaits = 0;
+        long entryPoolsSize = 0;
+        long entryPoolExhaustions = 0;
+        long commandPoolExhaustions = 0;
+
+        synchronized (this) {
+            for (int i = 0; i < entrySenders.size(); i++) {
+                entriesSent += entrySenders.get(i).sent();
+                laneFullWaits += entrySenders.get(i).laneFullWaits();
+            }
+            entriesSent += entriesSentByRetiredSenders;
+            laneFullWaits += laneFullWaitsOfRetiredSenders;
+            entriesSent += forwardedCounters.get(0);
+            for (final MbsrGrowingObjectPool<? extends Entry> pool : entryPools.values()) {
+                entryPoolsSize += pool.size();
+                entryPoolExhaustions += pool.exhaustions();
+            }
+            for (int i = 0; i < commandPools.size(); i++) {
+                commandPoolExhaustions += commandPools.get(i).exhaustions();
+            }
+        }
+
+        return new TractorMetrics(
+                executor.name(),
+                entryLanes == null ? cab.bufferSize() : cab.bufferSize() + entryLanes.capacity(),
+                entriesSent,
+                workerCounters.get(ENTRIES_PROCESSED),
+                workerCounters.get(ENTRY_ERRORS),
+                workerCounters.get(ENTRIES_EXPIRED),
+                workerCounters.get(COMMANDS_EXECUTED),
+                workerCounters.get(COMMAND_ERRORS),
+                workerCounters.get(COMMANDS_EXPIRED),
+                workerCounters.get(COMMANDS_COALESCED),
+                entryPoolsSize,
+                entryPoolExhaustions,
+                commandPoolExhaustions,
+                laneFullWaits,
+                workerCounters.get(WORKER_BUSY_NANOS),
+                workerCounters.get(WORKER_IDLE_NANOS));
     }
 
     @Override
@@ -90,74 +323,403 @@ public abstract class AbstractTractor
         worker.join();
     }
 
+    /**
+     * Copies latencies from {@link EntryEnvelope#send()} to the start of {@link Executor#processEntry(Entry)}.
+     * The latencies are recorded only if the org.green.tractor.metrics.latencies system property is set.
+     * @param into histogram to copy the latencies into
+     */
+    public final void entryStartLatencies(final LatencyHistogram into) {
+        copyLatencies(entryStartLatencies, into);
+    }
+
+    /**
+     * Copies latencies from {@link EntryEnvelope#send()} to the end of {@link Executor#processEntry(Entry)}.
+     * The latencies are recorded only if the org.green.tractor.metrics.latencies system property is set.
+     * @param into histogram to copy the latencies into
+     */
+    public final void entryEndLatencies(final LatencyHistogram into) {
+        copyLatencies(entryEndLatencies, into);
+    }
+
+    /**
+     * Copies latencies from {@link #executeCommand(Command)} to the moment the command's result is available.
+     * The latencies are recorded only if the org.green.tractor.metrics.latencies system property is set.
+     * @param into histogram to copy the latencies into
+     */
+    public final void commandLatencies(final LatencyHistogram into) {
+        copyLatencies(commandLatencies, into);
+    }
+
+    private static void copyLatencies(final LatencyHistogram latencies, final LatencyHistogram into) {
+        if (latencies != null) {
+            into.copyFrom(latencies);
+        } else {
+            into.reset();
+        }
+    }
+
+    final WorkerProgress workerProgress() {
+        return workerProgress;
+    }
+
+    // the pool grows by the reserve of the new sender, which includes the capacity of its lane, if any,
+    // less the entries reserved for the retired senders
+    @SuppressWarnings("unchecked")
+    private synchronized <EE extends E> MbsrGrowingObjectPool<EE> entryPool(
+            final Class<EE> classOfEntry,
+            final int reserve) {
+        MbsrGrowingObjectPool<EE> pool = (MbsrGrowingObjectPool<EE>) entryPools.get(classOfEntry);
+        if (pool == null) {
+            pool = MbsrGrowingObjectPool.constructorBasedPool(classOfEntry,
+                    cab.bufferSize() + ENTRIES_RELEASE_BATCH_SIZE + downstreamCapacity, ENTRIES_RELEASE_BATCH_SIZE);
+            pool.releaser = this;
+            entryPools.put(classOfEntry, pool);
+        }
+        final Integer retired = retiredReserves.get(classOfEntry);
+        final int reused = retired == null ? 0 : Math.min(retired, reserve);
+        if (reused != 0) {
+            retiredReserves.put(classOfEntry, retired - reused);
+        }
+        pool.grow(reserve - reused);
+        return pool;
+    }
+
+    // the senders of the terminated threads can never be closed by their threads
+    private synchronized void retireAbandonedSenders() {
+        for (int i = entrySenders.size() - 1; i >= 0; i--) {
+            if (!entrySenders.get(i).creator.isAlive()) {
+                entrySenders.get(i).retire();
+            }
+        }
+        for (int i = longSenders.size() - 1; i >= 0; i--) {
+            if (!longSenders.get(i).creator.isAlive()) {
+                longSenders.get(i).retire();
+            }
+        }
+    }
+
+    /**
+     * Makes the worker forward the processed entries to the next tractor instead of releasing them.
+     * The entries' pools grow by the number of entries the next tractor and its downstream stages can hold.
+     * @param next the next stage, must be linked to its own next stage before
+     */
+    final void forwardTo(final AbstractTractor<E, ?, ?> next) {
+        final int capacity = next.linkUpstream();
+        synchronized (this) {
+            if (downstream != null) {
+                throw new IllegalStateException(executor.name() + " already forwards to " +
+                        downstream.executor.name());
+            }
+            downstreamCapacity = capacity;
+            for (final MbsrGrowingObjectPool<? extends Entry> pool : entryPools.values()) {
+                pool.grow(capacity);
+            }
+            downstream = next;
+        }
+    }
+
+    private synchronized int linkUpstream() {
+        if (hasUpstream) {
+            throw new IllegalStateException(executor.name() + " already has an upstream");
+        }
+        hasUpstream = true;
+        return cab.bufferSize() + ENTRIES_RELEASE_BATCH_SIZE + downstreamCapacity;
+    }
+
     protected final <C extends Command> C prepareCommand(final Class<C> ofClass) {
+        return prepareCommand(ofClass, null);
+    }
+
+    /**
+     * The same as {@link #prepareCommand(Class)}, but the commands are created with the factory
+     * instead of the reflective call of the default constructor.
+     * @param ofClass class of the command
+     * @param factory factory of the commands of the class or null to use the default constructor
+     * @param <C> type of the command
+     * @return the command borrowed from the calling thread's pool
+     */
+    protected final <C extends Command> C prepareCommand(final Class<C> ofClass, final Supplier<C> factory) {
         final IdentityHashMap<Class<? extends Command>, MbsrConsatantObjectPool<? extends Command>> pools
                 = commandExecutionsPools.get();
 
         MbsrConsatantObjectPool<C> pool = (MbsrConsatantObjectPool<C>) pools.get(ofClass);
         if (pool == null) {
-            pool = MbsrConsatantObjectPool.constructorBasedPool(ofClass, SIMULTANEOUS_COMMAND_EXECUTIONS_PER_THREAD);
+            pool = factory == null ?
+                    MbsrConsatantObjectPool.constructorBasedPool(ofClass, SIMULTANEOUS_COMMAND_EXECUTIONS_PER_THREAD) :
+                    new MbsrConsatantObjectPool<>(SIMULTANEOUS_COMMAND_EXECUTIONS_PER_THREAD, factory);
             pools.put(ofClass, pool);
+            synchronized (this) {
+                commandPools.add(pool);
+            }
         }
         final C result = pool.borrow();
-        result.set(cab, closedMutex);
+        result.set(closedMutex);
         return result;
     }
 
+    /**
+     * Makes the tractor answer the queries of the cache's class from the cache, if possible, without the worker,
+     * and put the results of the executed queries into the cache. A query answered from the cache sees
+     * the changes of the commands completed before, but not of the commands sent and not completed yet.
+     * @param cache cache of the queries
+     */
+    protected final synchronized void cacheQueries(final QueryCache<?> cache) {
+        final QueryCache<?>[] current = queryCaches;
+        final int typeId = cache.typeId();
+        final QueryCache<?>[] updated = new QueryCache<?>[Math.max(current.length, typeId + 1)];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[typeId] = cache;
+        queryCaches = updated; // volatile write publishes the cache
+    }
+
+    /**
+     * Registers the channel with the worker's selector. Must be called on the worker, for example, in
+     * a task run with a {@link RunOnWorker} command, what keeps the registration from waiting for the selection.
+     * @param channel non-blocking channel
+     * @param ops the operations the handler is interested in
+     * @param handler handler of the readiness, attached to the key
+     * @return the key of the channel
+     */
+    public final SelectionKey register(final SelectableChannel channel, final int ops, final ChannelHandler handler)
+            throws ClosedChannelException {
+        if (selector == null) {
+            throw new IllegalStateException("The tractor has no selector");
+        }
+        if (Thread.currentThread() != worker) {
+            throw new IllegalStateException("Must be called on the worker");
+        }
+        return channel.register(selector, ops, handler);
+    }
+
     protected final <C extends Command> C executeCommand(final C command)
             throws TractorClosedException, InterruptedException {
+        if (RECORD_LATENCIES) {
+            command.executeTime = System.nanoTime();
+        }
+        if (closed) {
+            throw new TractorClosedException();
+        }
+
+        if (command instanceof ReadOnlyCommand && completeFromCache((ReadOnlyCommand<?>) command)) {
+            return command;
+        }
+
+        command.executing();
+
+        if (!commandQueue.offer(command)) {
+            int idles = 0;
+            do {
+                if (closed) {
+                    throw new TractorClosedException();
+                }
+                BackOff.idle(idles++, COMMAND_QUEUE_FULL_PARK_NANOS);
+            } while (!commandQueue.offer(command));
+        }
+
+        if (commandQueue.doorbellRequired()) {
+            ringCommandsDoorbell();
+        }
+        return command;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean completeFromCache(final ReadOnlyCommand<?> query) {
+        final QueryCache<?> cache = queryCache(query);
+        if (cache == null || !cache.complete(query)) {
+            return false;
+        }
+        query.completed();
+        ((MbsrConsatantObjectPool) query.owner()).keep(query); // borrowed again by this thread only
+        return true;
+    }
+
+    private QueryCache<?> queryCache(final Command command) {
+        final QueryCache<?>[] caches = queryCaches;
+        final int typeId = command.typeId();
+        return typeId < caches.length ? caches[typeId] : null;
+    }
+
+    // the command is queued already and nobody else will wake the worker up, so, the doorbell cannot be interrupted
+    private void ringCommandsDoorbell() throws TractorClosedException {
+        boolean interrupted = false;
         try {
-            command.execute();
+            while (true) {
+                try {
+                    cab.send(CommandQueue.DOORBELL);
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
         } catch (final ConsumerInterruptedException e) {
             throw new TractorClosedException();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (entryLanes != null) {
+            cabItemAdded();
+        }
+    }
+
+    private void cabItemAdded() {
+        entryLanes.cabItemAdded();
+        if (selector != null && entryLanes.wakeUpRequired()) {
+            selector.wakeup(); // the worker waits in the selector, not in the cab
+        }
+    }
+
+    // the worker waits in the cab and nobody else will wake it up, so, the doorbell cannot be interrupted
+    @SuppressWarnings("unchecked")
+    private void ringLanesDoorbell() throws TractorClosedException {
+        if (selector != null) {
+            selector.wakeup(); // the worker waits in the selector
+            return;
+        }
+
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    final long ps = cab.producerNext();
+                    cab.setEntry(ps, (E) LANES_DOORBELL);
+                    cab.producerCommit(ps);
+                    entryLanes.cabItemAdded();
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (final ConsumerInterruptedException e) {
+            throw new TractorClosedException();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
-        return command;
     }
 
     private void releaseCommandExecution(final Command execution) {
+        if (RECORD_LATENCIES) {
+            commandLatencies.record(System.nanoTime() - execution.executeTime);
+        }
         execution.executed();
         execution.owner().release(execution);
     }
 
+    // called by the upstream's worker only
+    private void acceptForwarded(final E entry) throws InterruptedException, ConsumerInterruptedException {
+        if (SHEDDING_TARGET_AGE_NANOS != 0) {
+            entry.enqueueTime = CachedClock.nanoTime(); // the age in the ring of this stage
+        }
+        final long ps = cab.producerNext();
+        cab.setEntry(ps, entry);
+        cab.producerCommit(ps);
+        if (entryLanes != null) {
+            cabItemAdded();
+        }
+        forwardedCounters.increment(0);
+    }
+
+    private void forward(final AbstractTractor<E, ?, ?> next, final E entry) throws InterruptedException {
+        try {
+            next.acceptForwarded(entry); // the entry belongs to the next stage from now on
+        } catch (final ConsumerInterruptedException e) {
+            releaseEntry(entry);
+            workerCounters.increment(ENTRY_ERRORS);
+            exceptionHandler.onError(this, "The next stage is closed, the entry is dropped", entry, e);
+        } catch (final InterruptedException e) {
+            releaseEntry(entry);
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
     private void releaseEntry(final E entry) {
-        entry.owner().release(entry);
+        entry.forwardingStopped = false;
+
+        final MbsrGrowingObjectPool pool = (MbsrGrowingObjectPool) entry.owner();
+
+        if (pool.releaser != this) { // the entry has been forwarded by an upstream stage
+            foreignReleases.release(pool, entry);
+            return;
+        }
+
+        pool.release(entry);
+
+        if (pool.scheduleFlush()) {
+            if (numberOfEntryPoolsToFlush == entryPoolsToFlush.length) { // a new class of entries, this is rare
+                final MbsrGrowingObjectPool[] grown = new MbsrGrowingObjectPool[numberOfEntryPoolsToFlush * 2];
+                System.arraycopy(entryPoolsToFlush, 0, grown, 0, numberOfEntryPoolsToFlush);
+                entryPoolsToFlush = grown;
+            }
+            entryPoolsToFlush[numberOfEntryPoolsToFlush++] = pool;
+        }
+    }
+
+    // publishes all the released entries at once, one CAS per pool
+    private void flushEntryPools() {
+        E unsent;
+        while ((unsent = unsentEntries.poll()) != null) {
+            releaseEntry(unsent);
+        }
+
+        for (int i = 0; i < numberOfEntryPoolsToFlush; i++) {
+            entryPoolsToFlush[i].flush();
+            entryPoolsToFlush[i] = null;
+        }
+        numberOfEntryPoolsToFlush = 0;
+
+        foreignReleases.flush();
     }
 
     private class Worker extends Thread {
+        private final WorkerEventRecorder eventRecorder;
+        private final CommandCoalescer coalescer =
+                new CommandCoalescer(COALESCED_COMMANDS_SLOTS, COALESCED_COMMANDS_BATCH_LIMIT,
+                        AbstractTractor.this::releaseCommandExecution);
+
+        // state of the load shedding
+        private boolean entryAgeAboveTarget;
+        private long entryAgeAboveTargetSince;
+        private boolean shedding;
+
+        private long lastTime; // used if the worker's time is measured
+        private boolean recordedEvents;
+        private long cabItemsTaken;
+        private int entriesInBatch; // entries taken since the released entries have been published
+        private int busyTurns; // turns of the reactor since the ready channels have been checked
+
         Worker() {
             super("Worker@" + executor.name());
+            eventRecorder = new WorkerEventRecorder(EVENTS, getName());
         }
 
         @Override
-        @SuppressWarnings("unchecked")
         public void run() {
             try {
-                while (true) {
-                    final long cs = cab.consumerNext();
-
-                    if (cs == Cab.MESSAGE_RECEIVED_SEQUENCE) {
-                        final Command ce = (Command) cab.getMessage();
+                lastTime = MEASURE_WORKER_TIME ? System.nanoTime() : 0;
 
-                        try {
-                            executor.executeCommand(ce);
-                        } catch (final Exception e) {
-                            exceptionHandler.onError(this, "An error while executing the command: " + ce, e);
-                        }
-
-                        releaseCommandExecution(ce);
-                    } else {
-                        final E entry = cab.getEntry(cs);
-
-                        try {
-                            executor.processEntry(entry);
-                        } catch (final Exception e) {
-                            exceptionHandler.onError(this, "An error while processing the entry: " + entry, e);
-                        }
+                if (entryLanes == null) {
+                    while (true) {
+                        takeFromCab();
+                    }
+                }
 
-                        releaseEntry(entry);
+                if (selector != null) {
+                    while (true) {
+                        react();
                     }
+                }
 
-                    cab.consumerCommit(cs);
+                while (true) {
+                    if (entryLanes.hasCabItems(cabItemsTaken)) { // the commands keep their priority over the lanes
+                        takeFromCab();
+                    } else if (!pollLanes()) {
+                        awaitItems();
+                    }
                 }
             } catch (final InterruptedException e) {
                 // ignore
@@ -165,6 +727,12 @@ public abstract class AbstractTractor
                 exceptionHandler.onError(this, "An error in " + getName() + ": " + t.getLocalizedMessage(), t);
             }
 
+            flushEntryPools();
+
+            if (selector != null) {
+                closeSelector();
+            }
+
             closed = true;
 
             cab.consumerInterrupt();
@@ -173,26 +741,484 @@ public abstract class AbstractTractor
                 closedMutex.notifyAll();
             }
         }
+
+        private void takeFromCab() throws InterruptedException {
+            final long cs = cab.consumerNext();
+            cabItemsTaken++;
+
+            if (MEASURE_WORKER_TIME) {
+                final long now = System.nanoTime();
+                workerCounters.add(WORKER_IDLE_NANOS, now - lastTime);
+                lastTime = now;
+            }
+
+            final boolean recordEvents = itemReceived();
+
+            if (cs == Cab.MESSAGE_RECEIVED_SEQUENCE) { // the doorbell of the commands
+                cab.consumerCommit(cs); // frees the message for the next doorbell
+
+                flushEntryPools(); // the commands end the current batch of entries
+
+                executeCommands(recordEvents);
+            } else {
+                final E entry = cab.getEntry(cs);
+
+                if (entry == LANES_DOORBELL) {
+                    // the entries are in the lanes
+                } else {
+                    if (isExpired(entry)) {
+                        expireEntry(entry);
+                    } else {
+                        processEntry(entry, cs, recordEvents);
+                    }
+                    entriesTaken(1);
+                }
+
+                cab.consumerCommit(cs);
+            }
+
+            if (MEASURE_WORKER_TIME) {
+                final long now = System.nanoTime();
+                workerCounters.add(WORKER_BUSY_NANOS, now - lastTime);
+                lastTime = now;
+            }
+        }
+
+        // takes a bounded batch from each lane in turn, so, no sender can hold up the others
+        private boolean pollLanes() throws InterruptedException {
+            if (entryLanes.hasClosedLanes()) {
+                entryLanes.dropDrainedLanes();
+            }
+
+            final EntryLane[] lanes = entryLanes.lanes();
+
+            boolean polled = false;
+            for (int i = 0; i < lanes.length; i++) {
+                polled |= pollLane(lanes[i]);
+            }
+
+            final LongLane[] longLanes = entryLanes.longLanes();
+            for (int i = 0; i < longLanes.length; i++) {
+                polled |= pollLongLane(longLanes[i]);
+            }
+
+            if (polled && MEASURE_WORKER_TIME) {
+                final long now = System.nanoTime();
+                workerCounters.add(WORKER_BUSY_NANOS, now - lastTime);
+                lastTime = now;
+            }
+            return polled;
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean pollLane(final EntryLane lane) throws InterruptedException {
+            final long head = lane.head();
+            final int available = lane.available(head);
+            if (available == 0) {
+                return false;
+            }
+
+            for (int i = 0; i < available; i++) {
+                final E entry = (E) lane.entry(head + i);
+
+                final boolean recordEvents = itemReceived();
+
+                if (isExpired(entry)) {
+                    expireEntry(entry);
+                } else {
+                    processEntry(entry, head + i, recordEvents);
+                }
+            }
+
+            lane.taken(head + available);
+
+            entriesTaken(available);
+            return true;
+        }
+
+        // ends the batch after a bounded number of the entries, so, the released entries don't stay hidden from
+        // the senders until a command comes or the worker runs out of the entries
+        private void entriesTaken(final int taken) {
+            entriesInBatch += taken;
+            if (entriesInBatch >= ENTRIES_PER_BATCH) {
+                flushEntryPools();
+                entriesInBatch = 0;
+            }
+        }
+
+        private boolean pollLongLane(final LongLane lane) {
+            final long head = lane.head();
+            final int available = lane.available(head);
+            if (available == 0) {
+                return false;
+            }
+
+            for (int i = 0; i < available; i++) {
+                try {
+                    longExecutor.processLong(lane.channel(), lane.value(head + i));
+                } catch (final Exception e) {
+                    workerCounters.increment(ENTRY_ERRORS);
+                    exceptionHandler.onError(this, "An error while processing the value", null, e);
+                }
+            }
+
+            lane.taken(head + available);
+            return true;
+        }
+
+        // blocks in the cab until a command, a forwarded entry or a doorbell comes
+        private void awaitItems() throws InterruptedException {
+            flushEntryPools(); // nothing to process, so, the released entries shouldn't wait for the batch's end
+
+            entryLanes.workerWaiting(true);
+
+            if (!entryLanes.hasCabItems(cabItemsTaken) && entryLanes.isEmpty()) {
+                takeFromCab();
+            }
+
+            entryLanes.workerWaiting(false);
+        }
+
+        // one turn of the reactor: the cab, the lanes and the ready channels, waits in the selector if all are idle
+        private void react() throws InterruptedException, IOException {
+            boolean progress = false;
+            for (int i = 0; i < ENTRIES_PER_LANE_TURN && entryLanes.hasCabItems(cabItemsTaken); i++) {
+                takeFromCab(); // never waits, the items are in the cab already
+                progress = true;
+            }
+            progress |= pollLanes();
+
+            if (!progress && isInterrupted()) {
+                throw new InterruptedException(); // closed, the entries taken before are processed
+            }
+
+            if (!progress) {
+                busyTurns = 0;
+                awaitReadiness(); // returns at once, if a channel is ready
+            } else if (++busyTurns == BUSY_TURNS_PER_SELECT) { // no syscall per turn, while entries are coming
+                busyTurns = 0;
+                if (selector.selectNow() > 0) {
+                    handleReadyChannels();
+                }
+            }
+        }
+
+        private void awaitReadiness() throws InterruptedException, IOException {
+            flushEntryPools();
+
+            entryLanes.workerWaiting(true);
+
+            if (!entryLanes.hasCabItems(cabItemsTaken) && entryLanes.isEmpty()) {
+                selector.select(); // woken up by the senders, which find the worker waiting, or by an interrupt
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+
+            entryLanes.workerWaiting(false);
+
+            if (MEASURE_WORKER_TIME) {
+                final long now = System.nanoTime();
+                workerCounters.add(WORKER_IDLE_NANOS, now - lastTime);
+                lastTime = now;
+            }
+
+            if (!selector.selectedKeys().isEmpty()) {
+                handleReadyChannels();
+            }
+        }
+
+        private void handleReadyChannels() {
+            final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                final SelectionKey key = keys.next();
+                keys.remove();
+
+                final ChannelHandler handler = (ChannelHandler) key.attachment();
+                try {
+                    handler.onReady(key);
+                } catch (final Exception e) {
+                    key.cancel();
+                    exceptionHandler.onError(this, "An error while handling the channel", handler, e);
+                }
+            }
+
+            if (MEASURE_WORKER_TIME) {
+                final long now = System.nanoTime();
+                workerCounters.add(WORKER_BUSY_NANOS, now - lastTime);
+                lastTime = now;
+            }
+        }
+
+        private void closeSelector() {
+            try {
+                selector.close();
+            } catch (final IOException e) {
+                exceptionHandler.onError(this, "An error while closing the selector", e);
+            }
+        }
+
+        private boolean itemReceived() {
+            final boolean recordEvents = EVENTS.isRecording();
+            if (recordEvents) {
+                eventRecorder.itemReceived();
+            } else if (recordedEvents) {
+                eventRecorder.recordingStopped();
+            }
+            recordedEvents = recordEvents;
+            return recordEvents;
+        }
+
+        // takes all the commands in the queue, those offered during the execution as well
+        private void executeCommands(final boolean recordEvents) {
+            commandQueue.doorbellTaken();
+
+            boolean first = true;
+            Command ce;
+            while ((ce = commandQueue.poll()) != null) {
+                if (!first && recordEvents) {
+                    eventRecorder.itemReceived();
+                }
+                first = false;
+
+                if (ce.deadline != 0 && CachedClock.nanoTime() - ce.deadline > 0) {
+                    expireCommand(ce);
+                } else if (ce instanceof ReadOnlyCommand) {
+                    executeReadOnlyCommand((ReadOnlyCommand<?>) ce, recordEvents);
+                } else {
+                    coalescer.endBatch(); // the next reads must see the changes of this command
+                    executeCommand(ce, recordEvents);
+                    releaseCommandExecution(ce);
+                }
+            }
+
+            coalescer.endBatch();
+        }
+
+        private void executeReadOnlyCommand(final ReadOnlyCommand<?> ce, final boolean recordEvents) {
+            final ReadOnlyCommand<?> executed = coalescer.find(ce);
+            if (executed == null) {
+                if (executeCommand(ce, recordEvents)) {
+                    cacheResult(ce);
+                }
+                coalescer.executed(ce); // released as soon as no other command can get its result
+                coalescer.commandDone();
+                return;
+            }
+
+            try {
+                ce.completeWith(executed);
+            } catch (final Exception e) {
+                workerCounters.increment(COMMAND_ERRORS);
+                exceptionHandler.onError(this, "An error while copying the result of the command", executed, e);
+            }
+
+            workerCounters.increment(COMMANDS_COALESCED);
+
+            releaseCommandExecution(ce);
+
+            coalescer.commandDone();
+        }
+
+        private void cacheResult(final ReadOnlyCommand<?> ce) {
+            final QueryCache<?> cache = queryCache(ce);
+            if (cache == null || ce.result().error() != null) {
+                return;
+            }
+            try {
+                cache.put(ce);
+            } catch (final Exception e) {
+                exceptionHandler.onError(this, "An error while caching the result of the command", ce, e);
+            }
+        }
+
+        // returns true if the command has been executed without exceptions
+        private boolean executeCommand(final Command ce, final boolean recordEvents) {
+            if (WATCH_WORKER) {
+                workerProgress.started(ce, workerCounters.get(COMMANDS_EXECUTED) + 1, true);
+            }
+
+            boolean failed = false;
+            try {
+                executor.executeCommand(ce);
+            } catch (final Exception e) {
+                failed = true;
+                workerCounters.increment(COMMAND_ERRORS);
+                exceptionHandler.onError(this, "An error while executing the command", ce, e);
+            }
+
+            if (WATCH_WORKER) {
+                workerProgress.finished();
+            }
+
+            if (recordEvents) {
+                eventRecorder.commandExecuted(ce, failed);
+            }
+
+            workerCounters.increment(COMMANDS_EXECUTED);
+
+            return !failed;
+        }
+
+        private void expireCommand(final Command ce) {
+            ce.result().setError(COMMAND_EXPIRED);
+
+            workerCounters.increment(COMMANDS_EXPIRED);
+
+            releaseCommandExecution(ce);
+        }
+
+        private void processEntry(final E entry, final long cs, final boolean recordEvents)
+                throws InterruptedException {
+
+            if (RECORD_LATENCIES) {
+                entryStartLatencies.record(System.nanoTime() - entry.sendTime);
+            }
+
+            if (WATCH_WORKER) {
+                workerProgress.started(entry, cs, false);
+            }
+
+            boolean failed = false;
+            try {
+                executor.processEntry(entry);
+            } catch (final Exception e) {
+                failed = true;
+                workerCounters.increment(ENTRY_ERRORS);
+                exceptionHandler.onError(this, "An error while processing the entry", entry, e);
+            }
+
+            if (WATCH_WORKER) {
+                workerProgress.finished();
+            }
+
+            if (recordEvents) {
+                eventRecorder.entryProcessed();
+            }
+
+            if (RECORD_LATENCIES) {
+                entryEndLatencies.record(System.nanoTime() - entry.sendTime);
+            }
+
+            workerCounters.increment(ENTRIES_PROCESSED);
+
+            final AbstractTractor<E, ?, ?> next = downstream;
+            if (next == null || failed || entry.forwardingStopped) {
+                releaseEntry(entry);
+            } else {
+                forward(next, entry);
+            }
+        }
+
+        private boolean isExpired(final E entry) {
+            if (entry.deadline == 0 && SHEDDING_TARGET_AGE_NANOS == 0) {
+                return false;
+            }
+
+            final long now = CachedClock.nanoTime();
+
+            if (entry.deadline != 0 && now - entry.deadline > 0) {
+                return true;
+            }
+
+            if (SHEDDING_TARGET_AGE_NANOS == 0) {
+                return false;
+            }
+
+            // the entries are dropped only if their age stays above the target for the whole interval,
+            // so, short bursts pass, and the shedding stops as soon as the age drops below the target
+            if (now - entry.enqueueTime < SHEDDING_TARGET_AGE_NANOS) {
+                entryAgeAboveTarget = false;
+                shedding = false;
+                return false;
+            }
+            if (!entryAgeAboveTarget) {
+                entryAgeAboveTarget = true;
+                entryAgeAboveTargetSince = now;
+            } else if (!shedding && now - entryAgeAboveTargetSince >= SHEDDING_INTERVAL_NANOS) {
+                shedding = true;
+            }
+            return shedding;
+        }
+
+        private void expireEntry(final E entry) {
+            workerCounters.increment(ENTRIES_EXPIRED);
+
+            try {
+                executor.entryExpired(entry);
+            } catch (final Exception e) {
+                exceptionHandler.onError(this, "An error while dropping the expired entry", entry, e);
+            }
+
+            releaseEntry(entry);
+        }
     }
 
     private class EntrySenderImpl<EE extends E> implements EntrySender<EE>, EntryEnvelope<EE> {
-        private final MbsrConsatantObjectPool<EE> entryPool;
+        private static final int ENTRIES_SENT = 0;
+        private static final int LANE_FULL_WAITS = 1;
+
+        private final Class<EE> classOfEntry;
+        private final MbsrGrowingObjectPool<EE> entryPool;
+        private final EntryLane lane; // null if the entries are sent through the cab
+        private final int reserve; // entries the pool has grown by for this sender
         private final Thread creator;
+        private final SingleWriterCounters counters = new SingleWriterCounters(LANE_FULL_WAITS + 1);
 
         private EE nextEntry;
+        private boolean unsent; // the next entry is borrowed, but not sent yet
+        private boolean retired; // written by the creator or, if it has terminated, by another thread
 
-        EntrySenderImpl(final Class<EE> classOfEntry) {
-            entryPool = MbsrConsatantObjectPool.constructorBasedPool(classOfEntry, cab.bufferSize());
+        EntrySenderImpl(
+                final Class<EE> classOfEntry,
+                final MbsrGrowingObjectPool<EE> entryPool,
+                final EntryLane lane,
+                final int reserve) {
+            this.classOfEntry = classOfEntry;
+            this.entryPool = entryPool;
+            this.lane = lane;
+            this.reserve = reserve;
             creator = Thread.currentThread();
         }
 
         @Override
         public EntryEnvelope<EE> nextEnvelope() {
             checkCurrentThread();
+            if (retired) {
+                throw new IllegalStateException("The sender is closed");
+            }
             nextEntry = entryPool.borrow();
+            unsent = true;
             return this;
         }
 
+        @Override
+        public void close() {
+            checkCurrentThread();
+            retire();
+        }
+
+        void retire() {
+            synchronized (AbstractTractor.this) {
+                if (retired) {
+                    return;
+                }
+                retired = true;
+                entrySenders.remove(this);
+                entriesSentByRetiredSenders += sent();
+                laneFullWaitsOfRetiredSenders += laneFullWaits();
+                retiredReserves.merge(classOfEntry, reserve, Integer::sum);
+            }
+            if (unsent) {
+                unsentEntries.add(nextEntry);
+                unsent = false;
+            }
+            nextEntry = null;
+            if (lane != null) {
+                entryLanes.close(lane); // after the last entry put into the lane
+            }
+        }
+
         @Override
         public EE entry() {
             checkCurrentThread();
@@ -202,15 +1228,136 @@ public abstract class AbstractTractor
         @Override
         public void send() throws TractorClosedException, InterruptedException {
             checkCurrentThread();
+            if (RECORD_LATENCIES) {
+                nextEntry.sendTime = System.nanoTime();
+            }
+            if (SHEDDING_TARGET_AGE_NANOS != 0) {
+                nextEntry.enqueueTime = CachedClock.nanoTime();
+            }
+            if (lane != null) {
+                sendToLane();
+                return;
+            }
             try {
-                final long ps = cab.producerNext();
+                final long ps;
+                if (EVENTS.isRecording()) {
+                    final long waitStart = System.nanoTime();
+                    ps = cab.producerNext();
+                    final long wait = System.nanoTime() - waitStart;
+                    if (wait >= TractorEvents.THRESHOLD_NANOS) {
+                        EVENTS.producerBackPressure(nextEntry.getClass(), wait);
+                    }
+                } else {
+                    ps = cab.producerNext();
+                }
                 cab.setEntry(ps, nextEntry);
                 cab.producerCommit(ps);
+                unsent = false;
+                counters.increment(ENTRIES_SENT);
             } catch (final ConsumerInterruptedException e) {
                 throw new TractorClosedException();
             }
         }
 
+        private void sendToLane() throws TractorClosedException, InterruptedException {
+            if (closed) {
+                throw new TractorClosedException();
+            }
+
+            if (!lane.offer(nextEntry)) {
+                counters.increment(LANE_FULL_WAITS);
+                final long waitStart = System.nanoTime();
+                int idles = 0;
+                do {
+                    if (closed) {
+                        throw new TractorClosedException();
+                    }
+                    BackOff.idle(idles++, LANE_FULL_PARK_NANOS);
+                } while (!lane.offer(nextEntry));
+
+                if (EVENTS.isRecording()) {
+                    final long wait = System.nanoTime() - waitStart;
+                    if (wait >= TractorEvents.THRESHOLD_NANOS) {
+                        EVENTS.producerBackPressure(nextEntry.getClass(), wait);
+                    }
+                }
+            }
+            unsent = false;
+            counters.increment(ENTRIES_SENT);
+
+            if (entryLanes.wakeUpRequired()) {
+                ringLanesDoorbell();
+            }
+        }
+
+        long sent() {
+            return counters.get(ENTRIES_SENT);
+        }
+
+        long laneFullWaits() {
+            return counters.get(LANE_FULL_WAITS);
+        }
+
+        private void checkCurrentThread() {
+            if (creator != Thread.currentThread()) {
+                throw new IllegalStateException("Cannot be used from another thread");
+            }
+        }
+    }
+
+    private class LongSenderImpl implements LongSender {
+        private final LongLane lane;
+        private final Thread creator;
+
+        private boolean retired; // written by the creator or, if it has terminated, by another thread
+
+        LongSenderImpl(final LongLane lane) {
+            this.lane = lane;
+            creator = Thread.currentThread();
+        }
+
+        @Override
+        public void send(final long value) throws TractorClosedException, InterruptedException {
+            checkCurrentThread();
+            if (retired) {
+                throw new IllegalStateException("The sender is closed");
+            }
+            if (closed) {
+                throw new TractorClosedException();
+            }
+
+            if (!lane.offer(value)) {
+                int idles = 0;
+                do {
+                    if (closed) {
+                        throw new TractorClosedException();
+                    }
+                    BackOff.idle(idles++, LANE_FULL_PARK_NANOS);
+                } while (!lane.offer(value));
+            }
+
+            if (entryLanes.wakeUpRequired()) {
+                ringLanesDoorbell();
+            }
+        }
+
+        @Override
+        public void close() {
+            checkCurrentThread();
+            retire();
+        }
+
+        void retire() {
+            synchronized (AbstractTractor.this) {
+                if (retired) {
+                    return;
+                }
+                retired = true;
+                longSenders.remove(this);
+            }
+            entryLanes.close(lane); // after the last value put into the lane
+        }
+
         private void checkCurrentThread() {
             if (creator != Thread.currentThread()) {
                 throw new IllegalStateException("Cannot be used from another thread");
@@ -0,0 +1,242 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Error handler, which doesn't format or log the errors on the thread they happen in. An error reported
+ * with {@link #onError(Object, String, Object, Throwable)} is only counted in a preallocated table of the sites,
+ * keyed by the object the error happened in, the site, the class of the subject and the class of the error.
+ * A thread of the handler reports each site, which has had errors, to the delegate handler once per
+ * the report interval with the number of the errors and the first error as a sample. So, a burst of errors costs
+ * the worker neither allocations nor I/O, and the log isn't flooded.
+ * <p>
+ * Sites beyond the capacity of the table are counted as dropped and reported in total. The errors reported
+ * with {@link #onError(Object, String, Throwable)} are passed to the delegate handler at once.
+ */
+public final class AggregatingErrorHandler implements ErrorHandler, AutoCloseable {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final long INT_ARRAY_BASE = UNSAFE.arrayBaseOffset(int[].class);
+    private static final long LONG_ARRAY_BASE = UNSAFE.arrayBaseOffset(long[].class);
+    private static final long OBJECT_ARRAY_BASE = UNSAFE.arrayBaseOffset(Object[].class);
+    private static final int OBJECT_ARRAY_SHIFT = 31 - Integer.numberOfLeadingZeros(
+            UNSAFE.arrayIndexScale(Object[].class));
+    private static final long DROPPED_OFFSET;
+
+    static {
+        try {
+            DROPPED_OFFSET = UNSAFE.objectFieldOffset(AggregatingErrorHandler.class.getDeclaredField("dropped"));
+        } catch (final NoSuchFieldException e) {
+            throw new Error(e);
+        }
+    }
+
+    private static final int FREE = 0;
+    private static final int CLAIMED = 1;
+    private static final int READY = 2;
+
+    private static final int MAX_PROBES = 8;
+
+    private final ErrorHandler delegate;
+    private final long reportIntervalNanos;
+
+    private final int[] states;
+    private final Object[] ins; // the key fields are written once, before the slot gets ready
+    private final String[] sites;
+    private final Class[] subjectClasses;
+    private final Class[] errorClasses;
+    private final long[] counts;
+    private final Object[] samples;
+    private final int mask;
+
+    private final long[] lastCounts; // accessed by the handler's thread only
+    private final long[] totals; // accessed by the handler's thread only
+
+    private volatile long dropped;
+    private long lastDropped; // accessed by the handler's thread only
+
+    private final Thread thread;
+
+    /**
+     * @param delegate handler the aggregated errors are reported to
+     * @param capacity max number of the sites, must be a power of two
+     * @param reportInterval interval of the reports
+     * @param unit time unit of the interval
+     */
+    public AggregatingErrorHandler(
+            final ErrorHandler delegate,
+            final int capacity,
+            final long reportInterval,
+            final TimeUnit unit) {
+
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two: " + capacity);
+        }
+        if (reportInterval <= 0) {
+            throw new IllegalArgumentException("Report interval must be positive: " + reportInterval);
+        }
+
+        this.delegate = delegate;
+        this.reportIntervalNanos = unit.toNanos(reportInterval);
+
+        states = new int[capacity];
+        ins = new Object[capacity];
+        sites = new String[capacity];
+        subjectClasses = new Class[capacity];
+        errorClasses = new Class[capacity];
+        counts = new long[capacity];
+        samples = new Object[capacity];
+        mask = capacity - 1;
+
+        lastCounts = new long[capacity];
+        totals = new long[capacity];
+
+        thread = new Thread(this::run, "AggregatingErrorHandler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void onError(final Object in, final String message, final Throwable t) {
+        delegate.onError(in, message, t);
+    }
+
+    /**
+     * Counts the error, doesn't allocate. IMPORTANT! The site must be a constant, the sites are compared
+     * by identity.
+     */
+    @Override
+    public void onError(final Object in, final String site, final Object subject, final Throwable t) {
+        final Class subjectClass = subject == null ? null : subject.getClass();
+        final Class errorClass = t == null ? null : t.getClass();
+
+        int index = hash(in, site, subjectClass, errorClass);
+        for (int probe = 0; probe < MAX_PROBES; probe++, index = (index + 1) & mask) {
+            final long stateAddress = INT_ARRAY_BASE + ((long) index << 2);
+
+            int state = UNSAFE.getIntVolatile(states, stateAddress);
+            if (state == FREE) {
+                if (UNSAFE.compareAndSwapInt(states, stateAddress, FREE, CLAIMED)) {
+                    ins[index] = in;
+                    sites[index] = site;
+                    subjectClasses[index] = subjectClass;
+                    errorClasses[index] = errorClass;
+                    UNSAFE.putIntVolatile(states, stateAddress, READY); // publishes the key
+                    count(index, t);
+                    return;
+                }
+                state = UNSAFE.getIntVolatile(states, stateAddress);
+            }
+            while (state == CLAIMED) { // the key is being written
+                Thread.yield();
+                state = UNSAFE.getIntVolatile(states, stateAddress);
+            }
+            if (ins[index] == in && sites[index] == site &&
+                    subjectClasses[index] == subjectClass && errorClasses[index] == errorClass) {
+                count(index, t);
+                return;
+            }
+        }
+
+        UNSAFE.getAndAddLong(this, DROPPED_OFFSET, 1);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        thread.interrupt();
+        thread.join();
+        report(); // the errors counted after the last report
+    }
+
+    /**
+     * Reports the sites, which have had errors since the previous report, to the delegate handler.
+     */
+    void report() {
+        for (int i = 0; i <= mask; i++) {
+            if (UNSAFE.getIntVolatile(states, INT_ARRAY_BASE + ((long) i << 2)) != READY) {
+                continue;
+            }
+            final long count = UNSAFE.getLongVolatile(counts, LONG_ARRAY_BASE + ((long) i << 3));
+            final long n = count - lastCounts[i];
+            if (n == 0) {
+                continue;
+            }
+            lastCounts[i] = count;
+            totals[i] += n;
+
+            final Throwable sample = (Throwable) UNSAFE.getAndSetObject(samples, objectAddress(i), null);
+
+            delegate.onError(ins[i],
+                    sites[i] + ": " + n + (n == 1 ? " error" : " errors") +
+                            (errorClasses[i] == null ? "" : " " + errorClasses[i].getName()) +
+                            (subjectClasses[i] == null ? "" : " with " + subjectClasses[i].getName()) +
+                            (n == totals[i] ? "" : ", " + totals[i] + " in total"),
+                    sample);
+        }
+
+        final long d = dropped;
+        if (d != lastDropped) {
+            delegate.onError(this, (d - lastDropped) + " errors have been dropped, " +
+                    "the number of the error sites exceeds the capacity of " + (mask + 1), null);
+            lastDropped = d;
+        }
+    }
+
+    private void count(final int index, final Throwable t) {
+        UNSAFE.getAndAddLong(counts, LONG_ARRAY_BASE + ((long) index << 3), 1);
+        if (t != null) {
+            UNSAFE.compareAndSwapObject(samples, objectAddress(index), null, t); // the first error is the sample
+        }
+    }
+
+    private int hash(final Object in, final String site, final Class subjectClass, final Class errorClass) {
+        int h = System.identityHashCode(in);
+        h = h * 31 + System.identityHashCode(site);
+        h = h * 31 + System.identityHashCode(subjectClass);
+        h = h * 31 + System.identityHashCode(errorClass);
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static long objectAddress(final int index) {
+        return OBJECT_ARRAY_BASE + ((long) index << OBJECT_ARRAY_SHIFT);
+    }
+
+    private void run() {
+        final long periodMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(reportIntervalNanos));
+
+        try {
+            while (true) {
+                Thread.sleep(periodMillis);
+                report();
+            }
+        } catch (final InterruptedException e) {
+            // ignore
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,174 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Garbage-free log of the events of the executors and the listeners. The templates of the events are registered
+ * once with {@link #template(String)}, each thread logging the events gets its own {@link BinaryLogWriter},
+ * and the thread of the log copies the binary records from the writers into the file. The file is read with
+ * {@link BinaryLogDecoder}, which renders the records, replacing each {} of the template with the next argument.
+ * <p>
+ * The file starts with the magic and the version and consists of the records aligned to eight bytes. A record
+ * starts with its length and its template id, all the numbers are little-endian. The definitions of
+ * the templates are written into the file as well, so, the file is self-contained.
+ */
+public final class BinaryLog implements AutoCloseable {
+    static final int MAGIC = 0x4C425447; // GTBL
+    static final int VERSION = 1;
+    static final int TEMPLATE = -2; // template id of the records defining the templates
+
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final FileChannel channel; // guarded by this
+    private final ErrorHandler errorHandler;
+
+    private int numberOfTemplates; // guarded by this
+
+    private volatile BinaryLogWriter[] writers = new BinaryLogWriter[0]; // guarded by this on write
+
+    private volatile boolean running = true; // the thread isn't interrupted, what would close the channel
+    private final Thread thread;
+
+    public BinaryLog(final Path file) throws IOException {
+        this(file, new JulLoggingErrorHandler(BinaryLog.class));
+    }
+
+    /**
+     * @param file file to write the log into, an existing file is truncated
+     * @param errorHandler handler of the errors of writing, the log stops writing after an error
+     */
+    public BinaryLog(final Path file, final ErrorHandler errorHandler) throws IOException {
+        this.errorHandler = errorHandler;
+
+        channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        final ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        write(header);
+
+        thread = new Thread(this::run, "BinaryLog-" + file.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Registers a template, the records of which can be written from now on.
+     * @param text text of the template, each {} is replaced with the next argument of the record
+     * @return id of the template
+     */
+    public synchronized int template(final String text) throws IOException {
+        final int id = numberOfTemplates++;
+
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        final int length = BinaryLogWriter.HEADER_SIZE + bytes.length;
+
+        final ByteBuffer record = ByteBuffer.allocate(BinaryLogWriter.align(length)).order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(length).putInt(TEMPLATE).putLong(id).put(bytes).clear();
+        write(record); // before any record of the template, which can't be committed before the id is returned
+
+        return id;
+    }
+
+    /**
+     * @param capacity size of the writer's ring in bytes, must be a power of two not less than 1024
+     * @return new writer, which must be used by one thread only
+     */
+    public synchronized BinaryLogWriter newWriter(final int capacity) {
+        final BinaryLogWriter writer = new BinaryLogWriter(capacity);
+
+        final BinaryLogWriter[] current = writers;
+        final BinaryLogWriter[] updated = new BinaryLogWriter[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = writer;
+        writers = updated;
+
+        return writer;
+    }
+
+    /**
+     * @return number of the records dropped by all the writers, because their rings were full
+     */
+    public long droppedRecords() {
+        long result = 0;
+        final BinaryLogWriter[] w = writers;
+        for (int i = 0; i < w.length; i++) {
+            result += w[i].droppedRecords();
+        }
+        return result;
+    }
+
+    /**
+     * Writes the records committed before and closes the file.
+     */
+    @Override
+    public void close() throws InterruptedException, IOException {
+        running = false;
+        thread.join();
+
+        synchronized (this) {
+            channel.close();
+        }
+    }
+
+    private void run() {
+        try {
+            int idles = 0;
+            while (running) {
+                if (drain()) {
+                    idles = 0;
+                } else {
+                    BackOff.idle(idles++, PARK_NANOS);
+                }
+            }
+            drain();
+        } catch (final IOException e) {
+            errorHandler.onError(this, "An error while writing the log", e);
+        }
+    }
+
+    private synchronized boolean drain() throws IOException {
+        boolean drained = false;
+        final BinaryLogWriter[] w = writers;
+        for (int i = 0; i < w.length; i++) {
+            drained |= w[i].drainTo(channel);
+        }
+        return drained;
+    }
+
+    private void write(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders the records of a file written by {@link BinaryLog} as text, one line per record: the time in ISO-8601
+ * and the template with the arguments. The tool is run as:
+ * <pre>
+ *     java -cp green-tractor.jar org.green.tractor.BinaryLogDecoder file
+ * </pre>
+ */
+public final class BinaryLogDecoder {
+
+    private BinaryLogDecoder() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: " + BinaryLogDecoder.class.getName() + " file");
+            System.exit(1);
+        }
+        decode(Paths.get(args[0]), System.out);
+        System.out.flush();
+    }
+
+    /**
+     * @param file file written by {@link BinaryLog}
+     * @param out output of the rendered records
+     * @throws IOException if the file can't be read or isn't a binary log
+     */
+    public static void decode(final Path file, final Appendable out) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.remaining() < 8 || buffer.getInt() != BinaryLog.MAGIC) {
+            throw new IOException("Not a binary log: " + file);
+        }
+        final int version = buffer.getInt();
+        if (version != BinaryLog.VERSION) {
+            throw new IOException("Unsupported version of the binary log: " + version);
+        }
+
+        final Map<Integer, String> templates = new HashMap<>();
+        final StringBuilder line = new StringBuilder();
+
+        while (buffer.remaining() >= 8) {
+            final int start = buffer.position();
+            final int length = buffer.getInt(start);
+            final int templateId = buffer.getInt(start + 4);
+
+            if (length < 8 || length > buffer.limit() - start) {
+                throw new IOException("Corrupted record at " + start + " in " + file); // or an incomplete one
+            }
+
+            if (templateId == BinaryLog.TEMPLATE) {
+                templates.put((int) buffer.getLong(start + 8), new String(buffer.array(),
+                        start + BinaryLogWriter.HEADER_SIZE, length - BinaryLogWriter.HEADER_SIZE,
+                        StandardCharsets.UTF_8));
+            } else if (templateId != BinaryLogWriter.PADDING) {
+                line.setLength(0);
+                render(buffer, start, length, templates.get(templateId), templateId, line);
+                out.append(line).append(System.lineSeparator());
+            }
+
+            buffer.position(Math.min(buffer.limit(), start + BinaryLogWriter.align(length)));
+        }
+    }
+
+    private static void render(
+            final ByteBuffer buffer,
+            final int start,
+            final int length,
+            final String template,
+            final int templateId,
+            final StringBuilder line) throws IOException {
+
+        line.append(Instant.ofEpochMilli(buffer.getLong(start + 8))).append(' ');
+
+        int position = start + BinaryLogWriter.HEADER_SIZE;
+        final int end = start + length;
+
+        int from = 0;
+        if (template == null) {
+            line.append('#').append(templateId);
+        }
+
+        while (position < end) {
+            if (template == null) {
+                line.append(' ');
+            } else {
+                final int placeholder = template.indexOf("{}", from);
+                if (placeholder < 0) {
+                    line.append(template, from, template.length()).append(' ');
+                    from = template.length();
+                } else {
+                    line.append(template, from, placeholder);
+                    from = placeholder + 2;
+                }
+            }
+
+            final byte type = buffer.get(position);
+            switch (type) {
+                case BinaryLogWriter.LONG:
+                    line.append(buffer.getLong(position + 1));
+                    position += 9;
+                    break;
+                case BinaryLogWriter.INT:
+                    line.append(buffer.getInt(position + 1));
+                    position += 5;
+                    break;
+                case BinaryLogWriter.DOUBLE:
+                    line.append(buffer.getDouble(position + 1));
+                    position += 9;
+                    break;
+                case BinaryLogWriter.BOOLEAN:
+                    line.append(buffer.get(position + 1) != 0);
+                    position += 2;
+                    break;
+                case BinaryLogWriter.CHAR:
+                    line.append(buffer.getChar(position + 1));
+                    position += 3;
+                    break;
+                case BinaryLogWriter.ASCII:
+                    final int n = buffer.getShort(position + 1);
+                    position += 3;
+                    for (int i = 0; i < n; i++) {
+                        line.append((char) (buffer.get(position++) & 0xFF));
+                    }
+                    break;
+                default:
+                    throw new IOException("Unknown type of an argument: " + type + " at " + position);
+            }
+        }
+
+        if (template != null) {
+            line.append(template, from, template.length());
+        }
+    }
+}
\ No newline at end of file
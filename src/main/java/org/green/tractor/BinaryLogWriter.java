@@ -0,0 +1,279 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+abstract class BinaryLogWriterPad0 {
+    protected long p01, p02, p03, p04, p05, p06, p07;
+    protected long p08, p09, p010, p011, p012, p013, p014, p015;
+}
+
+abstract class BinaryLogWriterTail extends BinaryLogWriterPad0 {
+    protected volatile long tail; // position after the last committed record, written by the owner only
+    protected long cachedHead; // the last head seen by the owner
+    protected volatile long dropped; // written by the owner only
+}
+
+abstract class BinaryLogWriterPad1 extends BinaryLogWriterTail {
+    protected long p11, p12, p13, p14, p15, p16, p17;
+    protected long p18, p19, p110, p111, p112, p113, p114, p115;
+}
+
+abstract class BinaryLogWriterHead extends BinaryLogWriterPad1 {
+    protected volatile long head; // position of the first record not written yet, written by the log only
+}
+
+abstract class BinaryLogWriterPad2 extends BinaryLogWriterHead {
+    protected long p21, p22, p23, p24, p25, p26, p27;
+    protected long p28, p29, p210, p211, p212, p213, p214, p215;
+}
+
+/**
+ * Writer of the records of {@link BinaryLog} owned by one thread, for example, by the worker of a tractor.
+ * A record is the id of a template registered with {@link BinaryLog#template(String)}, the time and
+ * the arguments, primitive or ASCII ones:
+ * <pre>
+ *     writer.begin(ORDER_FILLED).append(orderId).append(price).appendAscii(symbol).commit();
+ * </pre>
+ * The record is written into the writer's ring and the log's thread copies it into the file, so, neither
+ * formatting, nor allocations, nor I/O happen on the owner's thread. If the ring is full, the record is
+ * dropped and counted, the owner never waits. The arguments, which don't fit into the max size of a record,
+ * are dropped, an ASCII argument is truncated.
+ */
+public final class BinaryLogWriter extends BinaryLogWriterPad2 {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final long TAIL_OFFSET;
+    private static final long HEAD_OFFSET;
+    private static final long DROPPED_OFFSET;
+
+    static {
+        try {
+            TAIL_OFFSET = UNSAFE.objectFieldOffset(BinaryLogWriterTail.class.getDeclaredField("tail"));
+            HEAD_OFFSET = UNSAFE.objectFieldOffset(BinaryLogWriterHead.class.getDeclaredField("head"));
+            DROPPED_OFFSET = UNSAFE.objectFieldOffset(BinaryLogWriterTail.class.getDeclaredField("dropped"));
+        } catch (final Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    static final int MAX_RECORD_SIZE = 512;
+    static final int HEADER_SIZE = 16; // length, template id, time
+    static final int PADDING = -1; // template id of the rest of the ring skipped before wrapping
+
+    static final byte LONG = 'J';
+    static final byte INT = 'I';
+    static final byte DOUBLE = 'D';
+    static final byte BOOLEAN = 'Z';
+    static final byte CHAR = 'C';
+    static final byte ASCII = 'S';
+
+    private final ByteBuffer ring;
+    private final ByteBuffer view; // used by the log's thread only
+    private final int mask;
+
+    // accessed by the owner only
+    private long recordStart = -1; // -1 if no record is being written or it is being dropped
+    private int recordIndex;
+    private int position;
+    private int limit;
+
+    /**
+     * @param capacity size of the ring in bytes, must be a power of two not less than two max records
+     */
+    BinaryLogWriter(final int capacity) {
+        if (capacity < 2 * MAX_RECORD_SIZE || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two not less than " +
+                    2 * MAX_RECORD_SIZE + ": " + capacity);
+        }
+        ring = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        view = ring.duplicate();
+        mask = capacity - 1;
+    }
+
+    /**
+     * Starts a new record, the record begun and not committed before is discarded.
+     * @param templateId id of the template of the record
+     * @return this writer
+     */
+    public BinaryLogWriter begin(final int templateId) {
+        final long t = tail;
+        final int index = (int) t & mask;
+        final int toEnd = ring.capacity() - index;
+        final int required = toEnd < MAX_RECORD_SIZE ? toEnd + MAX_RECORD_SIZE : MAX_RECORD_SIZE;
+
+        if (t + required - cachedHead > ring.capacity()) {
+            cachedHead = head; // volatile read leads to <membar LoadLoad|LoadStore>
+            if (t + required - cachedHead > ring.capacity()) {
+                recordStart = -1;
+                position = 0;
+                limit = 0; // the arguments are ignored
+                return this;
+            }
+        }
+
+        if (toEnd < MAX_RECORD_SIZE) {
+            ring.putInt(index, toEnd);
+            ring.putInt(index + 4, PADDING);
+            recordStart = t + toEnd;
+            recordIndex = 0;
+        } else {
+            recordStart = t;
+            recordIndex = index;
+        }
+
+        ring.putInt(recordIndex + 4, templateId);
+        ring.putLong(recordIndex + 8, System.currentTimeMillis());
+        position = recordIndex + HEADER_SIZE;
+        limit = recordIndex + MAX_RECORD_SIZE;
+        return this;
+    }
+
+    public BinaryLogWriter append(final long value) {
+        if (position + 9 <= limit) {
+            ring.put(position, LONG);
+            ring.putLong(position + 1, value);
+            position += 9;
+        }
+        return this;
+    }
+
+    public BinaryLogWriter append(final int value) {
+        if (position + 5 <= limit) {
+            ring.put(position, INT);
+            ring.putInt(position + 1, value);
+            position += 5;
+        }
+        return this;
+    }
+
+    public BinaryLogWriter append(final double value) {
+        if (position + 9 <= limit) {
+            ring.put(position, DOUBLE);
+            ring.putDouble(position + 1, value);
+            position += 9;
+        }
+        return this;
+    }
+
+    public BinaryLogWriter append(final boolean value) {
+        if (position + 2 <= limit) {
+            ring.put(position, BOOLEAN);
+            ring.put(position + 1, value ? (byte) 1 : (byte) 0);
+            position += 2;
+        }
+        return this;
+    }
+
+    public BinaryLogWriter append(final char value) {
+        if (position + 3 <= limit) {
+            ring.put(position, CHAR);
+            ring.putChar(position + 1, value);
+            position += 3;
+        }
+        return this;
+    }
+
+    /**
+     * @param value text, each char of which is written as one byte, null is written as an empty text
+     * @return this writer
+     */
+    public BinaryLogWriter appendAscii(final CharSequence value) {
+        if (position + 3 > limit) {
+            return this;
+        }
+        final int length = value == null ? 0 : Math.min(value.length(), limit - position - 3);
+        ring.put(position, ASCII);
+        ring.putShort(position + 1, (short) length);
+        position += 3;
+        for (int i = 0; i < length; i++) {
+            ring.put(position++, (byte) value.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Makes the record available to the log, or counts it as dropped if it hasn't fit into the ring.
+     */
+    public void commit() {
+        if (recordStart < 0) {
+            UNSAFE.putOrderedLong(this, DROPPED_OFFSET, dropped + 1);
+            return;
+        }
+        final int length = position - recordIndex;
+        ring.putInt(recordIndex, length);
+        UNSAFE.putOrderedLong(this, TAIL_OFFSET, recordStart + align(length)); // <membar StoreStore>
+        // publishes the record
+        recordStart = -1;
+        position = 0;
+        limit = 0;
+    }
+
+    /**
+     * @return number of the records dropped, because the ring was full
+     */
+    public long droppedRecords() {
+        return dropped;
+    }
+
+    /**
+     * Called by the log's thread only.
+     * @param channel file to write the committed records into
+     * @return true if any record has been written
+     */
+    boolean drainTo(final FileChannel channel) throws IOException {
+        final long h = head;
+        final long t = tail; // volatile read leads to <membar LoadLoad|LoadStore>
+        if (h == t) {
+            return false;
+        }
+        final int from = (int) h & mask;
+        final int first = (int) Math.min(t - h, ring.capacity() - from);
+        write(channel, from, first);
+        if (first < t - h) {
+            write(channel, 0, (int) (t - h - first));
+        }
+        UNSAFE.putOrderedLong(this, HEAD_OFFSET, t); // <membar StoreStore> frees the space
+        return true;
+    }
+
+    private void write(final FileChannel channel, final int from, final int length) throws IOException {
+        view.limit(from + length);
+        view.position(from);
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+    }
+
+    static int align(final int length) {
+        return (length + 7) & ~7;
+    }
+}
\ No newline at end of file
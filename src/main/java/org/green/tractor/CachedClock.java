@@ -0,0 +1,62 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Cheap source of System.nanoTime() based time for deadlines: a daemon thread updates the cached time with
+ * the resolution set by the org.green.tractor.clock.resolution_us system property, 100 us by default.
+ * The thread is started on the first use of the clock.
+ */
+public final class CachedClock {
+    private static final long RESOLUTION_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Long.getLong("org.green.tractor.clock.resolution_us", 100));
+
+    private static volatile long nanoTime = System.nanoTime();
+
+    static {
+        final Thread ticker = new Thread(CachedClock::tick, "CachedClock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    private CachedClock() {
+    }
+
+    /**
+     * @return System.nanoTime() cached not earlier than the clock's resolution ago
+     */
+    public static long nanoTime() {
+        return nanoTime;
+    }
+
+    private static void tick() {
+        while (true) {
+            LockSupport.parkNanos(RESOLUTION_NANOS);
+            nanoTime = System.nanoTime();
+        }
+    }
+}
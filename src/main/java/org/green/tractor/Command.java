@@ -23,20 +23,22 @@
  */
 package org.green.tractor;
 
-import org.green.cab.Cab;
-import org.green.cab.ConsumerInterruptedException;
-
+import java.util.concurrent.TimeUnit;
 import java.util.function.BooleanSupplier;
 
 public abstract class Command<R extends ErrorableResult> extends PoolableObject implements Future<R> {
     protected final R result;
 
+    private final int typeId = CommandTypes.typeId(getClass());
+
     private volatile boolean executed;
 
-    // these fields are set by one single thread (owner) in the set() method
-    private Cab cab; // the same thread reads this property in execute() and result()
+    long executeTime; // set by the original thread if latencies are recorded, read by the worker
+    long deadline; // set by the original thread, read by the worker, 0 if none
+
+    // this field is set by one single thread (owner) in the set() method
     private BooleanSupplier closedMutex; // the worker's thread reads this in methods executed() after appropriate
-    // membars happened in Cab structure (with strong CAS and volatile read) when this object was passed from
+    // membars happened in CommandQueue (with strong CAS and volatile write/read) when this object was passed from
     // the original/owner thread to the worker
 
     protected Command(final R result) {
@@ -44,16 +46,31 @@ public abstract class Command<R extends ErrorableResult> extends PoolableObject
     }
 
     // called by the original thread
-    final void set(final Cab cab, final BooleanSupplier closedMutex) {
-        this.cab = cab;
+    final void set(final BooleanSupplier closedMutex) {
         this.closedMutex = closedMutex;
+        this.deadline = 0;
+        result.setError(null); // the result is reused
     }
 
-    // called by the original thread
-    final void execute() throws ConsumerInterruptedException, InterruptedException {
+    /**
+     * Sets the deadline of the command. Must be called by the original thread before the command is executed.
+     * If the worker takes the command after the deadline, the command isn't executed and its result
+     * gets {@link CommandExpiredException}.
+     * @param timeout time from now the command has to be executed within
+     * @param unit unit of the timeout
+     */
+    public final void expireAfter(final long timeout, final TimeUnit unit) {
+        deadline = CachedClock.nanoTime() + unit.toNanos(timeout);
+    }
+
+    // called by the original thread before the command is passed to the worker
+    final void executing() {
         executed = false;
+    }
 
-        cab.send(this);
+    // called by the original thread, if the command has been completed without the worker
+    final void completed() {
+        executed = true;
     }
 
     // called by the worker's thread
@@ -66,6 +83,13 @@ public abstract class Command<R extends ErrorableResult> extends PoolableObject
         }
     }
 
+    /**
+     * @return dense id of the command's class, the same for all the commands of the class
+     */
+    public final int typeId() {
+        return typeId;
+    }
+
     public final R result() {
         return result;
     }
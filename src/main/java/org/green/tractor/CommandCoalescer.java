@@ -0,0 +1,128 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.util.function.Consumer;
+
+/**
+ * Read-only commands executed by the worker within the current batch of the commands, indexed by their class
+ * and key. The table is lossy: a colliding command replaces the previous one, which only costs one more
+ * execution. The executed commands are kept unreleased until they are evicted or the batch ends, since
+ * their results are copied from. The batch ends after a bounded number of the read-only commands as well,
+ * so, a storm of the queries, which keeps the queue of the commands non-empty, doesn't hold their callers
+ * back. Used by the worker's thread only.
+ */
+final class CommandCoalescer {
+    private final ReadOnlyCommand[] executed;
+    private final long[] batches; // batch, in which the command has been put into the slot
+    private final int mask;
+    private final int batchLimit;
+    private final Consumer<Command> releaser;
+
+    private long batch = 1;
+    private int numberOfExecuted;
+    private int numberOfCommands; // read-only commands completed within the current batch
+
+    /**
+     * @param capacity number of the slots, must be a power of two
+     * @param batchLimit number of the read-only commands, after which the batch ends
+     * @param releaser completes the executed commands, which are not needed anymore
+     */
+    CommandCoalescer(final int capacity, final int batchLimit, final Consumer<Command> releaser) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two: " + capacity);
+        }
+        if (batchLimit < 1) {
+            throw new IllegalArgumentException("Batch limit must be positive: " + batchLimit);
+        }
+        executed = new ReadOnlyCommand[capacity];
+        batches = new long[capacity];
+        mask = capacity - 1;
+        this.batchLimit = batchLimit;
+        this.releaser = releaser;
+    }
+
+    /**
+     * @param command command to be executed
+     * @return the identical command executed in the current batch or null
+     */
+    @SuppressWarnings("unchecked")
+    ReadOnlyCommand<?> find(final ReadOnlyCommand<?> command) {
+        final int index = index(command);
+        if (batches[index] != batch) {
+            return null;
+        }
+        final ReadOnlyCommand other = executed[index];
+        if (other.typeId() != command.typeId() ||
+                other.coalescingKey() != command.coalescingKey() ||
+                !((ReadOnlyCommand) command).coalescesWith(other)) {
+            return null;
+        }
+        return other;
+    }
+
+    void executed(final ReadOnlyCommand<?> command) {
+        final int index = index(command);
+        if (batches[index] == batch) {
+            releaser.accept(executed[index]);
+        } else {
+            batches[index] = batch;
+            numberOfExecuted++;
+        }
+        executed[index] = command;
+    }
+
+    /**
+     * Counts the read-only command, which has been executed or completed with a copy, and ends the batch
+     * if the limit is reached.
+     */
+    void commandDone() {
+        if (++numberOfCommands >= batchLimit) {
+            endBatch();
+        }
+    }
+
+    /**
+     * Releases all the executed commands, the next commands will be executed again.
+     */
+    void endBatch() {
+        numberOfCommands = 0;
+        if (numberOfExecuted == 0) {
+            return;
+        }
+        for (int i = 0; i < executed.length; i++) {
+            if (batches[i] == batch) {
+                releaser.accept(executed[i]);
+                executed[i] = null;
+            }
+        }
+        numberOfExecuted = 0;
+        batch++;
+    }
+
+    private int index(final ReadOnlyCommand<?> command) {
+        final long h = (command.coalescingKey() ^ ((long) command.typeId() << 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+}
\ No newline at end of file
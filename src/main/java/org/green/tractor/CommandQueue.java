@@ -0,0 +1,161 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+abstract class CommandQueuePad0 {
+    protected long p01, p02, p03, p04, p05, p06, p07;
+    protected long p08, p09, p010, p011, p012, p013, p014, p015;
+}
+
+abstract class CommandQueueTail extends CommandQueuePad0 {
+    protected volatile long tail; // sequence of the next command to be offered, claimed by the callers with CAS
+}
+
+abstract class CommandQueuePad1 extends CommandQueueTail {
+    protected long p11, p12, p13, p14, p15, p16, p17;
+    protected long p18, p19, p110, p111, p112, p113, p114, p115;
+}
+
+abstract class CommandQueueHead extends CommandQueuePad1 {
+    protected volatile long head; // sequence of the next command to be taken, written by the worker only
+}
+
+abstract class CommandQueuePad2 extends CommandQueueHead {
+    protected long p21, p22, p23, p24, p25, p26, p27;
+    protected long p28, p29, p210, p211, p212, p213, p214, p215;
+}
+
+abstract class DoorbellPending extends CommandQueuePad2 {
+    protected volatile int doorbellPending;
+}
+
+abstract class CommandQueuePad3 extends DoorbellPending {
+    protected long p31, p32, p33, p34, p35, p36, p37;
+    protected long p38, p39, p310, p311, p312, p313, p314, p315;
+}
+
+/**
+ * Bounded queue of the commands offered by many callers and taken by the worker. The callers don't wait
+ * for each other, so, many commands can be in flight at once. Only the caller, which finds no doorbell pending,
+ * sends the doorbell through the cab, where it has the priority over the entries, and the worker takes
+ * all the queued commands at once for one doorbell.
+ */
+final class CommandQueue extends CommandQueuePad3 {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final long TAIL_OFFSET;
+    private static final long HEAD_OFFSET;
+    private static final long DOORBELL_PENDING_OFFSET;
+    private static final long LONG_ARRAY_BASE = UNSAFE.arrayBaseOffset(long[].class);
+
+    static final Future<VoidResult> DOORBELL = () -> null; // the cab's message, never executed
+
+    static {
+        try {
+            TAIL_OFFSET = UNSAFE.objectFieldOffset(CommandQueueTail.class.getDeclaredField("tail"));
+            HEAD_OFFSET = UNSAFE.objectFieldOffset(CommandQueueHead.class.getDeclaredField("head"));
+            DOORBELL_PENDING_OFFSET = UNSAFE.objectFieldOffset(
+                    DoorbellPending.class.getDeclaredField("doorbellPending"));
+        } catch (final Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    private final Object[] commands;
+    private final long[] offeredSequences; // sequence of the command offered into the slot
+    private final int mask;
+
+    CommandQueue(final int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two: " + capacity);
+        }
+        commands = new Object[capacity];
+        offeredSequences = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            offeredSequences[i] = -1;
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Can be called by any thread.
+     * @param command command to pass to the worker
+     * @return false if the queue is full
+     */
+    boolean offer(final Command command) {
+        long t;
+        do {
+            t = tail;
+            if (t - head >= commands.length) { // volatile read of the head, the slot may be still taken otherwise
+                return false;
+            }
+        } while (!UNSAFE.compareAndSwapLong(this, TAIL_OFFSET, t, t + 1));
+
+        final int index = (int) t & mask;
+        commands[index] = command;
+        UNSAFE.putLongVolatile(offeredSequences, sequenceAddress(index), t); // volatile write publishes
+        // the command to the worker and orders it before the check of the doorbell
+        return true;
+    }
+
+    /**
+     * Called by the caller, which has offered a command.
+     * @return true if the caller has to send the doorbell to the worker
+     */
+    boolean doorbellRequired() {
+        return doorbellPending == 0 && UNSAFE.compareAndSwapInt(this, DOORBELL_PENDING_OFFSET, 0, 1);
+    }
+
+    /**
+     * Called by the worker, which has taken the doorbell, before it takes the commands.
+     */
+    void doorbellTaken() {
+        UNSAFE.putIntVolatile(this, DOORBELL_PENDING_OFFSET, 0);
+        UNSAFE.fullFence(); // StoreLoad: either the worker takes the command offered after this point,
+        // or the caller finds no doorbell pending and sends a new one
+    }
+
+    /**
+     * Called by the worker only.
+     * @return the next command or null if there are no commands offered
+     */
+    Command poll() {
+        final long h = head;
+        final int index = (int) h & mask;
+        if (UNSAFE.getLongVolatile(offeredSequences, sequenceAddress(index)) != h) {
+            return null;
+        }
+        final Command command = (Command) commands[index];
+        commands[index] = null;
+        UNSAFE.putOrderedLong(this, HEAD_OFFSET, h + 1); // <membar StoreStore> frees the slot
+        return command;
+    }
+
+    private static long sequenceAddress(final int index) {
+        return LONG_ARRAY_BASE + ((long) index << 3);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns dense ids to the classes of commands, so, executors can dispatch the commands through an array.
+ */
+final class CommandTypes {
+    private static final AtomicInteger NEXT_TYPE_ID = new AtomicInteger();
+
+    private static final ClassValue<Integer> TYPE_IDS = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(final Class<?> type) {
+            return NEXT_TYPE_ID.getAndIncrement();
+        }
+    };
+
+    private CommandTypes() {
+    }
+
+    static int typeId(final Class<? extends Command> commandClass) {
+        return TYPE_IDS.get(commandClass);
+    }
+}
@@ -29,17 +29,42 @@ import java.util.List;
 public class DefaultExecutor<E extends Entry, L extends TractorListener> implements Executor<E> {
     private final List<L> listeners = new ArrayList<>();
 
+    private CommandHandler[] commandHandlers = new CommandHandler[0]; // indexed by the commands' type ids
+
     private final String name;
 
     protected final ErrorHandler errorHandler;
 
+    private final ListenerNotifier notifier; // null if the listeners are notified by the worker
+
     public DefaultExecutor(final String name) {
         this(name, new JulLoggingErrorHandler(DefaultExecutor.class));
     }
 
     public DefaultExecutor(final String name, final ErrorHandler errorHandler) {
+        this(name, errorHandler, null);
+    }
+
+    /**
+     * @param name name of the executor
+     * @param errorHandler handler of the errors
+     * @param notifier notifier, which delivers the notifications about adding/removing of listeners, starting
+     *                 and stopping in its own threads, or null to notify the listeners by the worker
+     */
+    public DefaultExecutor(final String name, final ErrorHandler errorHandler, final ListenerNotifier notifier) {
         this.name = name;
         this.errorHandler = errorHandler;
+        this.notifier = notifier;
+
+        if (notifier != null) {
+            notifier.bind(this);
+        }
+
+        registerCommandHandler(AddListener.class, this::addListener);
+        registerCommandHandler(RemoveListener.class, this::removeListener);
+        registerCommandHandler(Start.class, this::start);
+        registerCommandHandler(Stop.class, this::stop);
+        registerCommandHandler(RunOnWorker.class, this::runOnWorker);
     }
 
     @Override
@@ -52,80 +77,88 @@ public class DefaultExecutor<E extends Entry, L extends TractorListener> impleme
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public final void executeCommand(final Command command) {
-        if (tryAddListener(command)) {
-            return;
-        }
-
-        if (tryRemoveListener(command)) {
-            return;
-        }
-
-        if (tryStart(command)) {
-            return;
-        }
-
-        if (tryStop(command)) {
-            return;
+        final int typeId = command.typeId();
+
+        final CommandHandler[] handlers = commandHandlers;
+        if (typeId < handlers.length) {
+            final CommandHandler handler = handlers[typeId];
+            if (handler != null) {
+                handler.handle(command, listeners);
+                return;
+            }
         }
 
         doCustom(command, listeners);
     }
 
-    @SuppressWarnings("unchecked")
-    private boolean tryAddListener(final Command command) {
-        if (!(command instanceof AddListener)) {
-            return false;
+    /**
+     * Registers the handler of the commands of the class. The commands without registered handlers
+     * are passed to {@link #doCustom(Command, List)}. Must be called before the executor is passed to a tractor,
+     * in the constructor for example.
+     * @param commandClass exact class of the commands
+     * @param handler handler of the commands
+     * @param <C> type of the commands
+     */
+    protected final <C extends Command> void registerCommandHandler(
+            final Class<C> commandClass,
+            final CommandHandler<C, L> handler) {
+
+        final int typeId = CommandTypes.typeId(commandClass);
+        if (typeId >= commandHandlers.length) {
+            final CommandHandler[] grown = new CommandHandler[typeId + 1];
+            System.arraycopy(commandHandlers, 0, grown, 0, commandHandlers.length);
+            commandHandlers = grown;
         }
+        commandHandlers[typeId] = handler;
+    }
 
-        final AddListener addListener = (AddListener) command;
+    @SuppressWarnings("unchecked")
+    private void addListener(final AddListener addListener, final List<L> listeners) {
         final L listener = (L) addListener.listener();
 
         listeners.add(listener);
 
+        if (notifier != null) {
+            notifier.publish(ListenerNotifier.ADD_LISTENER, this, addListener.result(), listener);
+            return;
+        }
+
         for (int i = 0; i < listeners.size(); i++) {
             try {
                 listeners.get(i).onAddProcessListener(this, addListener.result());
             } catch (final Exception e) {
                 errorHandler.onError(this,
-                        "An error while onAddProcessListener succeeded notification: " +
-                                e.getLocalizedMessage(), e);
+                        "An error while onAddProcessListener succeeded notification", listeners.get(i), e);
             }
         }
-
-        return true;
     }
 
     @SuppressWarnings("unchecked")
-    private boolean tryRemoveListener(final Command command) {
-        if (!(command instanceof RemoveListener)) {
-            return false;
-        }
-
-        final RemoveListener removeListener = (RemoveListener) command;
+    private void removeListener(final RemoveListener removeListener, final List<L> listeners) {
         final L listener = (L) removeListener.listener();
 
+        if (notifier != null) {
+            listeners.remove(listener);
+            notifier.publish(ListenerNotifier.REMOVE_LISTENER, this, removeListener.result(), listener);
+            return;
+        }
+
         for (int i = 0; i < listeners.size(); i++) {
             try {
                 listeners.get(i).onRemoveProcessListener(this, removeListener.result());
             } catch (final Exception e) {
                 errorHandler.onError(this,
-                        "An error while tryRemoveListener succeeded notification: " +
-                                e.getLocalizedMessage(), e);
+                        "An error while tryRemoveListener succeeded notification", listeners.get(i), e);
             }
         }
 
         listeners.remove(listener);
-
-        return true;
     }
 
-    private boolean tryStart(final Command command) {
-        if (!(command instanceof Start)) {
-            return false;
-        }
-
-        final VoidResult result = ((Start) command).result();
+    private void start(final Start start, final List<L> listeners) {
+        final VoidResult result = start.result();
 
         try {
             doStart();
@@ -133,24 +166,22 @@ public class DefaultExecutor<E extends Entry, L extends TractorListener> impleme
             applyError(result, e);
         }
 
+        if (notifier != null) {
+            notifier.publish(ListenerNotifier.START, this, result, null);
+            return;
+        }
+
         for (int i = 0; i < listeners.size(); i++) {
             try {
                 listeners.get(i).onStart(this, result);
             } catch (final Exception e) {
-                errorHandler.onError(this, "An error while onStart notification: " +
-                        e.getLocalizedMessage(), e);
+                errorHandler.onError(this, "An error while onStart notification", listeners.get(i), e);
             }
         }
-
-        return true;
     }
 
-    private boolean tryStop(final Command command) {
-        if (!(command instanceof Stop)) {
-            return false;
-        }
-
-        final VoidResult result = ((Stop) command).result();
+    private void stop(final Stop stop, final List<L> listeners) {
+        final VoidResult result = stop.result();
 
         try {
             doStop();
@@ -158,16 +189,26 @@ public class DefaultExecutor<E extends Entry, L extends TractorListener> impleme
             applyError(result, e);
         }
 
+        if (notifier != null) {
+            notifier.publish(ListenerNotifier.STOP, this, result, null);
+            return;
+        }
+
         for (int i = 0; i < listeners.size(); i++) {
             try {
                 listeners.get(i).onStop(this, result);
             } catch (final Exception e) {
-                errorHandler.onError(this, "An error while onStop notification: " +
-                        e.getLocalizedMessage(), e);
+                errorHandler.onError(this, "An error while onStop notification", listeners.get(i), e);
             }
         }
+    }
 
-        return true;
+    private void runOnWorker(final RunOnWorker runOnWorker, final List<L> listeners) {
+        try {
+            runOnWorker.task().run();
+        } catch (final Exception e) {
+            applyError(runOnWorker.result(), e);
+        }
     }
 
     protected final void applyError(final ErrorableResult result, final Exception error) {
@@ -25,6 +25,8 @@ package org.green.tractor;
 
 import org.green.cab.Cab;
 
+import java.nio.channels.Selector;
+
 public class DefaultTractor
         <E extends Entry, X extends Executor<E>, L extends TractorListener<E, X>>
         extends AbstractTractor<E, X, L> {
@@ -33,6 +35,41 @@ public class DefaultTractor
         super(cab, executor);
     }
 
+    /**
+     * @param cab the ring of the commands
+     * @param executor executor of the entries and the commands
+     * @param exceptionHandler handler of the errors of the worker, see {@link AggregatingErrorHandler}
+     */
+    public DefaultTractor(
+            final Cab<E, Future> cab,
+            final Executor<E> executor,
+            final ErrorHandler exceptionHandler) {
+        super(cab, executor, exceptionHandler);
+    }
+
+    /**
+     * @param cab the ring of the commands
+     * @param executor executor of the entries and the commands
+     * @param laneCapacity capacity of the lane of each entry sender, must be a power of two
+     */
+    public DefaultTractor(final Cab<E, Future> cab, final Executor<E> executor, final int laneCapacity) {
+        super(cab, executor, new JulLoggingErrorHandler(AbstractTractor.class), laneCapacity);
+    }
+
+    /**
+     * @param cab the ring of the commands
+     * @param executor executor of the entries and the commands
+     * @param laneCapacity capacity of the lane of each entry sender, must be a power of two
+     * @param selector selector the worker waits in and handles the readiness of the registered channels
+     */
+    public DefaultTractor(
+            final Cab<E, Future> cab,
+            final Executor<E> executor,
+            final int laneCapacity,
+            final Selector selector) {
+        super(cab, executor, new JulLoggingErrorHandler(AbstractTractor.class), laneCapacity, selector);
+    }
+
     @Override
     public final Future<ListenerResult> addListener(final L listener)
             throws TractorClosedException, InterruptedException {
@@ -60,4 +97,20 @@ public class DefaultTractor
     public final Future<VoidResult> stop() throws TractorClosedException, InterruptedException {
         return executeCommand(prepareCommand(Stop.class));
     }
+
+    /**
+     * Runs the task on the worker's thread between the entries, so, the task can access the state
+     * of the executor without any synchronization.
+     * @param task task to run
+     * @return future of the result, which contains an exception thrown by the task, if any
+     * @throws TractorClosedException if the tractor is closed
+     * @throws InterruptedException if interrupted while waiting for the ring
+     */
+    public final Future<VoidResult> runOnWorker(final Runnable task)
+            throws TractorClosedException, InterruptedException {
+
+        final RunOnWorker result = prepareCommand(RunOnWorker.class);
+        result.setTask(task);
+        return executeCommand(result);
+    }
 }
\ No newline at end of file
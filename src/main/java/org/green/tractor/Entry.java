@@ -23,5 +23,41 @@
  */
 package org.green.tractor;
 
+import java.util.concurrent.TimeUnit;
+
 public abstract class Entry extends PoolableObject {
+    long sendTime; // set by the sender if latencies are recorded, read by the worker
+    long enqueueTime; // set by the sender if the load shedding is on, read by the worker
+    long deadline; // set by the sender, read by the worker, 0 if none
+    boolean forwardingStopped; // accessed by the worker, which processes the entry
+
+    /**
+     * Sets the deadline of the entry. If the worker takes the entry after the deadline, the entry is dropped
+     * without processing and {@link Executor#entryExpired(Entry)} is called instead.
+     * @param timeout time from now the entry has to be processed within
+     * @param unit unit of the timeout
+     */
+    public final void expireAfter(final long timeout, final TimeUnit unit) {
+        deadline = CachedClock.nanoTime() + unit.toNanos(timeout);
+    }
+
+    /**
+     * @return deadline of the entry in terms of {@link CachedClock#nanoTime()} or 0 if none
+     */
+    public final long deadline() {
+        return deadline;
+    }
+
+    /**
+     * Makes the worker release the entry after processing instead of forwarding it to the next stage
+     * of the {@link TractorPipeline}. Must be called from {@link Executor#processEntry(Entry)} only.
+     */
+    public final void stopForwarding() {
+        forwardingStopped = true;
+    }
+
+    @Override
+    void onReleased() {
+        deadline = 0;
+    }
 }
\ No newline at end of file
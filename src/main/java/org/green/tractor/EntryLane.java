@@ -0,0 +1,142 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+abstract class EntryLanePad0 {
+    protected long p01, p02, p03, p04, p05, p06, p07;
+    protected long p08, p09, p010, p011, p012, p013, p014, p015;
+}
+
+abstract class EntryLaneTail extends EntryLanePad0 {
+    protected volatile long tail; // sequence of the next entry to be sent, written by the sender only
+    protected long cachedHead; // the last head seen by the sender
+}
+
+abstract class EntryLanePad1 extends EntryLaneTail {
+    protected long p11, p12, p13, p14, p15, p16, p17;
+    protected long p18, p19, p110, p111, p112, p113, p114, p115;
+}
+
+abstract class EntryLaneHead extends EntryLanePad1 {
+    protected volatile long head; // sequence of the next entry to be taken, written by the worker only
+    protected long cachedTail; // the last tail seen by the worker
+}
+
+abstract class EntryLanePad2 extends EntryLaneHead {
+    protected long p21, p22, p23, p24, p25, p26, p27;
+    protected long p28, p29, p210, p211, p212, p213, p214, p215;
+}
+
+/**
+ * Ring of entries between one single sender and the worker. The sender and the worker never write
+ * the same cache line, so, the lanes of different senders don't contend at all.
+ */
+final class EntryLane extends EntryLanePad2 {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final long TAIL_OFFSET;
+    private static final long HEAD_OFFSET;
+
+    static {
+        try {
+            TAIL_OFFSET = UNSAFE.objectFieldOffset(EntryLaneTail.class.getDeclaredField("tail"));
+            HEAD_OFFSET = UNSAFE.objectFieldOffset(EntryLaneHead.class.getDeclaredField("head"));
+        } catch (final Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    private final Object[] entries;
+    private final int mask;
+    private final int batchSize;
+
+    boolean closed; // the sender won't put anything into the lane anymore, guarded by EntryLanes
+
+    /**
+     * @param capacity number of the entries the lane can hold, must be a power of two
+     * @param batchSize maximum number of the entries the worker takes from the lane in one turn
+     */
+    EntryLane(final int capacity, final int batchSize) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two: " + capacity);
+        }
+        entries = new Object[capacity];
+        mask = capacity - 1;
+        this.batchSize = batchSize;
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+
+    // called by the sender only
+    boolean offer(final Object entry) {
+        final long t = tail;
+        if (t - cachedHead == entries.length) {
+            cachedHead = head; // volatile read leads to <membar LoadLoad|LoadStore>
+            if (t - cachedHead == entries.length) {
+                return false;
+            }
+        }
+        entries[(int) t & mask] = entry;
+        UNSAFE.putOrderedLong(this, TAIL_OFFSET, t + 1); // <membar StoreStore> publishes the entry
+        return true;
+    }
+
+    // called by the worker only
+    long head() {
+        return head;
+    }
+
+    /**
+     * Called by the worker only.
+     * @param h the current head
+     * @return number of the entries, which can be taken in this turn starting from the head
+     */
+    int available(final long h) {
+        long available = cachedTail - h;
+        if (available == 0) {
+            cachedTail = tail; // volatile read leads to <membar LoadLoad|LoadStore>
+            available = cachedTail - h;
+        }
+        return (int) Math.min(available, batchSize);
+    }
+
+    // called by the worker only, the entry is visible after available() has counted it
+    Object entry(final long sequence) {
+        return entries[(int) sequence & mask];
+    }
+
+    // called by the worker only
+    void taken(final long newHead) {
+        UNSAFE.putOrderedLong(this, HEAD_OFFSET, newHead); // <membar StoreStore> frees the slots
+    }
+
+    boolean isEmpty() {
+        return tail == head;
+    }
+}
\ No newline at end of file
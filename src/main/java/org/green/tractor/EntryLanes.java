@@ -0,0 +1,235 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+abstract class EntryLanesPad0 {
+    protected long p01, p02, p03, p04, p05, p06, p07;
+    protected long p08, p09, p010, p011, p012, p013, p014, p015;
+}
+
+abstract class CabItems extends EntryLanesPad0 {
+    protected volatile long cabItems; // number of the items put into the cab
+}
+
+abstract class EntryLanesPad1 extends CabItems {
+    protected long p11, p12, p13, p14, p15, p16, p17;
+    protected long p18, p19, p110, p111, p112, p113, p114, p115;
+}
+
+abstract class WorkerWaiting extends EntryLanesPad1 {
+    protected volatile int workerWaiting;
+}
+
+abstract class EntryLanesPad2 extends WorkerWaiting {
+    protected long p21, p22, p23, p24, p25, p26, p27;
+    protected long p28, p29, p210, p211, p212, p213, p214, p215;
+}
+
+/**
+ * The lanes of all the entry senders of a tractor. While there are entries in the lanes, the worker
+ * polls them in turn and takes the cab's items, commands first of all, only when the cab has them, what
+ * is known from the counter of the items put into the cab. When everything is empty, the worker blocks
+ * in the cab and the sender, which finds the worker waiting, wakes it up with a doorbell entry sent
+ * through the cab. The lane of a closed sender is dropped by the worker, when it's drained.
+ */
+final class EntryLanes extends EntryLanesPad2 {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final long CAB_ITEMS_OFFSET;
+    private static final long WORKER_WAITING_OFFSET;
+
+    static {
+        try {
+            CAB_ITEMS_OFFSET = UNSAFE.objectFieldOffset(CabItems.class.getDeclaredField("cabItems"));
+            WORKER_WAITING_OFFSET = UNSAFE.objectFieldOffset(
+                    WorkerWaiting.class.getDeclaredField("workerWaiting"));
+        } catch (final Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    private final int laneCapacity;
+
+    private volatile EntryLane[] lanes = new EntryLane[0]; // guarded by this on write
+    private volatile LongLane[] longLanes = new LongLane[0]; // guarded by this on write
+    private volatile int closedLanes; // number of the closed lanes, which are not dropped yet, guarded by this on write
+
+    EntryLanes(final int laneCapacity) {
+        if (laneCapacity < 1 || Integer.bitCount(laneCapacity) != 1) {
+            throw new IllegalArgumentException("Lane capacity must be a positive power of two: " + laneCapacity);
+        }
+        this.laneCapacity = laneCapacity;
+    }
+
+    int laneCapacity() {
+        return laneCapacity;
+    }
+
+    synchronized EntryLane newLane(final int batchSize) {
+        final EntryLane lane = new EntryLane(laneCapacity, batchSize);
+        final EntryLane[] current = lanes;
+        final EntryLane[] grown = new EntryLane[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = lane;
+        lanes = grown; // volatile write publishes the lane to the worker
+        return lane;
+    }
+
+    EntryLane[] lanes() {
+        return lanes;
+    }
+
+    synchronized LongLane newLongLane(final int batchSize, final int channel) {
+        final LongLane lane = new LongLane(laneCapacity, batchSize, channel);
+        final LongLane[] current = longLanes;
+        final LongLane[] grown = new LongLane[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = lane;
+        longLanes = grown; // volatile write publishes the lane to the worker
+        return lane;
+    }
+
+    LongLane[] longLanes() {
+        return longLanes;
+    }
+
+    /**
+     * Called by the sender of the lane after its last entry has been put into the lane. The worker drops
+     * the lane as soon as the lane is drained.
+     */
+    synchronized void close(final EntryLane lane) {
+        lane.closed = true;
+        closedLanes++; // volatile write publishes the closing to the worker
+    }
+
+    // the same as close(EntryLane)
+    synchronized void close(final LongLane lane) {
+        lane.closed = true;
+        closedLanes++;
+    }
+
+    // called by the worker only
+    boolean hasClosedLanes() {
+        return closedLanes != 0;
+    }
+
+    /**
+     * Drops the closed lanes, which have been drained, so, the worker doesn't poll them anymore.
+     * Called by the worker only.
+     */
+    synchronized void dropDrainedLanes() {
+        final EntryLane[] current = lanes;
+        int kept = 0;
+        for (int i = 0; i < current.length; i++) {
+            if (!current[i].closed || !current[i].isEmpty()) {
+                kept++;
+            }
+        }
+        if (kept != current.length) {
+            final EntryLane[] shrunk = new EntryLane[kept];
+            for (int i = 0, j = 0; i < current.length; i++) {
+                if (!current[i].closed || !current[i].isEmpty()) {
+                    shrunk[j++] = current[i];
+                }
+            }
+            lanes = shrunk;
+            closedLanes -= current.length - kept;
+        }
+
+        final LongLane[] currentLong = longLanes;
+        kept = 0;
+        for (int i = 0; i < currentLong.length; i++) {
+            if (!currentLong[i].closed || !currentLong[i].isEmpty()) {
+                kept++;
+            }
+        }
+        if (kept != currentLong.length) {
+            final LongLane[] shrunk = new LongLane[kept];
+            for (int i = 0, j = 0; i < currentLong.length; i++) {
+                if (!currentLong[i].closed || !currentLong[i].isEmpty()) {
+                    shrunk[j++] = currentLong[i];
+                }
+            }
+            longLanes = shrunk;
+            closedLanes -= currentLong.length - kept;
+        }
+    }
+
+    int capacity() {
+        return lanes.length * laneCapacity;
+    }
+
+    boolean isEmpty() {
+        final EntryLane[] current = lanes;
+        for (int i = 0; i < current.length; i++) {
+            if (!current[i].isEmpty()) {
+                return false;
+            }
+        }
+        final LongLane[] currentLong = longLanes;
+        for (int i = 0; i < currentLong.length; i++) {
+            if (!currentLong[i].isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Must be called after an item has been put into the cab.
+     */
+    void cabItemAdded() {
+        UNSAFE.getAndAddLong(this, CAB_ITEMS_OFFSET, 1);
+    }
+
+    /**
+     * Called by the worker only.
+     * @param taken number of the items the worker has taken from the cab
+     * @return true if the cab has items for the worker for sure
+     */
+    boolean hasCabItems(final long taken) {
+        return cabItems - taken > 0; // the worker can take an item before it's counted, so, not !=
+    }
+
+    // called by the worker only
+    void workerWaiting(final boolean waiting) {
+        UNSAFE.putIntVolatile(this, WORKER_WAITING_OFFSET, waiting ? 1 : 0);
+        if (waiting) {
+            UNSAFE.fullFence(); // StoreLoad: either the sender sees the worker waiting, or the worker
+            // sees the sender's entry in the lane
+        }
+    }
+
+    /**
+     * Called by a sender after an entry has been put into its lane.
+     * @return true if the worker waits and the caller has to wake it up
+     */
+    boolean wakeUpRequired() {
+        UNSAFE.fullFence(); // StoreLoad, see workerWaiting()
+        return workerWaiting == 1 && UNSAFE.compareAndSwapInt(this, WORKER_WAITING_OFFSET, 1, 0);
+    }
+}
\ No newline at end of file
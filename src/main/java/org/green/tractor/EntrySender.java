@@ -23,8 +23,17 @@
  */
 package org.green.tractor;
 
-public interface EntrySender<E extends Entry> {
+public interface EntrySender<E extends Entry> extends AutoCloseable {
 
     EntryEnvelope<E> nextEnvelope();
 
+    /**
+     * Retires the sender. Its lane, if any, is dropped by the worker as soon as it's drained, its share
+     * of the entries' pool is reused by the next senders and an entry borrowed, but not sent, is returned
+     * to the pool. Must be called by the sender's thread. The senders of the terminated threads are retired
+     * by the tractor, when a new sender is created.
+     */
+    @Override
+    void close();
+
 }
\ No newline at end of file
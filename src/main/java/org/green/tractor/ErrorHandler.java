@@ -33,4 +33,18 @@ public interface ErrorHandler {
      */
     void onError(Object in, String message, Throwable t);
 
+    /**
+     * Reports an error of a site, which can fail repeatedly, for example, processing of the entries.
+     * The default implementation formats the message as the site and the subject, an implementation can
+     * aggregate the errors by the site without formatting them, see {@link AggregatingErrorHandler}.
+     * IMPORTANT! The method MUST NOT throw any exception.
+     * @param in An object the error happened in
+     * @param site constant text of the site
+     * @param subject an object the error happened with, can be null
+     * @param t error
+     */
+    default void onError(final Object in, final String site, final Object subject, final Throwable t) {
+        onError(in, subject == null ? site : site + ": " + subject, t);
+    }
+
 }
\ No newline at end of file
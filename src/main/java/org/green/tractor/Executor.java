@@ -31,4 +31,12 @@ public interface Executor<E extends Entry> {
 
     void executeCommand(Command command) throws Exception;
 
+    /**
+     * Called by the worker instead of {@link #processEntry(Entry)} if the entry is dropped
+     * because of its deadline or the load shedding. The entry isn't available after the method returns.
+     * @param entry dropped entry
+     */
+    default void entryExpired(final E entry) {
+    }
+
 }
\ No newline at end of file
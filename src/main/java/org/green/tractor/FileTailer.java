@@ -0,0 +1,385 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * Source of a tractor, which tails append-only files: a growing file or a sequence of segments. The tailer
+ * memory-maps the file, decodes the records with a {@link FrameDecoder} straight into the envelopes of its
+ * entry sender and, while there are no new records, polls the file with backing off instead of reading it.
+ * <p>
+ * The position after the last record sent to the tractor is committed once per batch into a small
+ * memory-mapped position file, so, a restarted tailer goes on from there. The records sent, but not processed
+ * by the tractor, when the process stops, are not replayed.
+ * <p>
+ * A record must be appended at once or the decoder must see its incomplete part as incomplete, for example,
+ * a preallocated file must be filled with zeros and the zero length of a record means the end of the data.
+ * The next segment must be created only after the last record of the previous one has been written.
+ * <p>
+ * The file is mapped by the windows of the map size and a full window is remapped only after a half of it has
+ * been consumed, so, a record must not exceed a half of the map size. The tail of a growing file, which is
+ * shorter than the map size, isn't mapped, but read into a small reused buffer on every growth seen, so,
+ * neither a growing file nor a segment preallocated and filled with zeros up front is mapped more often than
+ * once per a half of the map size. The old mappings are released by the GC.
+ * @param <EE> type of the entries
+ */
+public final class FileTailer<EE extends Entry> implements AutoCloseable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int SEGMENT_SHIFT = 40; // the position is the segment and the offset in one long
+    private static final long OFFSET_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int MAX_TAIL_SIZE = 64 * 1024; // a longer record in the tail is mapped instead
+
+    private static final int RECORDS_SENT = 0;
+    private static final int REMAPPINGS = 1;
+
+    private final Tractor<? super EE, ?, ?> tractor;
+    private final Class<EE> classOfEntry;
+    private final FrameDecoder<? super EE> decoder;
+    private final IntFunction<Path> segments;
+    private final int mapSize;
+    private final int batchSize;
+    private final ErrorHandler errorHandler;
+
+    private final FileChannel positionChannel;
+    private final MappedByteBuffer positionFile;
+
+    private final SingleWriterCounters counters = new SingleWriterCounters(REMAPPINGS + 1);
+    private volatile long committedPosition;
+
+    // accessed by the tailer's thread only
+    private int segment;
+    private FileChannel channel;
+    private ByteBuffer window; // a mapping of the file or the tail
+    private long windowStart;
+    private ByteBuffer tail; // the bytes of a growing file up to its end, allocated once it's first read
+    private boolean nextSegmentSeen; // the records of this segment are decoded once more, when the next one appears
+    private EntryEnvelope<EE> envelope;
+
+    private volatile boolean running = true; // the thread isn't interrupted, what would close the channels
+    private final Thread thread;
+
+    public static <EE extends Entry> Builder<EE> builder(
+            final Tractor<? super EE, ?, ?> tractor,
+            final Class<EE> classOfEntry,
+            final FrameDecoder<? super EE> decoder) {
+        return new Builder<>(tractor, classOfEntry, decoder);
+    }
+
+    private FileTailer(final Builder<EE> builder) throws IOException {
+        tractor = builder.tractor;
+        classOfEntry = builder.classOfEntry;
+        decoder = builder.decoder;
+        segments = builder.segments;
+        mapSize = builder.mapSize;
+        batchSize = builder.batchSize;
+        errorHandler = builder.errorHandler;
+
+        positionChannel = FileChannel.open(builder.positionFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        positionFile = positionChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        committedPosition = positionFile.getLong(0);
+
+        thread = new Thread(this::run, "FileTailer-" + classOfEntry.getSimpleName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the segment of the position after the last record sent to the tractor
+     */
+    public int committedSegment() {
+        return (int) (committedPosition >>> SEGMENT_SHIFT);
+    }
+
+    /**
+     * @return the offset in the segment of the position after the last record sent to the tractor
+     */
+    public long committedOffset() {
+        return committedPosition & OFFSET_MASK;
+    }
+
+    public long recordsSent() {
+        return counters.get(RECORDS_SENT);
+    }
+
+    /**
+     * @return number of the mappings of the files, a file is remapped once per a half of the map size
+     */
+    public long remappings() {
+        return counters.get(REMAPPINGS);
+    }
+
+    /**
+     * Stops tailing, commits the position and closes the files. The entries sent before are processed
+     * by the tractor.
+     */
+    @Override
+    public void close() throws InterruptedException, IOException {
+        running = false;
+        thread.join();
+
+        positionFile.force();
+        positionChannel.close();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void run() {
+        // bound to this thread, the envelope borrowed, but not sent, is returned to the tractor on the exit
+        try (EntrySender<EE> sender = tractor.newEntrySender(classOfEntry)) {
+            envelope = sender.nextEnvelope();
+
+            final long position = committedPosition;
+            if (!open((int) (position >>> SEGMENT_SHIFT), position & OFFSET_MASK)) {
+                return;
+            }
+
+            int idles = 0;
+            while (running) {
+                final int sent = poll(sender);
+                if (sent < 0) {
+                    return;
+                }
+                if (sent > 0) {
+                    idles = 0;
+                } else {
+                    BackOff.idle(idles++, IDLE_PARK_NANOS);
+                }
+            }
+        } catch (final TractorClosedException | InterruptedException e) {
+            // the tractor is closed, nowhere to send to
+        } catch (final Throwable t) {
+            errorHandler.onError(this, "An error in " + thread.getName() + ": " + t.getLocalizedMessage(), t);
+        }
+    }
+
+    /**
+     * Sends a batch of the records and commits the position after them.
+     * @return number of the records sent, -1 if a record is malformed and the tailing has to stop
+     */
+    private int poll(final EntrySender<EE> sender) throws IOException, TractorClosedException, InterruptedException {
+        int sent = 0;
+        while (sent < batchSize) {
+            if (window.hasRemaining()) {
+                final boolean decoded;
+                try {
+                    decoded = decoder.decode(window, envelope.entry());
+                } catch (final Exception e) {
+                    errorHandler.onError(this, "An error while decoding the record at " + position() +
+                            " of " + segments.apply(segment) + ", the tailing is stopped", e);
+                    commit();
+                    return -1;
+                }
+                if (decoded) {
+                    envelope.send(); // waits while the tractor is full
+                    envelope = sender.nextEnvelope();
+                    sent++;
+                    continue;
+                }
+            }
+            if (!advance()) { // no new records
+                break;
+            }
+        }
+
+        if (sent > 0) {
+            counters.add(RECORDS_SENT, sent);
+            commit();
+        }
+        return sent;
+    }
+
+    // maps the new bytes of the segment or opens the next one, the window ends with an incomplete record or is over
+    private boolean advance() throws IOException {
+        final long size = channel.size();
+        if (size > windowStart + window.limit() && (window.limit() < mapSize || window.position() >= mapSize / 2)) {
+            view(position(), size);
+            return true;
+        }
+        final Path next = segments.apply(segment + 1);
+        if (next != null && Files.exists(next)) { // this segment is complete, but its zero-filled tail
+            if (!nextSegmentSeen) { // the records written just before the next segment was created
+                nextSegmentSeen = true;
+                return true;
+            }
+            channel.close();
+            return open(segment + 1, 0);
+        }
+        return false;
+    }
+
+    private boolean open(final int segment, final long offset) throws IOException {
+        final Path file = segments.apply(segment);
+        while (!Files.exists(file)) { // the first segment can be not created yet
+            if (!running) {
+                return false;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        this.segment = segment;
+        nextSegmentSeen = false;
+        window = null; // the tail of the previous segment isn't reused
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        view(offset, channel.size());
+        return true;
+    }
+
+    // maps a full window, if the file is long enough, or reads the tail of the file
+    private void view(final long position, final long size) throws IOException {
+        if (size - position >= mapSize) {
+            map(position, mapSize);
+            return;
+        }
+        if (tail == null) {
+            tail = ByteBuffer.allocateDirect(Math.max(1, Math.min(mapSize / 2, MAX_TAIL_SIZE)));
+        }
+        if (window == tail && windowStart == position && tail.limit() == tail.capacity()) { // a long record
+            map(position, size - position);
+            return;
+        }
+        tail.clear();
+        while (tail.hasRemaining()) {
+            if (channel.read(tail, position + tail.position()) <= 0) {
+                break; // the end of the file
+            }
+        }
+        tail.flip();
+        window = tail;
+        windowStart = position;
+    }
+
+    private void map(final long position, final long length) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        windowStart = position;
+        counters.increment(REMAPPINGS);
+    }
+
+    private long position() {
+        return windowStart + window.position();
+    }
+
+    private void commit() {
+        final long position = ((long) segment << SEGMENT_SHIFT) | position();
+        positionFile.putLong(0, position); // a single aligned store, so, it isn't torn
+        committedPosition = position;
+    }
+
+    public static final class Builder<EE extends Entry> {
+        private final Tractor<? super EE, ?, ?> tractor;
+        private final Class<EE> classOfEntry;
+        private final FrameDecoder<? super EE> decoder;
+
+        private IntFunction<Path> segments;
+        private Path positionFile;
+        private int mapSize = 64 * 1024 * 1024;
+        private int batchSize = 256;
+        private ErrorHandler errorHandler = new JulLoggingErrorHandler(FileTailer.class);
+
+        private Builder(
+                final Tractor<? super EE, ?, ?> tractor,
+                final Class<EE> classOfEntry,
+                final FrameDecoder<? super EE> decoder) {
+            this.tractor = tractor;
+            this.classOfEntry = classOfEntry;
+            this.decoder = decoder;
+        }
+
+        /**
+         * @param file growing file to be tailed
+         * @return this builder
+         */
+        public Builder<EE> file(final Path file) {
+            this.segments = segment -> segment == 0 ? file : null;
+            return this;
+        }
+
+        /**
+         * @param segments paths of the segments by their numbers starting from 0, null if there are no more
+         * @return this builder
+         */
+        public Builder<EE> segments(final IntFunction<Path> segments) {
+            this.segments = segments;
+            return this;
+        }
+
+        /**
+         * @param positionFile file keeping the position across the restarts, created if it doesn't exist
+         * @return this builder
+         */
+        public Builder<EE> positionFile(final Path positionFile) {
+            this.positionFile = positionFile;
+            return this;
+        }
+
+        /**
+         * @param mapSize max size of a mapping of a file, a record must not exceed a half of it
+         * @return this builder
+         */
+        public Builder<EE> mapSize(final int mapSize) {
+            if (mapSize < 1) {
+                throw new IllegalArgumentException("Map size must be positive: " + mapSize);
+            }
+            this.mapSize = mapSize;
+            return this;
+        }
+
+        /**
+         * @param batchSize max number of the records sent before the position is committed
+         * @return this builder
+         */
+        public Builder<EE> batchSize(final int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder<EE> errorHandler(final ErrorHandler errorHandler) {
+            this.errorHandler = errorHandler;
+            return this;
+        }
+
+        public FileTailer<EE> build() throws IOException {
+            if (segments == null) {
+                throw new IllegalStateException("Neither the file nor the segments are set");
+            }
+            if (positionFile == null) {
+                throw new IllegalStateException("The position file isn't set");
+            }
+            return new FileTailer<>(this);
+        }
+    }
+}
\ No newline at end of file
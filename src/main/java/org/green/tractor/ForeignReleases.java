@@ -0,0 +1,109 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+/**
+ * Batches the objects released by a thread, which isn't the releaser of their pools, for example,
+ * by a downstream stage of a {@link TractorPipeline}. Each pool has its own batch, which is pushed
+ * to the pool with one CAS as soon as it's full or flushed. Must be used by one single thread.
+ */
+final class ForeignReleases {
+    private static final int INITIAL_NUMBER_OF_POOLS = 4;
+
+    private final int batchSize;
+
+    private MbsrGrowingObjectPool[] pools = new MbsrGrowingObjectPool[INITIAL_NUMBER_OF_POOLS];
+    private PoolableObject[] firstReleased = new PoolableObject[INITIAL_NUMBER_OF_POOLS];
+    private PoolableObject[] lastReleased = new PoolableObject[INITIAL_NUMBER_OF_POOLS];
+    private int[] releasedCounts = new int[INITIAL_NUMBER_OF_POOLS];
+    private int numberOfPools;
+
+    ForeignReleases(final int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    void release(final MbsrGrowingObjectPool pool, final PoolableObject object) {
+        int i = 0;
+        while (i < numberOfPools && pools[i] != pool) {
+            i++;
+        }
+        if (i == numberOfPools) { // a new pool, this is rare
+            if (numberOfPools == pools.length) {
+                grow();
+            }
+            pools[numberOfPools++] = pool;
+        }
+
+        object.onReleased(); // membars required to publish changes are in the pool's push
+
+        if (releasedCounts[i] == 0) {
+            lastReleased[i] = object;
+        } else {
+            object.nextPoolIndex = firstReleased[i].poolIndex;
+        }
+        firstReleased[i] = object;
+
+        if (++releasedCounts[i] == batchSize) {
+            publish(i);
+        }
+    }
+
+    void flush() {
+        for (int i = 0; i < numberOfPools; i++) {
+            publish(i);
+        }
+    }
+
+    private void publish(final int i) {
+        if (releasedCounts[i] == 0) {
+            return;
+        }
+
+        pools[i].push(firstReleased[i], lastReleased[i]);
+
+        firstReleased[i] = null;
+        lastReleased[i] = null;
+        releasedCounts[i] = 0;
+    }
+
+    private void grow() {
+        final int length = numberOfPools * 2;
+
+        final MbsrGrowingObjectPool[] grownPools = new MbsrGrowingObjectPool[length];
+        System.arraycopy(pools, 0, grownPools, 0, numberOfPools);
+        pools = grownPools;
+
+        final PoolableObject[] grownFirstReleased = new PoolableObject[length];
+        System.arraycopy(firstReleased, 0, grownFirstReleased, 0, numberOfPools);
+        firstReleased = grownFirstReleased;
+
+        final PoolableObject[] grownLastReleased = new PoolableObject[length];
+        System.arraycopy(lastReleased, 0, grownLastReleased, 0, numberOfPools);
+        lastReleased = grownLastReleased;
+
+        final int[] grownReleasedCounts = new int[length];
+        System.arraycopy(releasedCounts, 0, grownReleasedCounts, 0, numberOfPools);
+        releasedCounts = grownReleasedCounts;
+    }
+}
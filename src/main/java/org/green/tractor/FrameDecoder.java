@@ -0,0 +1,47 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Codec of {@link NetworkIngress}, which decodes the framed messages straight into the entries to be sent.
+ * @param <E> type of the entries
+ */
+@FunctionalInterface
+public interface FrameDecoder<E extends Entry> {
+
+    /**
+     * Decodes the frame starting at the position of the source. The decoder must not keep the source,
+     * it's reused for the next bytes.
+     * @param source bytes received, the position is at the start of the frame
+     * @param into entry to be sent, it can be left with the values of a previous frame
+     * @return true if the whole frame has been decoded and the position has been moved past the frame;
+     *         false if the source has only a part of the frame and the position has been left unchanged
+     * @throws Exception if the frame is malformed, then the rest of the TCP connection or of the datagram
+     *                   is dropped
+     */
+    boolean decode(ByteBuffer source, E into) throws Exception;
+
+}
\ No newline at end of file
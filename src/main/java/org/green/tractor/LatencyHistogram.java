@@ -0,0 +1,173 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+/**
+ * Allocation-free log-linear histogram of latencies in nanoseconds, similar to HdrHistogram with
+ * 2 significant decimal digits: values up to 127 are counted exactly, bigger values are counted
+ * in buckets with the relative width less than 1/64.
+ * <p>
+ * The histogram is recorded by one single writer's thread with plain ordered writes. Any other thread can
+ * take a copy of it with {@link #copyFrom(LatencyHistogram)} and get an interval histogram subtracting
+ * the previous copy with {@link #subtract(LatencyHistogram)}.
+ */
+public final class LatencyHistogram {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final long LONG_ARRAY_BASE = UNSAFE.arrayBaseOffset(long[].class);
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private static final int NUMBER_OF_BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private static final int TOTAL_COUNT = NUMBER_OF_BUCKETS;
+    private static final int MAX_VALUE = NUMBER_OF_BUCKETS + 1;
+
+    private final long[] counts = new long[NUMBER_OF_BUCKETS + 2];
+
+    /**
+     * Must be called by the writer's thread only.
+     * @param value latency in nanoseconds, negative values are counted as zeros
+     */
+    public void record(final long value) {
+        final long v = Math.max(0, value);
+
+        increment(bucketIndex(v));
+        increment(TOTAL_COUNT);
+
+        if (v > counts[MAX_VALUE]) {
+            UNSAFE.putOrderedLong(counts, address(MAX_VALUE), v);
+        }
+    }
+
+    public long totalCount() {
+        return UNSAFE.getLongVolatile(counts, address(TOTAL_COUNT));
+    }
+
+    public long maxValue() {
+        return UNSAFE.getLongVolatile(counts, address(MAX_VALUE));
+    }
+
+    /**
+     * @param percentile percentile in the range [0, 100]
+     * @return the highest value equivalent to the one at the percentile or 0 if the histogram is empty
+     */
+    public long valueAtPercentile(final double percentile) {
+        final long total = totalCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+
+        long count = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            count += UNSAFE.getLongVolatile(counts, address(i));
+            if (count >= rank) {
+                return Math.min(highestEquivalentValue(i), maxValue());
+            }
+        }
+        return maxValue();
+    }
+
+    /**
+     * Copies the source histogram into this one. Must be called by the writer of this histogram,
+     * the source one can be modified concurrently.
+     * @param source histogram to copy
+     */
+    public void copyFrom(final LatencyHistogram source) {
+        long total = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            final long count = UNSAFE.getLongVolatile(source.counts, address(i));
+            UNSAFE.putOrderedLong(counts, address(i), count);
+            total += count;
+        }
+        UNSAFE.putOrderedLong(counts, address(TOTAL_COUNT), total); // consistent with the copied buckets
+        UNSAFE.putOrderedLong(counts, address(MAX_VALUE), source.maxValue());
+    }
+
+    /**
+     * Subtracts an earlier copy of the same histogram to get the interval one.
+     * Must be called by the writer of this histogram. The maximum value is not subtracted.
+     * @param earlier earlier copy
+     */
+    public void subtract(final LatencyHistogram earlier) {
+        for (int i = 0; i <= TOTAL_COUNT; i++) {
+            final long count = counts[i] - UNSAFE.getLongVolatile(earlier.counts, address(i));
+            UNSAFE.putOrderedLong(counts, address(i), Math.max(0, count));
+        }
+    }
+
+    /**
+     * Must be called by the writer's thread only.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            UNSAFE.putOrderedLong(counts, address(i), 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                "count=" + totalCount() +
+                ", p50=" + valueAtPercentile(50) +
+                ", p99=" + valueAtPercentile(99) +
+                ", p99.99=" + valueAtPercentile(99.99) +
+                ", max=" + maxValue() +
+                '}';
+    }
+
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS + 1;
+        final int subBucket = (int) (value >>> shift); // in the range [HALF_SUB_BUCKETS, SUB_BUCKETS)
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (subBucket - HALF_SUB_BUCKETS);
+    }
+
+    static long highestEquivalentValue(final int bucketIndex) {
+        if (bucketIndex < SUB_BUCKETS) {
+            return bucketIndex;
+        }
+        final int shift = (bucketIndex - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        final long subBucket = (bucketIndex - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private void increment(final int index) {
+        final long address = address(index);
+        UNSAFE.putOrderedLong(counts, address, UNSAFE.getLong(counts, address) + 1);
+    }
+
+    private static long address(final int index) {
+        return LONG_ARRAY_BASE + ((long) index << 3);
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Notifies the listeners of an executor about adding/removing of listeners, starting and stopping
+ * in its own threads instead of the worker's one. The worker publishes the notifications with the snapshots
+ * of the results to a preallocated ring, so, neither the number of the listeners nor their speed affect
+ * the worker. Each listener is served by one single notifier's thread, so, the listener receives
+ * the notifications in the order they have been published. If the ring is full, the worker either waits
+ * for a free slot or drops the notification. The notifications about adding and removing of listeners are never
+ * dropped, since the notifier's threads track the listeners by them.
+ * <p>
+ * Custom notifications, like the ones of {@link DefaultExecutor#doCustom(Command, java.util.List)},
+ * are still delivered by the worker.
+ */
+public final class ListenerNotifier implements AutoCloseable {
+    static final int ADD_LISTENER = 0;
+    static final int REMOVE_LISTENER = 1;
+    static final int START = 2;
+    static final int STOP = 3;
+
+    private static final int PUBLISHED = 0;
+    private static final int DROPPED = 1;
+
+    private static final long PARK_NANOS = 1_000_000L; // the notifications are rare
+
+    private final Notification[] ring;
+    private final int mask;
+    private final boolean dropOnOverflow;
+    private final ErrorHandler errorHandler;
+
+    private final SingleWriterCounters producerCounters = new SingleWriterCounters(2); // written by the worker
+    private final SingleWriterCounters[] delivered; // each one is written by its notifier's thread
+
+    private long nextSequence; // accessed by the worker only
+    private long cachedMinDelivered; // accessed by the worker only
+
+    private final Thread[] threads;
+
+    private volatile boolean closed;
+
+    private Executor<?> executor; // guarded by this
+
+    /**
+     * @param name prefix of the names of the notifier's threads
+     * @param capacity capacity of the ring, must be a power of two
+     * @param numberOfThreads number of the notifier's threads
+     * @param dropOnOverflow whether to drop the notifications if the ring is full instead of waiting
+     * @param errorHandler handler of the listeners' errors
+     */
+    public ListenerNotifier(
+            final String name,
+            final int capacity,
+            final int numberOfThreads,
+            final boolean dropOnOverflow,
+            final ErrorHandler errorHandler) {
+
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two: " + capacity);
+        }
+        if (numberOfThreads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + numberOfThreads);
+        }
+
+        this.mask = capacity - 1;
+        this.dropOnOverflow = dropOnOverflow;
+        this.errorHandler = errorHandler;
+
+        ring = new Notification[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Notification();
+        }
+
+        delivered = new SingleWriterCounters[numberOfThreads];
+        threads = new Thread[numberOfThreads];
+        for (int i = 0; i < numberOfThreads; i++) {
+            delivered[i] = new SingleWriterCounters(1);
+
+            final int threadIndex = i;
+            threads[i] = new Thread(() -> run(threadIndex), name + "-notifier-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * @return number of the notifications dropped because of the full ring
+     */
+    public long dropped() {
+        return producerCounters.get(DROPPED);
+    }
+
+    /**
+     * Delivers the published notifications and stops the notifier's threads.
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+    }
+
+    synchronized void bind(final Executor<?> executor) {
+        if (this.executor != null) {
+            throw new IllegalStateException("The notifier is already used by " + this.executor.name());
+        }
+        this.executor = executor;
+    }
+
+    // called by the worker only
+    void publish(
+            final int type,
+            final Executor<?> executor,
+            final ErrorableResult result,
+            final TractorListener listener) {
+
+        final long sequence = nextSequence;
+
+        if (sequence - cachedMinDelivered >= ring.length) {
+            int idles = 0;
+            while (sequence - (cachedMinDelivered = minDelivered()) >= ring.length) {
+                if (closed || (dropOnOverflow && (type == START || type == STOP))) {
+                    producerCounters.increment(DROPPED);
+                    return;
+                }
+                BackOff.idle(idles++, PARK_NANOS);
+            }
+        }
+
+        final Notification notification = ring[(int) sequence & mask];
+        notification.type = type;
+        notification.executor = executor;
+        notification.listener = listener;
+        notification.listenerResult.setListener(listener);
+        notification.listenerResult.setError(result.error());
+        notification.voidResult.setError(result.error());
+
+        nextSequence = sequence + 1;
+        producerCounters.increment(PUBLISHED); // ordered write publishes the notification
+    }
+
+    private long minDelivered() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < delivered.length; i++) {
+            min = Math.min(min, delivered[i].get(0));
+        }
+        return min;
+    }
+
+    private void run(final int threadIndex) {
+        final List<TractorListener> listeners = new ArrayList<>(); // the listeners served by this thread
+        final SingleWriterCounters counter = delivered[threadIndex];
+
+        long next = 0;
+        int idles = 0;
+
+        while (true) {
+            final boolean wasClosed = closed; // read before the published sequence to drain the ring on close
+            final long published = producerCounters.get(PUBLISHED);
+
+            if (next == published) {
+                if (wasClosed) {
+                    return;
+                }
+                BackOff.idle(idles++, PARK_NANOS);
+                continue;
+            }
+            idles = 0;
+
+            while (next < published) {
+                deliver(ring[(int) next & mask], listeners, threadIndex);
+                next++;
+                counter.increment(0);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver(
+            final Notification notification,
+            final List<TractorListener> listeners,
+            final int threadIndex) {
+
+        final boolean served = (System.identityHashCode(notification.listener) & Integer.MAX_VALUE) %
+                threads.length == threadIndex;
+
+        switch (notification.type) {
+            case ADD_LISTENER:
+                if (served) {
+                    listeners.add(notification.listener);
+                }
+                for (int i = 0; i < listeners.size(); i++) {
+                    try {
+                        listeners.get(i).onAddProcessListener(notification.executor, notification.listenerResult);
+                    } catch (final Exception e) {
+                        errorHandler.onError(this,
+                                "An error while onAddProcessListener succeeded notification: " +
+                                        e.getLocalizedMessage(), e);
+                    }
+                }
+                break;
+            case REMOVE_LISTENER:
+                for (int i = 0; i < listeners.size(); i++) {
+                    try {
+                        listeners.get(i).onRemoveProcessListener(notification.executor, notification.listenerResult);
+                    } catch (final Exception e) {
+                        errorHandler.onError(this,
+                                "An error while tryRemoveListener succeeded notification: " +
+                                        e.getLocalizedMessage(), e);
+                    }
+                }
+                if (served) {
+                    listeners.remove(notification.listener);
+                }
+                break;
+            case START:
+                for (int i = 0; i < listeners.size(); i++) {
+                    try {
+                        listeners.get(i).onStart(notification.executor, notification.voidResult);
+                    } catch (final Exception e) {
+                        errorHandler.onError(this, "An error while onStart notification: " +
+                                e.getLocalizedMessage(), e);
+                    }
+                }
+                break;
+            case STOP:
+                for (int i = 0; i < listeners.size(); i++) {
+                    try {
+                        listeners.get(i).onStop(notification.executor, notification.voidResult);
+                    } catch (final Exception e) {
+                        errorHandler.onError(this, "An error while onStop notification: " +
+                                e.getLocalizedMessage(), e);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown notification: " + notification.type);
+        }
+    }
+
+    private static final class Notification {
+        int type;
+        Executor executor;
+        TractorListener listener;
+        final ListenerResult listenerResult = new ListenerResult();
+        final VoidResult voidResult = new VoidResult();
+    }
+}
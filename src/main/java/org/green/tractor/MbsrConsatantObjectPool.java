@@ -26,9 +26,6 @@ package org.green.tractor;
 import org.green.cab.Utils;
 import sun.misc.Unsafe;
 
-import java.lang.invoke.MethodHandle;
-import java.lang.invoke.MethodHandles;
-import java.lang.invoke.MethodType;
 import java.util.concurrent.locks.LockSupport;
 import java.util.function.Supplier;
 
@@ -48,7 +45,8 @@ abstract class MbsrConsatantObjectPoolPad1 extends LastAvailableObjectIndex {
     protected long p18, p19, p110, p111, p112, p113, p114, p115;
 }
 
-public class MbsrConsatantObjectPool<O extends PoolableObject> extends MbsrConsatantObjectPoolPad1 {
+public class MbsrConsatantObjectPool<O extends PoolableObject> extends MbsrConsatantObjectPoolPad1
+        implements ObjectPool<O> {
     private static final Unsafe UNSAFE = Utils.getUnsafe();
 
     private static final int OBJECT_ARRAY_ELEMENT_SHIFT;
@@ -56,6 +54,9 @@ public class MbsrConsatantObjectPool<O extends PoolableObject> extends MbsrConsa
     private static final long OBJECT_ARRAY_BASE;
 
     private static final long LAST_AVAILABLE_OBJECT_INDEX_OFFSET;
+    private static final long EXHAUSTIONS_OFFSET;
+
+    private static final TractorEvents EVENTS = TractorEvents.current();
 
     static {
         final int scale = UNSAFE.arrayIndexScale(Object[].class);
@@ -72,6 +73,8 @@ public class MbsrConsatantObjectPool<O extends PoolableObject> extends MbsrConsa
         try {
             LAST_AVAILABLE_OBJECT_INDEX_OFFSET = UNSAFE.objectFieldOffset(
                     LastAvailableObjectIndex.class.getDeclaredField("lastAvailableObjectIndex"));
+            EXHAUSTIONS_OFFSET = UNSAFE.objectFieldOffset(
+                    MbsrConsatantObjectPool.class.getDeclaredField("exhaustions"));
         } catch (final Exception e) {
             throw new Error(e);
         }
@@ -81,30 +84,23 @@ public class MbsrConsatantObjectPool<O extends PoolableObject> extends MbsrConsa
             final Class<O> objectClass,
             final int size) {
 
-        final MethodHandles.Lookup lookup = MethodHandles.lookup();
-        final MethodType constructorType = MethodType.methodType(void.class);
-        final MethodHandle objectConstructor;
-        try {
-            objectConstructor = lookup.findConstructor(objectClass, constructorType);
-        } catch (final Exception e) {
-            throw new RuntimeException("Cannot find default constructor: " + constructorType, e);
-        }
-        return new MbsrConsatantObjectPool(size, () -> {
-            try {
-                return (O) objectConstructor.invoke();
-            } catch (final Throwable t) {
-                throw new RuntimeException("Cannot create instance of " + objectClass, t);
-            }
-        });
+        return new MbsrConsatantObjectPool<>(size, ObjectPool.constructorBasedSupplier(objectClass));
     }
 
     private final int size;
     private final Object[] objects;
 
+    private volatile long exhaustions; // modified on the slow path of borrow() only
+
+    // objects kept by the borrower instead of being released, accessed by the borrower's thread only
+    private final Object[] spares;
+    private int numberOfSpares;
+
     public MbsrConsatantObjectPool(final int size, final Supplier<O> supplier) {
         this.size = size;
 
         this.objects = new Object[size + 2 * OBJECT_ARRAY_PAD];
+        this.spares = new Object[size];
 
         for (int i = 0; i < size; i++) {
             final O object = supplier.get();
@@ -116,16 +112,31 @@ public class MbsrConsatantObjectPool<O extends PoolableObject> extends MbsrConsa
         // leads to <membar StoreStore|StoreLoad> (as well as the freeze action to LoadStore|StoreStore)
     }
 
+    @Override
     @SuppressWarnings("unchecked")
     public O borrow() {
+        if (numberOfSpares > 0) {
+            final Object spare = spares[--numberOfSpares];
+            spares[numberOfSpares] = null;
+            return (O) spare;
+        }
+
         Object result;
         int v;
+        boolean exhausted = false;
+        long waitStart = 0; // valid only if exhausted, any value of nanoTime() is legal
 
         do {
             v = UNSAFE.getIntVolatile(this, LAST_AVAILABLE_OBJECT_INDEX_OFFSET); // volatile read leads to
             // <membar LoadLoad|LoadStore>
 
-            while (v == -1) { // the pool is empty, this is not typical
+            if (v == -1 && !exhausted) { // the pool is empty, this is not typical
+                UNSAFE.getAndAddLong(this, EXHAUSTIONS_OFFSET, 1);
+                exhausted = true;
+                waitStart = System.nanoTime();
+            }
+
+            while (v == -1) {
                 LockSupport.parkNanos(1); // so, let's give a good chance to the releaser
                 v = UNSAFE.getIntVolatile(this, LAST_AVAILABLE_OBJECT_INDEX_OFFSET);
             }
@@ -135,9 +146,14 @@ public class MbsrConsatantObjectPool<O extends PoolableObject> extends MbsrConsa
         } while (!UNSAFE.compareAndSwapInt(this, LAST_AVAILABLE_OBJECT_INDEX_OFFSET, v, v - 1)); // strong CAS
         // leads to <membar StoreLoad|StoreStore>
 
+        if (exhausted && EVENTS.isRecording()) {
+            EVENTS.poolExhausted(result.getClass(), System.nanoTime() - waitStart);
+        }
+
         return (O) result;
     }
 
+    @Override
     public void release(final O object) {
         int v;
 
@@ -157,6 +173,24 @@ public class MbsrConsatantObjectPool<O extends PoolableObject> extends MbsrConsa
         // leads to <membar StoreLoad|StoreStore>
     }
 
+    /**
+     * Lets the borrower keep the object it hasn't passed to the releaser, so, the object is borrowed again
+     * without the releaser. Can be used only if the pool has one single borrower and must be called
+     * by its thread.
+     * @param object the borrowed object
+     */
+    void keep(final O object) {
+        object.onReleased();
+        spares[numberOfSpares++] = object;
+    }
+
+    /**
+     * @return number of times a borrower found the pool empty and had to wait for a released object
+     */
+    public long exhaustions() {
+        return exhaustions;
+    }
+
     private long objectAddress(final int index) {
         return OBJECT_ARRAY_BASE + (index << OBJECT_ARRAY_ELEMENT_SHIFT);
     }
@@ -0,0 +1,275 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+abstract class MbsrGrowingObjectPoolPad0 {
+    protected long p01, p02, p03, p04, p05, p06, p07;
+    protected long p08, p09, p010, p011, p012, p013, p014, p015;
+}
+
+abstract class AvailableObjectsHead extends MbsrGrowingObjectPoolPad0 {
+    protected volatile long availableObjectsHead; // stamp in the high 32 bits, index of the top object in the low
+}
+
+abstract class MbsrGrowingObjectPoolPad1 extends AvailableObjectsHead {
+    protected long p11, p12, p13, p14, p15, p16, p17;
+    protected long p18, p19, p110, p111, p112, p113, p114, p115;
+}
+
+abstract class ReleasedObjectsBatch extends MbsrGrowingObjectPoolPad1 {
+    // these fields are accessed by the releaser's thread only
+    protected PoolableObject firstReleased;
+    protected PoolableObject lastReleased;
+    protected int releasedCount;
+    protected boolean flushScheduled;
+}
+
+abstract class MbsrGrowingObjectPoolPad2 extends ReleasedObjectsBatch {
+    protected long p21, p22, p23, p24, p25, p26, p27;
+    protected long p28, p29, p210, p211, p212, p213, p214, p215;
+}
+
+/**
+ * Lock-free pool of objects shared by multiple borrowers and served by one single releaser.
+ * <p>
+ * Available objects form a stack linked through their indices. The head of the stack is stamped to avoid ABA
+ * between concurrent borrowers. The releaser collects released objects into a batch and publishes the whole
+ * batch with one CAS. The pool never shrinks, but it can grow at any time from any thread.
+ */
+public class MbsrGrowingObjectPool<O extends PoolableObject> extends MbsrGrowingObjectPoolPad2
+        implements ObjectPool<O> {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final long AVAILABLE_OBJECTS_HEAD_OFFSET;
+    private static final long EXHAUSTIONS_OFFSET;
+
+    private static final TractorEvents EVENTS = TractorEvents.current();
+
+    private static final int NO_INDEX = 0;
+    private static final long INDEX_MASK = 0xffffffffL;
+
+    static {
+        try {
+            AVAILABLE_OBJECTS_HEAD_OFFSET = UNSAFE.objectFieldOffset(
+                    AvailableObjectsHead.class.getDeclaredField("availableObjectsHead"));
+            EXHAUSTIONS_OFFSET = UNSAFE.objectFieldOffset(
+                    MbsrGrowingObjectPool.class.getDeclaredField("exhaustions"));
+        } catch (final Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    public static <O extends PoolableObject> MbsrGrowingObjectPool<O> constructorBasedPool(
+            final Class<O> objectClass,
+            final int initialSize,
+            final int releaseBatchSize) {
+
+        return new MbsrGrowingObjectPool<>(
+                initialSize, releaseBatchSize, ObjectPool.constructorBasedSupplier(objectClass));
+    }
+
+    private final Supplier<O> supplier;
+    private final int releaseBatchSize;
+
+    private volatile Object[] objects = new Object[1]; // index 0 is reserved for NO_INDEX, guarded by this on write
+    private int size; // guarded by this
+
+    private volatile long exhaustions; // modified on the slow path of borrow() only
+
+    Object releaser; // owner of the releaser's thread, if any, set before the pool is shared
+
+    public MbsrGrowingObjectPool(final int initialSize, final int releaseBatchSize, final Supplier<O> supplier) {
+        if (releaseBatchSize < 1) {
+            throw new IllegalArgumentException("Release batch size must be positive: " + releaseBatchSize);
+        }
+        this.supplier = supplier;
+        this.releaseBatchSize = releaseBatchSize;
+
+        grow(initialSize);
+    }
+
+    /**
+     * Adds new objects to the pool. Can be called by any thread.
+     * @param delta number of objects to add
+     */
+    public synchronized void grow(final int delta) {
+        if (delta <= 0) {
+            return;
+        }
+
+        final Object[] current = objects;
+        final Object[] grown = new Object[current.length + delta];
+        System.arraycopy(current, 0, grown, 0, current.length);
+
+        PoolableObject first = null;
+        PoolableObject last = null;
+        for (int i = current.length; i < grown.length; i++) {
+            final O object = supplier.get();
+            object.setOwner(this);
+            object.poolIndex = i;
+            grown[i] = object;
+
+            if (first == null) {
+                last = object;
+            } else {
+                object.nextPoolIndex = first.poolIndex;
+            }
+            first = object;
+        }
+
+        objects = grown; // volatile write publishes the objects before they become reachable from the head
+        size += delta;
+
+        push(first, last);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return number of times a borrower found the pool empty and had to wait for a released object
+     */
+    public long exhaustions() {
+        return exhaustions;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public O borrow() {
+        long head;
+        PoolableObject result;
+        boolean exhausted = false;
+        long waitStart = 0; // valid only if exhausted, any value of nanoTime() is legal
+
+        do {
+            head = UNSAFE.getLongVolatile(this, AVAILABLE_OBJECTS_HEAD_OFFSET); // volatile read leads to
+            // <membar LoadLoad|LoadStore>
+
+            if ((int) (head & INDEX_MASK) == NO_INDEX && !exhausted) { // the pool is empty, this is not typical
+                UNSAFE.getAndAddLong(this, EXHAUSTIONS_OFFSET, 1);
+                exhausted = true;
+                waitStart = System.nanoTime();
+            }
+
+            while ((int) (head & INDEX_MASK) == NO_INDEX) {
+                LockSupport.parkNanos(1); // so, let's give a good chance to the releaser
+                head = UNSAFE.getLongVolatile(this, AVAILABLE_OBJECTS_HEAD_OFFSET);
+            }
+
+            result = (PoolableObject) objects[(int) (head & INDEX_MASK)]; // the volatile read of the objects
+            // happens after the head was read, so the object is always visible here
+
+        } while (!UNSAFE.compareAndSwapLong(this, AVAILABLE_OBJECTS_HEAD_OFFSET,
+                head, nextHead(head, result.nextPoolIndex))); // strong CAS leads to <membar StoreLoad|StoreStore>
+        // a stale nextPoolIndex can be read only if the object was borrowed and returned concurrently,
+        // but the stamp of the head was changed then, so the CAS fails
+
+        if (exhausted && EVENTS.isRecording()) {
+            EVENTS.poolExhausted(result.getClass(), System.nanoTime() - waitStart);
+        }
+
+        return (O) result;
+    }
+
+    /**
+     * Must be called by the releaser's thread only. The object becomes available to the borrowers
+     * not immediately, but as soon as the batch is full or {@link #flush()} is called.
+     * @param object object to return to the pool
+     */
+    @Override
+    public void release(final O object) {
+        object.onReleased(); // membars required to publish changes are in flush()
+
+        if (releasedCount == 0) {
+            lastReleased = object;
+        } else {
+            object.nextPoolIndex = firstReleased.poolIndex;
+        }
+        firstReleased = object;
+
+        if (++releasedCount == releaseBatchSize) {
+            publishReleased();
+        }
+    }
+
+    /**
+     * Lets the releaser track the pools which have to be flushed at the end of its batch.
+     * Must be called by the releaser's thread only.
+     * @return true if the pool wasn't scheduled for the flush since the previous flush
+     */
+    boolean scheduleFlush() {
+        if (flushScheduled) {
+            return false;
+        }
+        flushScheduled = true;
+        return true;
+    }
+
+    /**
+     * Makes all the objects released by the releaser available to the borrowers.
+     * Must be called by the releaser's thread only.
+     */
+    public void flush() {
+        flushScheduled = false;
+
+        publishReleased();
+    }
+
+    private void publishReleased() {
+        if (releasedCount == 0) {
+            return;
+        }
+
+        push(firstReleased, lastReleased);
+
+        firstReleased = null;
+        lastReleased = null;
+        releasedCount = 0;
+    }
+
+    // can be called by any thread, so, the objects released by other threads can bypass the releaser's batch
+    void push(final PoolableObject first, final PoolableObject last) {
+        long head;
+
+        do {
+            head = UNSAFE.getLongVolatile(this, AVAILABLE_OBJECTS_HEAD_OFFSET); // volatile read leads to
+            // <membar LoadLoad|LoadStore>
+
+            last.nextPoolIndex = (int) (head & INDEX_MASK); // normal write before strong CAS
+
+        } while (!UNSAFE.compareAndSwapLong(this, AVAILABLE_OBJECTS_HEAD_OFFSET,
+                head, nextHead(head, first.poolIndex))); // strong CAS leads to <membar StoreLoad|StoreStore>
+    }
+
+    private static long nextHead(final long head, final int index) {
+        return ((head & ~INDEX_MASK) + (1L << 32)) | (index & INDEX_MASK);
+    }
+}
@@ -0,0 +1,382 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+abstract class MulticastTractorPad0 {
+    protected long p01, p02, p03, p04, p05, p06, p07;
+    protected long p08, p09, p010, p011, p012, p013, p014, p015;
+}
+
+abstract class ClaimedSequence extends MulticastTractorPad0 {
+    protected volatile long claimedSequence; // the next sequence to be claimed by a sender
+}
+
+abstract class MulticastTractorPad1 extends ClaimedSequence {
+    protected long p11, p12, p13, p14, p15, p16, p17;
+    protected long p18, p19, p110, p111, p112, p113, p114, p115;
+}
+
+/**
+ * Ring of entries processed by several workers, each of them with its own executor and its own sequence.
+ * Every worker sees every entry, so, independent executors, like journaling, replication and business logic,
+ * process the same entries in parallel without copying. A worker can depend on other workers, then it processes
+ * an entry only after all of them have processed the entry.
+ * <p>
+ * The entries are preallocated in the ring's slots and filled by the senders in place. A slot is reused only
+ * after the slowest worker has processed its entry, so, the entries never go through a pool.
+ * Commands are not supported, the workers run until the tractor is closed.
+ * <p>
+ * Closing stops the claiming of the entries and waits for the workers to process all the entries claimed before,
+ * in the order of the dependencies, so, nothing sent is lost. The workers cannot pass a claimed slot, so,
+ * a sender must either send the claimed entry or be closed, what skips the entry. A thread, which has claimed
+ * an entry and never does neither, stalls all the workers and the closing of the tractor.
+ * @param <E> type of the entries
+ */
+public final class MulticastTractor<E extends Entry> extends MulticastTractorPad1 implements AutoCloseable {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final long CLAIMED_SEQUENCE_OFFSET;
+    private static final long LONG_ARRAY_BASE = UNSAFE.arrayBaseOffset(long[].class);
+
+    private static final long PARK_NANOS = 1;
+    private static final int PROCESSED = 0;
+
+    private static final long CLOSED = 1L << 62; // set in the claimed sequence, so, the later claims fail
+    private static final long SKIPPED = 1L << 61; // set in the published sequence of an entry not to be processed
+
+    static {
+        try {
+            CLAIMED_SEQUENCE_OFFSET = UNSAFE.objectFieldOffset(
+                    ClaimedSequence.class.getDeclaredField("claimedSequence"));
+        } catch (final Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    public static <E extends Entry> Builder<E> builder(final int capacity, final Supplier<E> factory) {
+        return new Builder<>(capacity, factory);
+    }
+
+    private final Object[] entries;
+    private final long[] publishedSequences; // sequence of the entry published to the slot
+    private final int mask;
+
+    private final ErrorHandler errorHandler;
+    private final Worker[] workers;
+
+    private volatile long drainLimit = Long.MAX_VALUE; // number of the entries claimed before the closing
+
+    @SuppressWarnings("unchecked")
+    private MulticastTractor(
+            final int capacity,
+            final Supplier<E> factory,
+            final ErrorHandler errorHandler,
+            final List<Executor<E>> executors,
+            final List<int[]> dependencies) {
+
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two: " + capacity);
+        }
+        if (executors.isEmpty()) {
+            throw new IllegalArgumentException("No executors");
+        }
+
+        this.mask = capacity - 1;
+        this.errorHandler = errorHandler;
+
+        entries = new Object[capacity];
+        publishedSequences = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            entries[i] = factory.get();
+            publishedSequences[i] = -1;
+        }
+
+        // raw arrays, since Worker is an inner class of a generic class
+        workers = new MulticastTractor.Worker[executors.size()];
+        for (int i = 0; i < workers.length; i++) {
+            final int[] dependsOn = dependencies.get(i);
+            final Worker[] workerDependencies = new MulticastTractor.Worker[dependsOn.length];
+            for (int j = 0; j < dependsOn.length; j++) {
+                workerDependencies[j] = workers[dependsOn[j]]; // dependencies are always added before
+            }
+            workers[i] = new Worker(executors.get(i), workerDependencies);
+        }
+
+        UNSAFE.storeFence(); // the slots are published before the workers start and before the tractor is shared
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].start();
+        }
+    }
+
+    /**
+     * @return a new sender, which can be used by the calling thread only
+     */
+    public EntrySender<E> newEntrySender() {
+        return new Sender();
+    }
+
+    /**
+     * @param executor executor of one of the workers
+     * @return number of the entries passed by the worker, including the skipped ones
+     */
+    public long processed(final Executor<E> executor) {
+        for (int i = 0; i < workers.length; i++) {
+            if (workers[i].executor == executor) {
+                return workers[i].counters.get(PROCESSED);
+            }
+        }
+        throw new IllegalArgumentException("Unknown executor: " + executor.name());
+    }
+
+    /**
+     * Stops claiming of the entries and waits for the workers to process the entries claimed before.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        long claimed;
+        do {
+            claimed = claimedSequence;
+        } while ((claimed & CLOSED) == 0 &&
+                !UNSAFE.compareAndSwapLong(this, CLAIMED_SEQUENCE_OFFSET, claimed, claimed | CLOSED));
+        if ((claimed & CLOSED) == 0) {
+            drainLimit = claimed;
+        }
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].join();
+        }
+    }
+
+    private long minProcessed() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < workers.length; i++) {
+            min = Math.min(min, workers[i].counters.get(PROCESSED));
+        }
+        return min;
+    }
+
+    private boolean isPublished(final long sequence) {
+        return (publishedSequence(sequence) & ~SKIPPED) == sequence;
+    }
+
+    private long publishedSequence(final long sequence) {
+        return UNSAFE.getLongVolatile(publishedSequences, publishedSequenceAddress(sequence));
+    }
+
+    private void publish(final long sequence, final long published) {
+        UNSAFE.putOrderedLong(publishedSequences, publishedSequenceAddress(sequence), published); // ordered
+        // write publishes the entry filled by the sender
+    }
+
+    private long publishedSequenceAddress(final long sequence) {
+        return LONG_ARRAY_BASE + ((sequence & mask) << 3);
+    }
+
+    private final class Worker extends Thread {
+        private final Executor<E> executor;
+        private final Worker[] dependencies;
+        private final SingleWriterCounters counters = new SingleWriterCounters(PROCESSED + 1);
+
+        Worker(final Executor<E> executor, final Worker[] dependencies) {
+            super("Worker@" + executor.name());
+            this.executor = executor;
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            long next = 0;
+            int idles = 0;
+
+            while (true) {
+                long limit = next + entries.length;
+                for (int i = 0; i < dependencies.length; i++) {
+                    limit = Math.min(limit, dependencies[i].counters.get(PROCESSED));
+                }
+
+                long end = next;
+                while (end < limit && isPublished(end)) {
+                    end++;
+                }
+
+                if (end == next) {
+                    if (next == drainLimit) {
+                        return; // closed and all the entries claimed before are processed
+                    }
+                    BackOff.idle(idles++, PARK_NANOS);
+                    continue;
+                }
+                idles = 0;
+
+                for (long sequence = next; sequence < end; sequence++) {
+                    if ((publishedSequence(sequence) & SKIPPED) != 0) {
+                        continue;
+                    }
+                    final E entry = (E) entries[(int) sequence & mask];
+                    try {
+                        executor.processEntry(entry);
+                    } catch (final Exception e) {
+                        errorHandler.onError(this, "An error while processing the entry", entry, e);
+                    }
+                }
+
+                counters.add(PROCESSED, end - next); // the ordered write lets the dependent workers
+                // and the senders go on with the whole batch
+                next = end;
+            }
+        }
+    }
+
+    private final class Sender implements EntrySender<E>, EntryEnvelope<E> {
+        private final Thread creator = Thread.currentThread();
+
+        private long sequence = -1; // claimed, but not sent yet
+        private long cachedMinProcessed;
+
+        @Override
+        public EntryEnvelope<E> nextEnvelope() {
+            checkCurrentThread();
+            if (sequence != -1) {
+                throw new IllegalStateException("The previous entry hasn't been sent yet");
+            }
+
+            final long claimed = UNSAFE.getAndAddLong(MulticastTractor.this, CLAIMED_SEQUENCE_OFFSET, 1);
+            if ((claimed & CLOSED) != 0) {
+                throw new IllegalStateException("The tractor is closed");
+            }
+
+            int idles = 0;
+            while (claimed - entries.length >= cachedMinProcessed) { // the slot isn't processed by all the workers,
+                cachedMinProcessed = minProcessed(); // they go on even if the tractor is being closed
+                if (claimed - entries.length < cachedMinProcessed) {
+                    break;
+                }
+                BackOff.idle(idles++, PARK_NANOS);
+            }
+
+            sequence = claimed;
+            return this;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E entry() {
+            checkCurrentThread();
+            checkClaimed();
+            return (E) entries[(int) sequence & mask];
+        }
+
+        /**
+         * Publishes the entry, which is processed even if the tractor is being closed.
+         */
+        @Override
+        public void send() {
+            checkCurrentThread();
+            checkClaimed();
+            publish(sequence, sequence);
+            sequence = -1;
+        }
+
+        /**
+         * Skips the claimed entry, if it hasn't been sent, so, the workers pass its slot without processing.
+         */
+        @Override
+        public void close() {
+            checkCurrentThread();
+            if (sequence != -1) {
+                publish(sequence, sequence | SKIPPED);
+                sequence = -1;
+            }
+        }
+
+        private void checkClaimed() {
+            if (sequence == -1) {
+                throw new IllegalStateException("No entry claimed, call nextEnvelope() first");
+            }
+        }
+
+        private void checkCurrentThread() {
+            if (creator != Thread.currentThread()) {
+                throw new IllegalStateException("Cannot be used from another thread");
+            }
+        }
+    }
+
+    public static final class Builder<E extends Entry> {
+        private final int capacity;
+        private final Supplier<E> factory;
+        private final List<Executor<E>> executors = new ArrayList<>();
+        private final List<int[]> dependencies = new ArrayList<>();
+
+        private ErrorHandler errorHandler = new JulLoggingErrorHandler(MulticastTractor.class);
+
+        private Builder(final int capacity, final Supplier<E> factory) {
+            this.capacity = capacity;
+            this.factory = factory;
+        }
+
+        public Builder<E> errorHandler(final ErrorHandler errorHandler) {
+            this.errorHandler = errorHandler;
+            return this;
+        }
+
+        /**
+         * Adds a worker with the executor.
+         * @param executor executor of the worker
+         * @param dependsOn executors of the workers, which must process an entry before this one,
+         *                  they must be added before
+         * @return this builder
+         */
+        @SafeVarargs
+        public final Builder<E> consumer(final Executor<E> executor, final Executor<E>... dependsOn) {
+            if (executors.contains(executor)) {
+                throw new IllegalArgumentException("The executor is already added: " + executor.name());
+            }
+
+            final int[] indices = new int[dependsOn.length];
+            for (int i = 0; i < dependsOn.length; i++) {
+                indices[i] = executors.indexOf(dependsOn[i]);
+                if (indices[i] < 0) {
+                    throw new IllegalArgumentException("Unknown dependency: " + dependsOn[i].name());
+                }
+            }
+
+            executors.add(executor);
+            dependencies.add(indices);
+            return this;
+        }
+
+        public MulticastTractor<E> build() {
+            return new MulticastTractor<>(capacity, factory, errorHandler, executors, dependencies);
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingress of a tractor, which receives the framed messages through TCP and/or UDP and decodes them with
+ * a {@link FrameDecoder} straight into the envelopes of an entry sender of its own thread. The sockets are
+ * non-blocking and read into direct buffers, one per TCP connection and one for all the datagrams, which are
+ * reused, a frame split between the reads is completed by the next read.
+ * <p>
+ * The back-pressure comes from the tractor: while the cab or the sender's lane is full, sending of the decoded
+ * entry waits and no socket is read, so, the TCP windows close and the clients slow down. The datagrams
+ * received meanwhile are dropped by the operating system, when its buffer is full.
+ * <p>
+ * A failure of a connection closes only this connection. If a connection cannot be accepted, for example, there
+ * are too many open files, the error is reported and accepting is paused for a while, the connections accepted
+ * before and the datagrams are still received. Only a failure of the selector stops the ingress and closes all
+ * the sockets.
+ * @param <EE> type of the entries
+ */
+public final class NetworkIngress<EE extends Entry> implements AutoCloseable {
+    private static final int DATAGRAMS_PER_TURN = 64;
+    private static final long ACCEPT_PAUSE_MILLIS = 10;
+
+    private static final int FRAMES_RECEIVED = 0;
+    private static final int FRAME_ERRORS = 1;
+    private static final int CONNECTIONS_ACCEPTED = 2;
+
+    private final Tractor<? super EE, ?, ?> tractor;
+    private final Class<EE> classOfEntry;
+    private final FrameDecoder<? super EE> decoder;
+    private final int bufferSize;
+    private final ErrorHandler errorHandler;
+    private final Acceptor acceptor;
+
+    private final Selector selector;
+    private final ServerSocketChannel tcp; // null if TCP isn't received
+    private final SelectionKey tcpKey;
+    private final DatagramChannel udp; // null if UDP isn't received
+    private final ByteBuffer datagram; // accessed by the ingress' thread only
+
+    private final SingleWriterCounters counters = new SingleWriterCounters(CONNECTIONS_ACCEPTED + 1);
+
+    // accessed by the ingress' thread only
+    private EntryEnvelope<EE> envelope; // borrowed and not sent yet
+    private boolean acceptPaused;
+    private long acceptResumeTime;
+
+    private volatile boolean running = true; // the thread isn't interrupted, what would close the channels
+    private final Thread thread;
+
+    public static <EE extends Entry> Builder<EE> builder(
+            final Tractor<? super EE, ?, ?> tractor,
+            final Class<EE> classOfEntry,
+            final FrameDecoder<? super EE> decoder) {
+        return new Builder<>(tractor, classOfEntry, decoder);
+    }
+
+    private NetworkIngress(final Builder<EE> builder) throws IOException {
+        tractor = builder.tractor;
+        classOfEntry = builder.classOfEntry;
+        decoder = builder.decoder;
+        bufferSize = builder.bufferSize;
+        errorHandler = builder.errorHandler;
+        acceptor = builder.acceptor;
+
+        selector = Selector.open();
+        try {
+            if (builder.tcpAddress != null) {
+                tcp = ServerSocketChannel.open();
+                tcp.configureBlocking(false);
+                tcp.bind(builder.tcpAddress);
+                tcpKey = tcp.register(selector, SelectionKey.OP_ACCEPT);
+            } else {
+                tcp = null;
+                tcpKey = null;
+            }
+
+            if (builder.udpAddress != null) {
+                udp = DatagramChannel.open();
+                udp.configureBlocking(false);
+                udp.bind(builder.udpAddress);
+                udp.register(selector, SelectionKey.OP_READ);
+                datagram = ByteBuffer.allocateDirect(bufferSize);
+            } else {
+                udp = null;
+                datagram = null;
+            }
+        } catch (final IOException e) {
+            closeChannels();
+            throw e;
+        }
+
+        thread = new Thread(this::run, "NetworkIngress-" + classOfEntry.getSimpleName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the local address of the TCP socket or null if TCP isn't received
+     */
+    public SocketAddress tcpAddress() throws IOException {
+        return tcp == null ? null : tcp.getLocalAddress();
+    }
+
+    /**
+     * @return the local address of the UDP socket or null if UDP isn't received
+     */
+    public SocketAddress udpAddress() throws IOException {
+        return udp == null ? null : udp.getLocalAddress();
+    }
+
+    public long framesReceived() {
+        return counters.get(FRAMES_RECEIVED);
+    }
+
+    public long frameErrors() {
+        return counters.get(FRAME_ERRORS);
+    }
+
+    public long connectionsAccepted() {
+        return counters.get(CONNECTIONS_ACCEPTED);
+    }
+
+    /**
+     * Stops receiving and closes the sockets. The entries sent before are processed by the tractor.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        selector.wakeup();
+        thread.join();
+
+        closeChannels();
+    }
+
+    private void run() {
+        // bound to this thread, the envelope borrowed, but not sent, is returned to the tractor on the exit
+        try (EntrySender<EE> sender = tractor.newEntrySender(classOfEntry)) {
+            envelope = sender.nextEnvelope();
+
+            while (running) {
+                if (acceptPaused && System.nanoTime() - acceptResumeTime >= 0) {
+                    acceptPaused = false;
+                    tcpKey.interestOps(SelectionKey.OP_ACCEPT);
+                }
+                if (acceptPaused) {
+                    selector.select(ACCEPT_PAUSE_MILLIS); // wakes up to resume accepting
+                } else {
+                    selector.select();
+                }
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.channel() == udp) {
+                        receiveDatagrams(sender);
+                    } else {
+                        receive(key, sender);
+                    }
+                }
+            }
+        } catch (final TractorClosedException | InterruptedException e) {
+            // the tractor is closed, nowhere to send to
+        } catch (final Throwable t) {
+            errorHandler.onError(this, "An error in " + thread.getName() + ": " + t.getLocalizedMessage(), t);
+        }
+        if (running) { // nothing reads the sockets anymore, so, the clients see them closed
+            closeChannels();
+        }
+    }
+
+    private void accept() {
+        final SocketChannel connection;
+        try {
+            connection = acceptor.accept(tcp);
+        } catch (final IOException e) {
+            errorHandler.onError(this, "An error while accepting a connection, accepting is paused", tcp, e);
+            tcpKey.interestOps(0); // the pending connection would be selected again at once
+            acceptPaused = true;
+            acceptResumeTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ACCEPT_PAUSE_MILLIS);
+            return;
+        }
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.configureBlocking(false);
+            connection.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            connection.register(selector, SelectionKey.OP_READ, ByteBuffer.allocateDirect(bufferSize));
+        } catch (final IOException e) {
+            errorHandler.onError(this, "An error while registering the connection", connection, e);
+            closeChannel(connection);
+            return;
+        }
+        counters.increment(CONNECTIONS_ACCEPTED);
+    }
+
+    private void receive(final SelectionKey key, final EntrySender<EE> sender)
+            throws TractorClosedException, InterruptedException {
+        final SocketChannel connection = (SocketChannel) key.channel();
+        final ByteBuffer buffer = (ByteBuffer) key.attachment();
+
+        try {
+            if (connection.read(buffer) < 0) {
+                close(key); // the bytes of an incomplete frame are dropped
+                return;
+            }
+        } catch (final IOException e) {
+            errorHandler.onError(this, "An error while reading the connection", connection, e);
+            close(key);
+            return;
+        }
+
+        buffer.flip();
+        final boolean decoded = decode(buffer, sender);
+        buffer.compact();
+
+        if (!decoded) {
+            close(key);
+        } else if (!buffer.hasRemaining()) { // the buffer is full, but doesn't hold a whole frame
+            counters.increment(FRAME_ERRORS);
+            errorHandler.onError(this, "The frame exceeds the buffer, the connection is closed", connection, null);
+            close(key);
+        }
+    }
+
+    private void receiveDatagrams(final EntrySender<EE> sender) throws TractorClosedException, InterruptedException {
+        for (int i = 0; i < DATAGRAMS_PER_TURN; i++) {
+            datagram.clear();
+            try {
+                if (udp.receive(datagram) == null) {
+                    return;
+                }
+            } catch (final IOException e) { // the next datagrams can be received
+                errorHandler.onError(this, "An error while receiving a datagram", udp, e);
+                return;
+            }
+            datagram.flip();
+            if (decode(datagram, sender) && datagram.hasRemaining()) {
+                counters.increment(FRAME_ERRORS);
+                errorHandler.onError(this, "The datagram ends with an incomplete frame", udp, null);
+            }
+        }
+    }
+
+    /**
+     * Decodes and sends all the whole frames of the buffer.
+     * @return false if a frame is malformed
+     */
+    private boolean decode(final ByteBuffer buffer, final EntrySender<EE> sender)
+            throws TractorClosedException, InterruptedException {
+        while (buffer.hasRemaining()) {
+            try {
+                if (!decoder.decode(buffer, envelope.entry())) {
+                    return true;
+                }
+            } catch (final Exception e) {
+                counters.increment(FRAME_ERRORS);
+                errorHandler.onError(this, "An error while decoding the frame", decoder, e);
+                return false;
+            }
+            envelope.send(); // waits while the tractor is full, no socket is read meanwhile
+            counters.increment(FRAMES_RECEIVED);
+            envelope = sender.nextEnvelope();
+        }
+        return true;
+    }
+
+    private void close(final SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (final IOException e) {
+            errorHandler.onError(this, "An error while closing the connection", e);
+        }
+    }
+
+    private void closeChannels() {
+        if (selector.isOpen()) {
+            for (final SelectionKey key : selector.keys()) {
+                close(key);
+            }
+            try {
+                selector.close();
+            } catch (final IOException e) {
+                errorHandler.onError(this, "An error while closing the selector", e);
+            }
+        }
+        if (tcp != null && tcp.isOpen()) { // not registered, if the constructor has failed
+            closeChannel(tcp);
+        }
+        if (udp != null && udp.isOpen()) {
+            closeChannel(udp);
+        }
+    }
+
+    private void closeChannel(final Channel channel) {
+        try {
+            channel.close();
+        } catch (final IOException e) {
+            errorHandler.onError(this, "An error while closing the socket", e);
+        }
+    }
+
+    // accepts a connection, the tests make it fail
+    interface Acceptor {
+        SocketChannel accept(ServerSocketChannel tcp) throws IOException;
+    }
+
+    public static final class Builder<EE extends Entry> {
+        private final Tractor<? super EE, ?, ?> tractor;
+        private final Class<EE> classOfEntry;
+        private final FrameDecoder<? super EE> decoder;
+
+        private InetSocketAddress tcpAddress;
+        private InetSocketAddress udpAddress;
+        private int bufferSize = 64 * 1024;
+        private ErrorHandler errorHandler = new JulLoggingErrorHandler(NetworkIngress.class);
+        private Acceptor acceptor = ServerSocketChannel::accept;
+
+        private Builder(
+                final Tractor<? super EE, ?, ?> tractor,
+                final Class<EE> classOfEntry,
+                final FrameDecoder<? super EE> decoder) {
+            this.tractor = tractor;
+            this.classOfEntry = classOfEntry;
+            this.decoder = decoder;
+        }
+
+        /**
+         * @param address address to accept the TCP connections on, the port can be 0
+         * @return this builder
+         */
+        public Builder<EE> tcp(final InetSocketAddress address) {
+            this.tcpAddress = address;
+            return this;
+        }
+
+        /**
+         * @param address address to receive the datagrams on, the port can be 0
+         * @return this builder
+         */
+        public Builder<EE> udp(final InetSocketAddress address) {
+            this.udpAddress = address;
+            return this;
+        }
+
+        /**
+         * @param bufferSize size of the buffer of each TCP connection and of the datagrams, limits the size
+         *                   of a frame
+         * @return this builder
+         */
+        public Builder<EE> bufferSize(final int bufferSize) {
+            if (bufferSize < 1) {
+                throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+            }
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public Builder<EE> errorHandler(final ErrorHandler errorHandler) {
+            this.errorHandler = errorHandler;
+            return this;
+        }
+
+        Builder<EE> acceptor(final Acceptor acceptor) {
+            this.acceptor = acceptor;
+            return this;
+        }
+
+        public NetworkIngress<EE> build() throws IOException {
+            if (tcpAddress == null && udpAddress == null) {
+                throw new IllegalStateException("Neither TCP nor UDP address is set");
+            }
+            return new NetworkIngress<>(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.function.Supplier;
+
+public interface ObjectPool<O extends PoolableObject> {
+
+    O borrow();
+
+    void release(O object);
+
+    static <O extends PoolableObject> Supplier<O> constructorBasedSupplier(final Class<O> objectClass) {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        final MethodType constructorType = MethodType.methodType(void.class);
+        final MethodHandle objectConstructor;
+        try {
+            objectConstructor = lookup.findConstructor(objectClass, constructorType);
+        } catch (final Exception e) {
+            throw new RuntimeException("Cannot find default constructor: " + constructorType, e);
+        }
+        return () -> {
+            try {
+                return (O) objectConstructor.invoke();
+            } catch (final Throwable t) {
+                throw new RuntimeException("Cannot create instance of " + objectClass, t);
+            }
+        };
+    }
+}
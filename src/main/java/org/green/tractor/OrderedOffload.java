@@ -0,0 +1,312 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+import java.util.function.Supplier;
+
+abstract class OrderedOffloadPad0 {
+    protected long p01, p02, p03, p04, p05, p06, p07;
+    protected long p08, p09, p010, p011, p012, p013, p014, p015;
+}
+
+abstract class ClaimedTasks extends OrderedOffloadPad0 {
+    protected volatile long claimedTasks; // sequence of the next task to be claimed by a helper
+}
+
+abstract class OrderedOffloadPad1 extends ClaimedTasks {
+    protected long p11, p12, p13, p14, p15, p16, p17;
+    protected long p18, p19, p110, p111, p112, p113, p114, p115;
+}
+
+abstract class WakeUpRequested extends OrderedOffloadPad1 {
+    protected volatile int wakeUpRequested;
+}
+
+abstract class OrderedOffloadPad2 extends WakeUpRequested {
+    protected long p21, p22, p23, p24, p25, p26, p27;
+    protected long p28, p29, p210, p211, p212, p213, p214, p215;
+}
+
+/**
+ * Offloads the expensive and independent part of the processing of entries to helper threads, while
+ * the state of the executor is still owned by the worker only. For each entry the worker copies the input
+ * of the expensive part into a preallocated task ({@link Stage#prepare(Entry, Object)}), a helper computes
+ * the task ({@link Stage#compute(Object)}) and the worker completes the tasks in the order they have been
+ * submitted ({@link Stage#complete(Object)}).
+ * <p>
+ * The tasks form a ring indexed by their sequences: the helpers claim the submitted tasks with CAS and mark
+ * the computed ones in the ring, so, neither locks nor allocations per entry are required. The worker
+ * completes the tasks every time it submits a new one. If the tractor is attached with
+ * {@link #wakeUpBy(DefaultTractor)}, the helper, which computed the oldest task, makes the worker complete
+ * the tasks also when no entries are coming.
+ * @param <E> type of the entries
+ * @param <T> type of the tasks
+ */
+public final class OrderedOffload<E extends Entry, T> extends OrderedOffloadPad2 implements AutoCloseable {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final long CLAIMED_TASKS_OFFSET;
+    private static final long WAKE_UP_REQUESTED_OFFSET;
+    private static final long LONG_ARRAY_BASE = UNSAFE.arrayBaseOffset(long[].class);
+
+    private static final long PARK_NANOS = 1;
+
+    private static final int SUBMITTED = 0;
+    private static final int COMPLETED = 1;
+
+    static {
+        try {
+            CLAIMED_TASKS_OFFSET = UNSAFE.objectFieldOffset(ClaimedTasks.class.getDeclaredField("claimedTasks"));
+            WAKE_UP_REQUESTED_OFFSET = UNSAFE.objectFieldOffset(
+                    WakeUpRequested.class.getDeclaredField("wakeUpRequested"));
+        } catch (final Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    /**
+     * The stage's steps. The tasks are reused, so, neither the helpers nor the worker may keep references to them.
+     * @param <E> type of the entries
+     * @param <T> type of the tasks
+     */
+    public interface Stage<E extends Entry, T> {
+
+        /**
+         * Called by the worker. The entry isn't available after the method returns.
+         * @param entry entry being processed
+         * @param task task to copy the input of the expensive part into
+         */
+        void prepare(E entry, T task);
+
+        /**
+         * Called by a helper. If the method throws an exception, the error is reported, but the task
+         * is completed anyway.
+         * @param task task to compute
+         */
+        void compute(T task);
+
+        /**
+         * Called by the worker in the order the tasks have been submitted. If the method throws an exception,
+         * the error is reported and the next task is completed.
+         * @param task computed task
+         */
+        void complete(T task);
+    }
+
+    private final Object[] tasks;
+    private final long[] computedSequences; // sequence of the task computed in the slot
+    private final int mask;
+
+    private final Stage<E, T> stage;
+    private final ErrorHandler errorHandler;
+    private final Runnable drainTask = this::drain;
+
+    private final SingleWriterCounters workerCounters = new SingleWriterCounters(COMPLETED + 1); // written
+    // by the worker only, SUBMITTED is read by the helpers, COMPLETED is read to decide on the wake up
+
+    private long submitted; // accessed by the worker only
+    private long completed; // accessed by the worker only
+    private long publishedCompleted; // accessed by the worker only
+
+    private final Thread[] helpers;
+
+    private volatile DefaultTractor<?, ?, ?> tractor;
+    private volatile boolean closed;
+
+    /**
+     * @param name prefix of the names of the helpers' threads
+     * @param capacity maximum number of the tasks submitted, but not completed yet, must be a power of two
+     * @param numberOfHelpers number of the helpers' threads
+     * @param taskFactory factory of the preallocated tasks
+     * @param stage the stage's steps
+     * @param errorHandler handler of the errors of computing
+     */
+    public OrderedOffload(
+            final String name,
+            final int capacity,
+            final int numberOfHelpers,
+            final Supplier<T> taskFactory,
+            final Stage<E, T> stage,
+            final ErrorHandler errorHandler) {
+
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two: " + capacity);
+        }
+        if (numberOfHelpers < 1) {
+            throw new IllegalArgumentException("Number of helpers must be positive: " + numberOfHelpers);
+        }
+
+        this.mask = capacity - 1;
+        this.stage = stage;
+        this.errorHandler = errorHandler;
+
+        tasks = new Object[capacity];
+        computedSequences = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            tasks[i] = taskFactory.get();
+            computedSequences[i] = -1;
+        }
+
+        helpers = new Thread[numberOfHelpers];
+        for (int i = 0; i < numberOfHelpers; i++) {
+            helpers[i] = new Thread(this::help, name + "-helper-" + i);
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
+    }
+
+    /**
+     * Lets the helpers make the worker of the tractor complete the computed tasks, when no entries are coming.
+     * @param tractor tractor, whose executor uses this offload
+     */
+    public void wakeUpBy(final DefaultTractor<?, ?, ?> tractor) {
+        this.tractor = tractor;
+    }
+
+    /**
+     * Submits the task for the entry and completes the computed tasks. If all the tasks are busy,
+     * waits for the oldest one. Must be called by the worker only.
+     * @param entry entry being processed
+     */
+    @SuppressWarnings("unchecked")
+    public void submit(final E entry) {
+        int idles = 0;
+        while (submitted - completed == tasks.length) {
+            if (drain() == 0) {
+                BackOff.idle(idles++, PARK_NANOS);
+            }
+        }
+
+        stage.prepare(entry, (T) tasks[(int) submitted & mask]);
+
+        submitted++;
+        workerCounters.increment(SUBMITTED); // ordered write publishes the task to the helpers
+
+        drain();
+    }
+
+    /**
+     * Completes the computed tasks in the order they have been submitted. Must be called by the worker only.
+     * @return number of the completed tasks
+     */
+    @SuppressWarnings("unchecked")
+    public int drain() {
+        UNSAFE.putIntVolatile(this, WAKE_UP_REQUESTED_OFFSET, 0); // the tasks computed after this point
+        // will request a new wake up
+
+        final long start = completed;
+        while (true) {
+            while (completed < submitted && isComputed(completed)) {
+                final T task = (T) tasks[(int) completed & mask];
+                try {
+                    stage.complete(task);
+                } catch (final Exception e) {
+                    errorHandler.onError(this, "An error while completing the task", task, e);
+                }
+                completed++;
+            }
+
+            if (completed == publishedCompleted) {
+                break;
+            }
+            workerCounters.add(COMPLETED, completed - publishedCompleted); // ordered write frees the slots
+            publishedCompleted = completed;
+
+            UNSAFE.fullFence(); // StoreLoad: either the helper, which computes the next task, sees the completed
+            // sequence and wakes the worker up, or the worker sees the computed task here
+        }
+        return (int) (completed - start);
+    }
+
+    /**
+     * @return number of the tasks submitted, but not completed yet
+     */
+    public long pending() {
+        return workerCounters.get(SUBMITTED) - workerCounters.get(COMPLETED);
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i].join();
+        }
+    }
+
+    private boolean isComputed(final long sequence) {
+        return UNSAFE.getLongVolatile(computedSequences, computedSequenceAddress(sequence)) == sequence;
+    }
+
+    private long computedSequenceAddress(final long sequence) {
+        return LONG_ARRAY_BASE + ((sequence & mask) << 3);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void help() {
+        int idles = 0;
+
+        while (!closed) {
+            final long sequence = claimedTasks;
+
+            if (sequence == workerCounters.get(SUBMITTED) ||
+                    !UNSAFE.compareAndSwapLong(this, CLAIMED_TASKS_OFFSET, sequence, sequence + 1)) {
+                BackOff.idle(idles++, PARK_NANOS);
+                continue;
+            }
+            idles = 0;
+
+            final T task = (T) tasks[(int) sequence & mask];
+            try {
+                stage.compute(task);
+            } catch (final Exception e) {
+                errorHandler.onError(this, "An error while computing the task", task, e);
+            }
+
+            UNSAFE.putLongVolatile(computedSequences, computedSequenceAddress(sequence), sequence); // volatile
+            // write publishes the computed task to the worker and orders it before the read of the completed sequence
+
+            if (sequence == workerCounters.get(COMPLETED)) { // the worker waits for this task
+                wakeUp();
+            }
+        }
+    }
+
+    private void wakeUp() {
+        final DefaultTractor<?, ?, ?> t = tractor;
+        if (t == null || !UNSAFE.compareAndSwapInt(this, WAKE_UP_REQUESTED_OFFSET, 0, 1)) {
+            return;
+        }
+        try {
+            t.runOnWorker(drainTask);
+        } catch (final TractorClosedException e) {
+            // nobody to wake up
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.util.function.Supplier;
+
+/**
+ * Streams the outputs of an executor, like fills or events, out of the worker. The worker claims a preallocated
+ * output from the ring, fills it and publishes it:
+ * <pre>
+ *     final Fill fill = fills.claim();
+ *     if (fill != null) {
+ *         fill.set(orderId, price, quantity);
+ *         fills.publish();
+ *     }
+ * </pre>
+ * Each subscriber gets all the outputs in the order they have been published on its own thread, which drains
+ * the outputs in batches and backs off, while there are no new ones. An output is reused, when all
+ * the subscribers have got it. If the ring is full, the worker either waits for the slowest subscriber or
+ * drops the output, so, nothing is allocated and, with dropping, the worker never waits.
+ * @param <O> type of the outputs
+ */
+public final class OutputPublisher<O> implements AutoCloseable {
+    private static final int PUBLISHED = 0;
+    private static final int DROPPED = 1;
+
+    private static final long PRODUCER_PARK_NANOS = 1_000;
+
+    private final String name;
+    private final Object[] ring;
+    private final int mask;
+    private final boolean dropOnOverflow;
+    private final ErrorHandler errorHandler;
+
+    private final SingleWriterCounters producerCounters = new SingleWriterCounters(2); // written by the producer
+
+    private long nextSequence; // accessed by the producer only
+    private long cachedMinDelivered; // accessed by the producer only
+
+    // each one is written by its subscriber's thread, guarded by this on write
+    private volatile SingleWriterCounters[] delivered = new SingleWriterCounters[0];
+    private Thread[] threads = new Thread[0]; // guarded by this
+
+    private volatile boolean closed;
+
+    /**
+     * @param name prefix of the names of the subscribers' threads
+     * @param capacity capacity of the ring, must be a power of two
+     * @param factory factory of the preallocated outputs
+     * @param dropOnOverflow whether to drop the outputs if the ring is full instead of waiting
+     * @param errorHandler handler of the subscribers' errors
+     */
+    public OutputPublisher(
+            final String name,
+            final int capacity,
+            final Supplier<O> factory,
+            final boolean dropOnOverflow,
+            final ErrorHandler errorHandler) {
+
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two: " + capacity);
+        }
+
+        this.name = name;
+        this.mask = capacity - 1;
+        this.dropOnOverflow = dropOnOverflow;
+        this.errorHandler = errorHandler;
+
+        ring = new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = factory.get();
+        }
+    }
+
+    /**
+     * Starts a thread delivering the outputs published from now on to the subscriber.
+     * @param subscriber the subscriber
+     * @param idleParkNanos duration of parking of the subscriber's thread, when there are no outputs
+     *                      after spinning and yielding
+     */
+    public synchronized void subscribe(final OutputSubscriber<? super O> subscriber, final long idleParkNanos) {
+        if (closed) {
+            throw new IllegalStateException("The publisher is closed");
+        }
+
+        final SingleWriterCounters counter = new SingleWriterCounters(1);
+        counter.add(0, producerCounters.get(PUBLISHED));
+
+        final SingleWriterCounters[] current = delivered;
+        final SingleWriterCounters[] updated = new SingleWriterCounters[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = counter;
+        delivered = updated; // volatile write, the producer waits for the subscriber from now on
+
+        // the outputs published before the producer has seen the subscriber can be overwritten
+        final long first = producerCounters.get(PUBLISHED);
+
+        final Thread thread = new Thread(() -> run(subscriber, counter, first, idleParkNanos),
+                name + "-subscriber-" + current.length);
+        thread.setDaemon(true);
+
+        final Thread[] grown = new Thread[threads.length + 1];
+        System.arraycopy(threads, 0, grown, 0, threads.length);
+        grown[threads.length] = thread;
+        threads = grown;
+
+        thread.start();
+    }
+
+    /**
+     * Called by the producer only.
+     * @return the output to be filled and published, null if the ring is full and the output is dropped
+     */
+    @SuppressWarnings("unchecked")
+    public O claim() {
+        final long sequence = nextSequence;
+
+        if (sequence - cachedMinDelivered >= ring.length) {
+            int idles = 0;
+            while (sequence - (cachedMinDelivered = minDelivered()) >= ring.length) {
+                if (closed || dropOnOverflow) {
+                    producerCounters.increment(DROPPED);
+                    return null;
+                }
+                BackOff.idle(idles++, PRODUCER_PARK_NANOS);
+            }
+        }
+        return (O) ring[(int) sequence & mask];
+    }
+
+    /**
+     * Called by the producer only after a successful {@link #claim()}.
+     */
+    public void publish() {
+        nextSequence++;
+        producerCounters.increment(PUBLISHED); // ordered write publishes the output
+    }
+
+    public long published() {
+        return producerCounters.get(PUBLISHED);
+    }
+
+    /**
+     * @return number of the outputs dropped because of the full ring
+     */
+    public long dropped() {
+        return producerCounters.get(DROPPED);
+    }
+
+    /**
+     * Delivers the published outputs and stops the subscribers' threads.
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    @Override
+    public void close() throws InterruptedException {
+        final Thread[] t;
+        synchronized (this) {
+            closed = true;
+            t = threads;
+        }
+        for (int i = 0; i < t.length; i++) {
+            t[i].join();
+        }
+    }
+
+    private long minDelivered() {
+        final SingleWriterCounters[] d = delivered;
+        long min = nextSequence; // without subscribers the producer checks them again after a turn of the ring
+        for (int i = 0; i < d.length; i++) {
+            min = Math.min(min, d[i].get(0));
+        }
+        return min;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void run(
+            final OutputSubscriber<? super O> subscriber,
+            final SingleWriterCounters counter,
+            final long first,
+            final long idleParkNanos) {
+
+        long next = first;
+        int idles = 0;
+
+        while (true) {
+            final boolean wasClosed = closed; // read before the published sequence to drain the ring on close
+            final long published = producerCounters.get(PUBLISHED);
+
+            if (next == published) {
+                if (wasClosed) {
+                    return;
+                }
+                BackOff.idle(idles++, idleParkNanos);
+                continue;
+            }
+            idles = 0;
+
+            while (next < published) {
+                try {
+                    subscriber.onOutput((O) ring[(int) next & mask], next, next == published - 1);
+                } catch (final Exception e) {
+                    errorHandler.onError(this, "An error while delivering the output", subscriber, e);
+                }
+                next++;
+            }
+            counter.add(0, next - counter.get(0)); // the whole batch is freed at once
+        }
+    }
+}
\ No newline at end of file
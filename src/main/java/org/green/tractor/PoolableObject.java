@@ -24,16 +24,20 @@
 package org.green.tractor;
 
 public abstract class PoolableObject {
-    private MbsrConsatantObjectPool owner;
+    private ObjectPool owner;
 
-    void setOwner(final MbsrConsatantObjectPool owner) {
+    // these two fields are maintained by MbsrGrowingObjectPool only
+    int poolIndex; // 1-based index of the object in its pool
+    int nextPoolIndex; // index of the next available object, valid while the object is in the pool
+
+    void setOwner(final ObjectPool owner) {
         if (this.owner != null && this.owner != owner) {
             throw new IllegalArgumentException("Owner cannot be changed");
         }
         this.owner = owner;
     }
 
-    MbsrConsatantObjectPool owner() {
+    ObjectPool owner() {
         return owner;
     }
 
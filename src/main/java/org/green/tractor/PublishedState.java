@@ -0,0 +1,147 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+import java.util.function.Supplier;
+
+abstract class PublishedStatePad0 {
+    protected long p01, p02, p03, p04, p05, p06, p07;
+    protected long p08, p09, p010, p011, p012, p013, p014, p015;
+}
+
+abstract class PublishedStateSequence extends PublishedStatePad0 {
+    protected volatile long sequence; // odd while the state is being written
+}
+
+abstract class PublishedStatePad1 extends PublishedStateSequence {
+    protected long p11, p12, p13, p14, p15, p16, p17;
+    protected long p18, p19, p110, p111, p112, p113, p114, p115;
+}
+
+/**
+ * View of the executor's state published by the worker and read by any thread directly, without
+ * the commands. The view is protected with a sequence lock: the worker copies its state into the view
+ * between two increments of the sequence and a reader copies the view into its own instance and retries,
+ * if the sequence has changed meanwhile. So, neither the worker waits for the readers, nor the readers
+ * interrupt the worker, and nothing is allocated.
+ * <p>
+ * Since a reader can copy a view being written, the copier must tolerate inconsistent values: a copy,
+ * which throws an exception, is retried, if the view has been changed, and the exception is rethrown otherwise.
+ * The views of primitives and preallocated arrays of primitives are the best ones.
+ * @param <S> type of the view
+ */
+public final class PublishedState<S> extends PublishedStatePad1 {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final long SEQUENCE_OFFSET;
+
+    private static final long PARK_NANOS = 1;
+
+    static {
+        try {
+            SEQUENCE_OFFSET = UNSAFE.objectFieldOffset(PublishedStateSequence.class.getDeclaredField("sequence"));
+        } catch (final Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    /**
+     * Copies one view into another one.
+     * @param <S> type of the view
+     */
+    public interface Copier<S> {
+
+        void copy(S from, S to);
+
+    }
+
+    private final S view;
+    private final Copier<S> copier;
+
+    /**
+     * @param factory factory of the published view
+     * @param copier copier of the views
+     */
+    public PublishedState(final Supplier<S> factory, final Copier<S> copier) {
+        this.view = factory.get();
+        this.copier = copier;
+    }
+
+    /**
+     * Publishes the state. Must be called by one single thread, normally, by the worker.
+     * @param from the state to copy into the view
+     */
+    public void publish(final S from) {
+        final long s = sequence;
+
+        UNSAFE.putOrderedLong(this, SEQUENCE_OFFSET, s + 1);
+        UNSAFE.storeFence(); // the readers see the odd sequence before any change of the view
+
+        copier.copy(from, view);
+
+        UNSAFE.putOrderedLong(this, SEQUENCE_OFFSET, s + 2); // <membar StoreStore> orders the changes of the view
+        // before the even sequence
+    }
+
+    /**
+     * Copies the latest published view. Can be called by any thread.
+     * @param into the view to copy into
+     * @return version of the copied view
+     */
+    public long read(final S into) {
+        int idles = 0;
+        while (true) {
+            final long s = sequence; // volatile read leads to <membar LoadLoad|LoadStore>
+            if ((s & 1) == 0) {
+                RuntimeException error = null;
+                try {
+                    copier.copy(view, into);
+                } catch (final RuntimeException e) {
+                    error = e;
+                }
+
+                UNSAFE.loadFence(); // the view is read before the sequence is checked again
+
+                if (sequence == s) {
+                    if (error != null) {
+                        throw error;
+                    }
+                    return s >> 1;
+                }
+            }
+            BackOff.idle(idles++, PARK_NANOS);
+        }
+    }
+
+    /**
+     * Lets a reader check cheaply, whether the view has been changed since its last copy.
+     * @return version of the latest published view, it grows with each publication
+     */
+    public long version() {
+        return sequence >> 1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,184 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the results of the read-only commands of one class, so, the callers get the results of the recently
+ * executed queries on their own threads without the worker. The results are keyed by
+ * {@link ReadOnlyCommand#coalescingKey()}, which must identify the query completely. The worker puts the result
+ * of each successfully executed query into the cache. The executor must call {@link #invalidate()}, when
+ * the state the queries read changes, and all the cached results become stale at once; besides that, a result
+ * becomes stale after the time to live.
+ * <p>
+ * The cache is direct-mapped: a result replaces the one with another key in the same slot. Each slot is
+ * protected with a sequence lock, so, the callers neither lock nor allocate. Like with {@link PublishedState},
+ * {@link ReadOnlyCommand#copyResult(ErrorableResult)} can be called for the result being replaced, a copy,
+ * which throws an exception, is a miss then.
+ * @param <C> class of the queries
+ */
+public final class QueryCache<C extends ReadOnlyCommand<?>> {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final long LONG_ARRAY_BASE = UNSAFE.arrayBaseOffset(long[].class);
+
+    private final int typeId;
+    private final long timeToLiveNanos;
+
+    private final Object[] results; // preallocated queries holding the cached results
+    private final long[] sequences; // odd while the slot is being written
+    private final long[] keys;
+    private final long[] versions;
+    private final long[] expirations;
+    private final int mask;
+
+    private volatile long version; // written by the worker only
+
+    /**
+     * @param ofClass class of the queries
+     * @param capacity number of the cached results, must be a power of two
+     * @param timeToLive time the results are valid for, 0 if they are invalidated by {@link #invalidate()} only
+     * @param unit unit of the time to live
+     * @param factory factory of the queries, which hold the cached results
+     */
+    public QueryCache(
+            final Class<C> ofClass,
+            final int capacity,
+            final long timeToLive,
+            final TimeUnit unit,
+            final Supplier<C> factory) {
+
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two: " + capacity);
+        }
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("Time to live cannot be negative: " + timeToLive);
+        }
+
+        typeId = CommandTypes.typeId(ofClass);
+        timeToLiveNanos = unit.toNanos(timeToLive);
+
+        results = new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            results[i] = factory.get();
+        }
+        sequences = new long[capacity];
+        keys = new long[capacity];
+        versions = new long[capacity];
+        expirations = new long[capacity];
+        mask = capacity - 1;
+
+        for (int i = 0; i < capacity; i++) {
+            versions[i] = -1; // no result
+        }
+    }
+
+    /**
+     * Makes all the cached results stale. Must be called by the worker, when the state read by the queries changes,
+     * before the changing command is completed.
+     */
+    public void invalidate() {
+        version++;
+    }
+
+    /**
+     * @return version of the state read by the queries, it grows with each invalidation
+     */
+    public long version() {
+        return version;
+    }
+
+    int typeId() {
+        return typeId;
+    }
+
+    /**
+     * Completes the query with the cached result. Can be called by any thread.
+     * @param query query with its key set
+     * @return true if the query has been completed
+     */
+    boolean complete(final ReadOnlyCommand<?> query) {
+        final long key = query.coalescingKey();
+        final int index = index(key);
+        final long currentVersion = version; // volatile read leads to <membar LoadLoad|LoadStore>
+
+        final long sequence = UNSAFE.getLongVolatile(sequences, sequenceAddress(index));
+        if ((sequence & 1) != 0 ||
+                keys[index] != key ||
+                versions[index] != currentVersion ||
+                timeToLiveNanos != 0 && CachedClock.nanoTime() - expirations[index] >= 0) {
+            return false;
+        }
+
+        try {
+            query.completeWith((ReadOnlyCommand<?>) results[index]);
+        } catch (final RuntimeException e) {
+            return false; // the result has been replaced during the copy
+        }
+
+        UNSAFE.loadFence(); // the slot is read before the sequence is checked again
+
+        return UNSAFE.getLongVolatile(sequences, sequenceAddress(index)) == sequence;
+    }
+
+    /**
+     * Caches the result of the executed query. Must be called by the worker.
+     * @param query the executed query
+     */
+    void put(final ReadOnlyCommand<?> query) {
+        final long key = query.coalescingKey();
+        final int index = index(key);
+        final long address = sequenceAddress(index);
+        final long sequence = sequences[index];
+
+        UNSAFE.putOrderedLong(sequences, address, sequence + 1);
+        UNSAFE.storeFence(); // the callers see the odd sequence before any change of the slot
+
+        try {
+            keys[index] = key;
+            versions[index] = version;
+            expirations[index] = CachedClock.nanoTime() + timeToLiveNanos;
+            ((ReadOnlyCommand<?>) results[index]).completeWith(query);
+        } catch (final RuntimeException e) {
+            versions[index] = -1; // the slot is empty
+            throw e;
+        } finally {
+            UNSAFE.putOrderedLong(sequences, address, sequence + 2); // <membar StoreStore> orders the changes
+            // of the slot before the even sequence
+        }
+    }
+
+    private int index(final long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private static long sequenceAddress(final int index) {
+        return LONG_ARRAY_BASE + ((long) index << 3);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+/**
+ * Command, which doesn't change the state of the executor. If identical read-only commands are queued together,
+ * the worker executes only the first one and completes the others with a copy of its result, so, a storm
+ * of the same queries costs the worker one execution per batch of the commands. Commands, which aren't
+ * read-only, are never reordered with the read-only ones, so, a read never returns a result older than
+ * the commands queued before it.
+ * @param <R> type of the result
+ */
+public abstract class ReadOnlyCommand<R extends ErrorableResult> extends Command<R> {
+
+    protected ReadOnlyCommand(final R result) {
+        super(result);
+    }
+
+    /**
+     * Called by the worker's thread.
+     * @return the key, which is the same for the identical commands of the same class
+     */
+    protected abstract long coalescingKey();
+
+    /**
+     * Called by the worker's thread for the commands of the same class and with the same key.
+     * By default, the commands with the same key are identical.
+     * @param executed the command executed before
+     * @return true if this command may get the result of the executed one
+     */
+    protected boolean coalescesWith(final ReadOnlyCommand<R> executed) {
+        return true;
+    }
+
+    /**
+     * Called by the worker's thread. The error, if any, is copied by the caller.
+     * @param from the result of the identical command executed before
+     */
+    protected abstract void copyResult(R from);
+
+    @SuppressWarnings("unchecked")
+    final void completeWith(final ReadOnlyCommand<?> executed) {
+        final R from = (R) executed.result();
+        result.setError(from.error());
+        copyResult(from);
+    }
+}
\ No newline at end of file
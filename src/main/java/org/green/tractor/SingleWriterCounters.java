@@ -0,0 +1,66 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+import static org.green.cab.Utils.CACHE_LINE_SIZE;
+
+/**
+ * A set of counters, each of them is modified by one single writer's thread with plain ordered writes
+ * and can be read by any thread. The counters are padded to avoid false sharing with neighbour objects.
+ */
+final class SingleWriterCounters {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final int LONG_ARRAY_PAD = CACHE_LINE_SIZE * 2 / 8;
+    private static final long LONG_ARRAY_BASE = UNSAFE.arrayBaseOffset(long[].class) + LONG_ARRAY_PAD * 8;
+
+    private final long[] values;
+
+    SingleWriterCounters(final int numberOfCounters) {
+        values = new long[numberOfCounters + 2 * LONG_ARRAY_PAD];
+    }
+
+    // called by the writer's thread only
+    void increment(final int counter) {
+        add(counter, 1);
+    }
+
+    // called by the writer's thread only
+    void add(final int counter, final long delta) {
+        final long address = counterAddress(counter);
+        UNSAFE.putOrderedLong(values, address, UNSAFE.getLong(values, address) + delta); // normal read
+        // of own value and ordered write, no StoreLoad membar is required
+    }
+
+    long get(final int counter) {
+        return UNSAFE.getLongVolatile(values, counterAddress(counter));
+    }
+
+    private static long counterAddress(final int counter) {
+        return LONG_ARRAY_BASE + ((long) counter << 3);
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+/**
+ * Receiver of the tractor's diagnostic events, like Java Flight Recorder events. The first implementation found
+ * by {@link java.util.ServiceLoader} is used, none by default. The events are emitted at the batch level
+ * or on slow paths only, and only while {@link #isRecording()} returns true.
+ */
+public interface TractorEvents {
+
+    /**
+     * Nanoseconds a wait or an execution should last to be reported.
+     */
+    long THRESHOLD_NANOS = 10_000;
+
+    /**
+     * Must be cheap, it is called by the worker for every entry and command.
+     * @return true if the events should be emitted
+     */
+    boolean isRecording();
+
+    void commandExecuted(String worker, Class<?> commandClass, long executionNanos, boolean failed);
+
+    void entryBatchProcessed(String worker, int numberOfEntries, long processingNanos);
+
+    void workerIdle(String worker, long idleNanos);
+
+    void poolExhausted(Class<?> objectClass, long waitNanos);
+
+    void producerBackPressure(Class<?> entryClass, long waitNanos);
+
+    static TractorEvents current() {
+        return TractorEventsHolder.EVENTS;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+final class TractorEventsHolder {
+    static final TractorEvents EVENTS = load();
+
+    private TractorEventsHolder() {
+    }
+
+    private static TractorEvents load() {
+        final Iterator<TractorEvents> implementations = ServiceLoader.load(TractorEvents.class).iterator();
+        return implementations.hasNext() ? implementations.next() : new NoTractorEvents();
+    }
+
+    private static final class NoTractorEvents implements TractorEvents {
+        @Override
+        public boolean isRecording() {
+            return false;
+        }
+
+        @Override
+        public void commandExecuted(
+                final String worker,
+                final Class<?> commandClass,
+                final long executionNanos,
+                final boolean failed) {
+        }
+
+        @Override
+        public void entryBatchProcessed(final String worker, final int numberOfEntries, final long processingNanos) {
+        }
+
+        @Override
+        public void workerIdle(final String worker, final long idleNanos) {
+        }
+
+        @Override
+        public void poolExhausted(final Class<?> objectClass, final long waitNanos) {
+        }
+
+        @Override
+        public void producerBackPressure(final Class<?> entryClass, final long waitNanos) {
+        }
+    }
+}
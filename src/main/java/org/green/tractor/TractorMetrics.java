@@ -0,0 +1,207 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+/**
+ * A snapshot of the tractor's counters. The counters are read one by one without any lock,
+ * so, the snapshot is not atomic, but every single counter is consistent.
+ */
+public final class TractorMetrics {
+    private final String name;
+    private final int ringCapacity;
+    private final long entriesSent;
+    private final long entriesProcessed;
+    private final long entryErrors;
+    private final long entriesExpired;
+    private final long commandsExecuted;
+    private final long commandErrors;
+    private final long commandsExpired;
+    private final long commandsCoalesced;
+    private final long entryPoolsSize;
+    private final long entryPoolExhaustions;
+    private final long commandPoolExhaustions;
+    private final long laneFullWaits;
+    private final long workerBusyNanos;
+    private final long workerIdleNanos;
+
+    TractorMetrics(
+            final String name,
+            final int ringCapacity,
+            final long entriesSent,
+            final long entriesProcessed,
+            final long entryErrors,
+            final long entriesExpired,
+            final long commandsExecuted,
+            final long commandErrors,
+            final long commandsExpired,
+            final long commandsCoalesced,
+            final long entryPoolsSize,
+            final long entryPoolExhaustions,
+            final long commandPoolExhaustions,
+            final long laneFullWaits,
+            final long workerBusyNanos,
+            final long workerIdleNanos) {
+
+        this.name = name;
+        this.ringCapacity = ringCapacity;
+        this.entriesSent = entriesSent;
+        this.entriesProcessed = entriesProcessed;
+        this.entryErrors = entryErrors;
+        this.entriesExpired = entriesExpired;
+        this.commandsExecuted = commandsExecuted;
+        this.commandErrors = commandErrors;
+        this.commandsExpired = commandsExpired;
+        this.commandsCoalesced = commandsCoalesced;
+        this.entryPoolsSize = entryPoolsSize;
+        this.entryPoolExhaustions = entryPoolExhaustions;
+        this.commandPoolExhaustions = commandPoolExhaustions;
+        this.laneFullWaits = laneFullWaits;
+        this.workerBusyNanos = workerBusyNanos;
+        this.workerIdleNanos = workerIdleNanos;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int ringCapacity() {
+        return ringCapacity;
+    }
+
+    public long entriesSent() {
+        return entriesSent;
+    }
+
+    public long entriesProcessed() {
+        return entriesProcessed;
+    }
+
+    /**
+     * @return approximate number of entries sent, but neither processed nor dropped yet
+     */
+    public long ringOccupancy() {
+        return Math.max(0, Math.min(ringCapacity, entriesSent - entriesProcessed - entriesExpired));
+    }
+
+    public long entryErrors() {
+        return entryErrors;
+    }
+
+    /**
+     * @return number of entries dropped without processing because of their deadlines or the load shedding
+     */
+    public long entriesExpired() {
+        return entriesExpired;
+    }
+
+    public long commandsExecuted() {
+        return commandsExecuted;
+    }
+
+    public long commandErrors() {
+        return commandErrors;
+    }
+
+    /**
+     * @return number of commands completed with {@link CommandExpiredException} without execution
+     */
+    public long commandsExpired() {
+        return commandsExpired;
+    }
+
+    /**
+     * @return number of read-only commands completed with the result of an identical command without execution
+     */
+    public long commandsCoalesced() {
+        return commandsCoalesced;
+    }
+
+    /**
+     * @return total number of preallocated entries of all the classes
+     */
+    public long entryPoolsSize() {
+        return entryPoolsSize;
+    }
+
+    public long entryPoolExhaustions() {
+        return entryPoolExhaustions;
+    }
+
+    public long commandPoolExhaustions() {
+        return commandPoolExhaustions;
+    }
+
+    /**
+     * @return number of entries, which senders had to wait to put into their full lanes. The waits of
+     * the senders without lanes happen inside the cab and are seen as {@link TractorEvents#producerBackPressure}
+     * events only
+     */
+    public long laneFullWaits() {
+        return laneFullWaits;
+    }
+
+    /**
+     * @return time the worker spent processing entries and commands,
+     * measured only if the org.green.tractor.metrics.worker_time system property is set
+     */
+    public long workerBusyNanos() {
+        return workerBusyNanos;
+    }
+
+    /**
+     * @return time the worker spent waiting for entries and commands,
+     * measured only if the org.green.tractor.metrics.worker_time system property is set
+     */
+    public long workerIdleNanos() {
+        return workerIdleNanos;
+    }
+
+    public double workerBusyRatio() {
+        final long total = workerBusyNanos + workerIdleNanos;
+        return total == 0 ? 0 : (double) workerBusyNanos / total;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                "name=" + name +
+                ", ringCapacity=" + ringCapacity +
+                ", ringOccupancy=" + ringOccupancy() +
+                ", entriesSent=" + entriesSent +
+                ", entriesProcessed=" + entriesProcessed +
+                ", entryErrors=" + entryErrors +
+                ", entriesExpired=" + entriesExpired +
+                ", commandsExecuted=" + commandsExecuted +
+                ", commandErrors=" + commandErrors +
+                ", commandsExpired=" + commandsExpired +
+                ", commandsCoalesced=" + commandsCoalesced +
+                ", entryPoolsSize=" + entryPoolsSize +
+                ", entryPoolExhaustions=" + entryPoolExhaustions +
+                ", commandPoolExhaustions=" + commandPoolExhaustions +
+                ", laneFullWaits=" + laneFullWaits +
+                ", workerBusyNanos=" + workerBusyNanos +
+                ", workerIdleNanos=" + workerIdleNanos +
+                '}';
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Optional exporter of tractors' metrics in the plain text format on a local HTTP endpoint:
+ * {@code http://127.0.0.1:<port>/metrics}. The metrics are read on the HTTP server's thread only.
+ */
+public final class TractorMetricsHttpExporter implements AutoCloseable {
+    public static final String PATH = "/metrics";
+
+    private final HttpServer server;
+    private final AbstractTractor<?, ?, ?>[] tractors;
+
+    public TractorMetricsHttpExporter(final int port, final AbstractTractor<?, ?, ?>... tractors) throws IOException {
+        this.tractors = tractors.clone();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final byte[] body = format().getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    String format() {
+        final StringBuilder text = new StringBuilder();
+        for (final AbstractTractor<?, ?, ?> tractor : tractors) {
+            final TractorMetrics metrics = tractor.metrics();
+            final String label = "{tractor=\"" + metrics.name().replace("\\", "\\\\").replace("\"", "\\\"") + "\"} ";
+
+            line(text, "ring_capacity", label, metrics.ringCapacity());
+            line(text, "ring_occupancy", label, metrics.ringOccupancy());
+            line(text, "entries_sent", label, metrics.entriesSent());
+            line(text, "entries_processed", label, metrics.entriesProcessed());
+            line(text, "entry_errors", label, metrics.entryErrors());
+            line(text, "entries_expired", label, metrics.entriesExpired());
+            line(text, "commands_executed", label, metrics.commandsExecuted());
+            line(text, "command_errors", label, metrics.commandErrors());
+            line(text, "commands_expired", label, metrics.commandsExpired());
+            line(text, "commands_coalesced", label, metrics.commandsCoalesced());
+            line(text, "entry_pools_size", label, metrics.entryPoolsSize());
+            line(text, "entry_pool_exhaustions", label, metrics.entryPoolExhaustions());
+            line(text, "command_pool_exhaustions", label, metrics.commandPoolExhaustions());
+            line(text, "lane_full_waits", label, metrics.laneFullWaits());
+            line(text, "worker_busy_nanos", label, metrics.workerBusyNanos());
+            line(text, "worker_idle_nanos", label, metrics.workerIdleNanos());
+        }
+        return text.toString();
+    }
+
+    private static void line(final StringBuilder text, final String metric, final String label, final long value) {
+        text.append("green_tractor_").append(metric).append(label).append(value).append('\n');
+    }
+}
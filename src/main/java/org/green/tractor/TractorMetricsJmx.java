@@ -0,0 +1,147 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers tractors' metrics in the platform MBean server.
+ */
+public final class TractorMetricsJmx {
+    public static final String DOMAIN = "org.green.tractor";
+
+    private TractorMetricsJmx() {
+    }
+
+    public static ObjectName register(final AbstractTractor<?, ?, ?> tractor) throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = objectName(tractor.metrics().name());
+        server.registerMBean(new Metrics(tractor), name);
+        return name;
+    }
+
+    public static void unregister(final ObjectName name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+
+    public static ObjectName objectName(final String tractorName) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Tractor,name=" + ObjectName.quote(tractorName));
+    }
+
+    private static final class Metrics implements TractorMetricsMXBean {
+        private final AbstractTractor<?, ?, ?> tractor;
+
+        Metrics(final AbstractTractor<?, ?, ?> tractor) {
+            this.tractor = tractor;
+        }
+
+        @Override
+        public int getRingCapacity() {
+            return tractor.metrics().ringCapacity();
+        }
+
+        @Override
+        public long getRingOccupancy() {
+            return tractor.metrics().ringOccupancy();
+        }
+
+        @Override
+        public long getEntriesSent() {
+            return tractor.metrics().entriesSent();
+        }
+
+        @Override
+        public long getEntriesProcessed() {
+            return tractor.metrics().entriesProcessed();
+        }
+
+        @Override
+        public long getEntryErrors() {
+            return tractor.metrics().entryErrors();
+        }
+
+        @Override
+        public long getEntriesExpired() {
+            return tractor.metrics().entriesExpired();
+        }
+
+        @Override
+        public long getCommandsExecuted() {
+            return tractor.metrics().commandsExecuted();
+        }
+
+        @Override
+        public long getCommandErrors() {
+            return tractor.metrics().commandErrors();
+        }
+
+        @Override
+        public long getCommandsExpired() {
+            return tractor.metrics().commandsExpired();
+        }
+
+        @Override
+        public long getCommandsCoalesced() {
+            return tractor.metrics().commandsCoalesced();
+        }
+
+        @Override
+        public long getEntryPoolsSize() {
+            return tractor.metrics().entryPoolsSize();
+        }
+
+        @Override
+        public long getEntryPoolExhaustions() {
+            return tractor.metrics().entryPoolExhaustions();
+        }
+
+        @Override
+        public long getCommandPoolExhaustions() {
+            return tractor.metrics().commandPoolExhaustions();
+        }
+
+        @Override
+        public long getLaneFullWaits() {
+            return tractor.metrics().laneFullWaits();
+        }
+
+        @Override
+        public long getWorkerBusyNanos() {
+            return tractor.metrics().workerBusyNanos();
+        }
+
+        @Override
+        public long getWorkerIdleNanos() {
+            return tractor.metrics().workerIdleNanos();
+        }
+
+        @Override
+        public double getWorkerBusyRatio() {
+            return tractor.metrics().workerBusyRatio();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chain of tractors, which process the same entries one after another. The worker of a stage forwards
+ * the processed entry itself to the next stage instead of copying it, and the entry returns to its pool
+ * only when the last stage processed it. An entry is released earlier if its processing failed or
+ * the executor called {@link Entry#stopForwarding()}.
+ * <p>
+ * Commands are not forwarded, each stage is controlled by its own tractor.
+ * @param <E> type of the entries
+ */
+public final class TractorPipeline<E extends Entry> implements AutoCloseable {
+    private final List<AbstractTractor<E, ?, ?>> stages;
+
+    public static <E extends Entry> Builder<E> builder() {
+        return new Builder<>();
+    }
+
+    private TractorPipeline(final List<AbstractTractor<E, ?, ?>> stages) {
+        this.stages = stages;
+
+        for (int i = stages.size() - 1; i > 0; i--) { // from the tail, so the pools are sized to the whole tail
+            stages.get(i - 1).forwardTo(stages.get(i));
+        }
+    }
+
+    /**
+     * @param classOfEntry class of the entries
+     * @param <EE> type of the entries
+     * @return a new sender to the first stage
+     */
+    public <EE extends E> EntrySender<EE> newEntrySender(final Class<EE> classOfEntry) {
+        return stages.get(0).newEntrySender(classOfEntry);
+    }
+
+    public int numberOfStages() {
+        return stages.size();
+    }
+
+    public AbstractTractor<E, ?, ?> stage(final int index) {
+        return stages.get(index);
+    }
+
+    /**
+     * Closes the stages from the first one to the last one.
+     * @throws InterruptedException if interrupted while waiting for a worker
+     */
+    @Override
+    public void close() throws InterruptedException {
+        for (int i = 0; i < stages.size(); i++) {
+            stages.get(i).close();
+        }
+    }
+
+    public static final class Builder<E extends Entry> {
+        private final List<AbstractTractor<E, ?, ?>> stages = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder<E> stage(final AbstractTractor<E, ?, ?> tractor) {
+            if (stages.contains(tractor)) {
+                throw new IllegalArgumentException("The tractor is already a stage of the pipeline");
+            }
+            stages.add(tractor);
+            return this;
+        }
+
+        /**
+         * Links the stages. Must be called before any entry is sent to the stages.
+         * @return the pipeline
+         */
+        public TractorPipeline<E> build() {
+            if (stages.isEmpty()) {
+                throw new IllegalStateException("No stages");
+            }
+            return new TractorPipeline<>(new ArrayList<>(stages));
+        }
+    }
+}
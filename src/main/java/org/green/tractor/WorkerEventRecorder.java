@@ -0,0 +1,93 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+/**
+ * Collects the worker's timings for {@link TractorEvents}. Used by the worker's thread only
+ * and only while the events are recorded.
+ */
+final class WorkerEventRecorder {
+    private static final int MAX_ENTRY_BATCH_SIZE = 1024;
+
+    private final TractorEvents events;
+    private final String worker;
+
+    private long itemStart;
+    private long lastItemEnd;
+    private long batchStart;
+    private int batchSize;
+
+    WorkerEventRecorder(final TractorEvents events, final String worker) {
+        this.events = events;
+        this.worker = worker;
+    }
+
+    void itemReceived() {
+        itemStart = System.nanoTime();
+
+        if (lastItemEnd != 0) {
+            final long idle = itemStart - lastItemEnd;
+            if (idle >= TractorEvents.THRESHOLD_NANOS) {
+                endEntryBatch();
+                events.workerIdle(worker, idle);
+            }
+        }
+    }
+
+    void entryProcessed() {
+        if (batchSize++ == 0) {
+            batchStart = itemStart;
+        }
+
+        lastItemEnd = System.nanoTime();
+
+        if (batchSize == MAX_ENTRY_BATCH_SIZE) {
+            endEntryBatch();
+        }
+    }
+
+    void commandExecuted(final Command command, final boolean failed) {
+        endEntryBatch();
+
+        lastItemEnd = System.nanoTime();
+
+        final long execution = lastItemEnd - itemStart;
+        if (execution >= TractorEvents.THRESHOLD_NANOS) {
+            events.commandExecuted(worker, command.getClass(), execution, failed);
+        }
+    }
+
+    // the timings collected before are not valid anymore, if the recording was stopped
+    void recordingStopped() {
+        lastItemEnd = 0;
+        batchSize = 0;
+    }
+
+    private void endEntryBatch() {
+        if (batchSize > 0) {
+            events.entryBatchProcessed(worker, batchSize, lastItemEnd - batchStart);
+            batchSize = 0;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Utils;
+import sun.misc.Unsafe;
+
+abstract class WorkerProgressPad0 {
+    protected long p01, p02, p03, p04, p05, p06, p07;
+    protected long p08, p09, p010, p011, p012, p013, p014, p015;
+}
+
+abstract class WorkerProgressFields extends WorkerProgressPad0 {
+    protected volatile long version; // odd while the worker is busy with an item
+    protected long startTime;
+    protected Class<?> itemClass;
+    protected long sequence;
+    protected boolean command;
+}
+
+abstract class WorkerProgressPad1 extends WorkerProgressFields {
+    protected long p11, p12, p13, p14, p15, p16, p17;
+    protected long p18, p19, p110, p111, p112, p113, p114, p115;
+}
+
+/**
+ * The item the worker is busy with, published by the worker's thread with plain ordered writes
+ * to be watched by a {@link WorkerWatchdog}.
+ */
+final class WorkerProgress extends WorkerProgressPad1 {
+    private static final Unsafe UNSAFE = Utils.getUnsafe();
+
+    private static final long VERSION_OFFSET;
+
+    static {
+        try {
+            VERSION_OFFSET = UNSAFE.objectFieldOffset(WorkerProgressFields.class.getDeclaredField("version"));
+        } catch (final Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    private final Thread worker;
+
+    WorkerProgress(final Thread worker) {
+        this.worker = worker;
+    }
+
+    Thread worker() {
+        return worker;
+    }
+
+    // called by the worker's thread
+    void started(final Object item, final long sequence, final boolean command) {
+        final long idle = UNSAFE.getLong(this, VERSION_OFFSET); // written by this thread only
+        UNSAFE.storeFence(); // the idle version is visible before any change of the fields
+        this.startTime = System.nanoTime();
+        this.itemClass = item.getClass();
+        this.sequence = sequence;
+        this.command = command;
+        UNSAFE.putOrderedLong(this, VERSION_OFFSET, idle + 1); // the ordered write publishes the fields above
+    }
+
+    // called by the worker's thread
+    void finished() {
+        UNSAFE.putOrderedLong(this, VERSION_OFFSET, UNSAFE.getLong(this, VERSION_OFFSET) + 1);
+    }
+
+    /**
+     * Reads a consistent view of the progress.
+     * @param into stall to fill
+     * @return version of the item the worker is busy with or 0 if the worker is idle
+     */
+    long readInto(final WorkerStall into) {
+        while (true) {
+            final long busy = version; // volatile read leads to <membar LoadLoad|LoadStore>
+            if ((busy & 1) == 0) {
+                return 0;
+            }
+
+            final long start = startTime;
+            final Class<?> cls = itemClass;
+            final long seq = sequence;
+            final boolean cmd = command;
+
+            UNSAFE.loadFence(); // the fields are read before the version is checked again
+
+            if (busy == version) {
+                into.set(start, cls, seq, cmd);
+                return busy;
+            }
+        }
+    }
+
+    /**
+     * @param busy version returned by {@link #readInto(WorkerStall)}
+     * @return true if the worker is still busy with the same item
+     */
+    boolean isBusyWith(final long busy) {
+        return busy == version;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.util.Arrays;
+
+/**
+ * An entry or a command the worker spent too long time on.
+ */
+public final class WorkerStall {
+    private String workerName;
+    private long startTime;
+    private long duration;
+    private Class<?> itemClass;
+    private long sequence;
+    private boolean command;
+    private StackTraceElement[] stackTrace;
+
+    void set(final long startTime, final Class<?> itemClass, final long sequence, final boolean command) {
+        this.startTime = startTime;
+        this.itemClass = itemClass;
+        this.sequence = sequence;
+        this.command = command;
+    }
+
+    void set(final String workerName, final long duration, final StackTraceElement[] stackTrace) {
+        this.workerName = workerName;
+        this.duration = duration;
+        this.stackTrace = stackTrace;
+    }
+
+    void copyFrom(final WorkerStall source) {
+        set(source.startTime, source.itemClass, source.sequence, source.command);
+        set(source.workerName, source.duration, source.stackTrace);
+    }
+
+    public String workerName() {
+        return workerName;
+    }
+
+    /**
+     * @return value of System.nanoTime() when the worker started to process the item
+     */
+    public long startTime() {
+        return startTime;
+    }
+
+    /**
+     * @return nanoseconds the item had been processed for when the stall was detected
+     */
+    public long duration() {
+        return duration;
+    }
+
+    public Class<?> itemClass() {
+        return itemClass;
+    }
+
+    /**
+     * @return sequence of the entry in the ring or the number of the command
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    public boolean isCommand() {
+        return command;
+    }
+
+    /**
+     * @return the worker's stack trace captured when the stall was detected
+     */
+    public StackTraceElement[] stackTrace() {
+        return stackTrace;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                "workerName=" + workerName +
+                ", " + (command ? "command=" : "entry=") + (itemClass == null ? null : itemClass.getName()) +
+                ", sequence=" + sequence +
+                ", duration=" + duration +
+                ", stackTrace=" + Arrays.toString(stackTrace) +
+                '}';
+    }
+}
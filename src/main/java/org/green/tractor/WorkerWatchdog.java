@@ -0,0 +1,152 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in watchdog of tractors' workers. If an entry or a command is processed longer than the threshold,
+ * the watchdog captures the worker's stack, stores it into a preallocated ring of recent stalls and reports it
+ * to the error handler. The workers publish their progress only if the org.green.tractor.watchdog system
+ * property is set to true.
+ */
+public final class WorkerWatchdog implements AutoCloseable {
+    private final AbstractTractor<?, ?, ?>[] tractors;
+    private final long stallThresholdNanos;
+    private final ErrorHandler errorHandler;
+
+    private final WorkerStall current = new WorkerStall(); // accessed by the watchdog's thread only
+    private final long[] lastReportedVersions; // accessed by the watchdog's thread only
+
+    private final WorkerStall[] stalls; // guarded by this
+    private long numberOfStalls; // guarded by this
+
+    private final Thread thread;
+
+    public WorkerWatchdog(
+            final long stallThreshold,
+            final TimeUnit unit,
+            final int capacity,
+            final ErrorHandler errorHandler,
+            final AbstractTractor<?, ?, ?>... tractors) {
+
+        if (!AbstractTractor.WATCH_WORKER) {
+            throw new IllegalStateException("The workers don't publish their progress, " +
+                    "set the org.green.tractor.watchdog system property to true");
+        }
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        this.tractors = tractors.clone();
+        this.stallThresholdNanos = unit.toNanos(stallThreshold);
+        this.errorHandler = errorHandler;
+
+        lastReportedVersions = new long[tractors.length];
+
+        stalls = new WorkerStall[capacity];
+        for (int i = 0; i < capacity; i++) {
+            stalls[i] = new WorkerStall();
+        }
+
+        thread = new Thread(this::run, "WorkerWatchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Copies the most recent stalls, the latest one goes first.
+     * @param into array to copy the stalls into, null elements are allocated
+     * @return number of the stalls copied
+     */
+    public synchronized int recentStalls(final WorkerStall[] into) {
+        final int n = (int) Math.min(Math.min(into.length, stalls.length), numberOfStalls);
+        for (int i = 0; i < n; i++) {
+            if (into[i] == null) {
+                into[i] = new WorkerStall();
+            }
+            into[i].copyFrom(stalls[(int) ((numberOfStalls - 1 - i) % stalls.length)]);
+        }
+        return n;
+    }
+
+    public synchronized long numberOfStalls() {
+        return numberOfStalls;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        thread.interrupt();
+        thread.join();
+    }
+
+    private void run() {
+        final long periodMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(stallThresholdNanos) / 2);
+
+        try {
+            while (true) {
+                Thread.sleep(periodMillis);
+
+                for (int i = 0; i < tractors.length; i++) {
+                    check(i);
+                }
+            }
+        } catch (final InterruptedException e) {
+            // ignore
+        }
+    }
+
+    private void check(final int tractorIndex) {
+        final WorkerProgress progress = tractors[tractorIndex].workerProgress();
+
+        final long busy = progress.readInto(current);
+        if (busy == 0) {
+            return;
+        }
+
+        final long duration = System.nanoTime() - current.startTime();
+        if (duration < stallThresholdNanos || busy == lastReportedVersions[tractorIndex]) {
+            return;
+        }
+
+        final StackTraceElement[] stackTrace = progress.worker().getStackTrace();
+        if (!progress.isBusyWith(busy)) {
+            return; // the stack may belong to the next item
+        }
+        lastReportedVersions[tractorIndex] = busy;
+
+        current.set(progress.worker().getName(), duration, stackTrace);
+
+        synchronized (this) {
+            stalls[(int) (numberOfStalls++ % stalls.length)].copyFrom(current);
+        }
+
+        errorHandler.onError(this,
+                "The worker has been busy with the " + (current.isCommand() ? "command " : "entry ") +
+                        current.itemClass().getName() + " #" + current.sequence() +
+                        " for " + TimeUnit.NANOSECONDS.toMillis(duration) + " ms",
+                new WorkerStallException("Stack trace of " + progress.worker().getName(), stackTrace));
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AggregatingErrorHandlerTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 1_000;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    private static final String SITE_A = "An error at A";
+    private static final String SITE_B = "An error at B";
+
+    @Test
+    public void testErrorsAreAggregatedBySite() throws Exception {
+        final CollectingErrorHandler collected = new CollectingErrorHandler();
+
+        final AggregatingErrorHandler handler = new AggregatingErrorHandler(collected, 16, 1, TimeUnit.HOURS);
+
+        final IllegalStateException first = new IllegalStateException("first");
+        handler.onError(this, SITE_A, new TestEntryA(), first);
+        for (int i = 1; i < 1_000; i++) {
+            handler.onError(this, SITE_A, new TestEntryA(), new IllegalStateException());
+        }
+        handler.onError(this, SITE_A, new TestEntryB(), first);
+        handler.onError(this, SITE_B, null, first);
+
+        assertEquals(0, collected.messages.size()); // nothing is reported before the interval is over
+
+        handler.close();
+
+        assertEquals(3, collected.messages.size());
+        assertTrue(collected.messages.contains(SITE_A + ": 1000 errors " + IllegalStateException.class.getName() +
+                " with " + TestEntryA.class.getName()));
+        assertTrue(collected.messages.contains(SITE_A + ": 1 error " + IllegalStateException.class.getName() +
+                " with " + TestEntryB.class.getName()));
+        assertTrue(collected.messages.contains(SITE_B + ": 1 error " + IllegalStateException.class.getName()));
+        for (int i = 0; i < collected.errors.size(); i++) {
+            assertSame(first, collected.errors.get(i));
+        }
+    }
+
+    @Test
+    public void testSitesBeyondCapacityAreDropped() throws Exception {
+        final CollectingErrorHandler collected = new CollectingErrorHandler();
+
+        final AggregatingErrorHandler handler = new AggregatingErrorHandler(collected, 1, 1, TimeUnit.HOURS);
+
+        handler.onError(this, SITE_A, null, new IllegalStateException());
+        handler.onError(this, SITE_B, null, new IllegalStateException());
+        handler.onError(this, SITE_B, null, new IllegalStateException());
+
+        handler.close();
+
+        assertEquals(2, collected.messages.size());
+        assertEquals(SITE_A + ": 1 error " + IllegalStateException.class.getName(), collected.messages.get(0));
+        assertTrue(collected.messages.get(1).startsWith("2 errors have been dropped"));
+    }
+
+    @Test
+    public void testFailingEntriesAreReportedOnce() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfEntries = 100;
+
+            final CollectingErrorHandler collected = new CollectingErrorHandler();
+
+            final AggregatingErrorHandler handler = new AggregatingErrorHandler(collected, 16, 1, TimeUnit.HOURS);
+
+            final TestExecutor executor = new TestExecutor(new TestExecutorListenerAdapter() {
+                @Override
+                public void onTestEntryAProcessed() {
+                    throw new IllegalStateException();
+                }
+            });
+
+            try (DefaultTractor<TestEntry, TestExecutor, TractorListener<TestEntry, TestExecutor>> tractor =
+                         new DefaultTractor<>(
+                                 new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS),
+                                 executor,
+                                 handler)) {
+
+                final EntrySender<TestEntryA> sender = tractor.newEntrySender(TestEntryA.class);
+                for (int i = 0; i < numberOfEntries; i++) {
+                    final EntryEnvelope<TestEntryA> envelope = sender.nextEnvelope();
+                    envelope.entry().set(1, i);
+                    envelope.send();
+                }
+
+                while (tractor.metrics().entryErrors() < numberOfEntries) {
+                    Thread.sleep(1);
+                }
+            }
+
+            handler.close();
+
+            assertEquals(1, collected.messages.size());
+            assertEquals("An error while processing the entry: " + numberOfEntries + " errors " +
+                    IllegalStateException.class.getName() + " with " + TestEntryA.class.getName(),
+                    collected.messages.get(0));
+        });
+    }
+
+    private static class CollectingErrorHandler implements ErrorHandler {
+        private final List<String> messages = new ArrayList<>();
+        private final List<Throwable> errors = new ArrayList<>();
+
+        @Override
+        public synchronized void onError(final Object in, final String message, final Throwable t) {
+            messages.add(message);
+            errors.add(t);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryLogTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    @Test
+    public void testRecordsAreDecoded() throws Exception {
+        final Path file = Files.createTempFile("tractor", ".blog");
+        try {
+            try (BinaryLog log = new BinaryLog(file)) {
+                final int filled = log.template("Order {} of {} filled at {}, last: {}");
+                final int cancelled = log.template("Order {} cancelled");
+                final int untyped = log.template("Flags");
+
+                final BinaryLogWriter writer = log.newWriter(4096);
+                writer.begin(filled).append(17L).appendAscii("EURUSD").append(1.25).append(true).commit();
+                writer.begin(cancelled).append(18).commit();
+                writer.begin(untyped).append('x').append(false).commit();
+                writer.begin(cancelled).commit();
+
+                assertEquals(0, log.droppedRecords());
+            }
+
+            final StringBuilder decoded = new StringBuilder();
+            BinaryLogDecoder.decode(file, decoded);
+
+            final String[] lines = decoded.toString().split(System.lineSeparator());
+            assertEquals(4, lines.length);
+            assertTrue(lines[0].endsWith(" Order 17 of EURUSD filled at 1.25, last: true"), lines[0]);
+            assertTrue(lines[1].endsWith(" Order 18 cancelled"), lines[1]);
+            assertTrue(lines[2].endsWith(" Flags x false"), lines[2]);
+            assertTrue(lines[3].endsWith(" Order {} cancelled"), lines[3]);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRecordsAreEitherWrittenOrDropped() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfRecords = 100_000;
+
+            final Path file = Files.createTempFile("tractor", ".blog");
+            try {
+                final long dropped;
+                try (BinaryLog log = new BinaryLog(file)) {
+                    final int template = log.template("Entry {} {}");
+
+                    final BinaryLogWriter writer = log.newWriter(1024); // wraps many times
+                    for (int i = 0; i < numberOfRecords; i++) {
+                        writer.begin(template).append(i).appendAscii("abcdefghijklmnopqrstuvwxyz").commit();
+                    }
+                    dropped = log.droppedRecords();
+                }
+
+                final StringBuilder decoded = new StringBuilder();
+                BinaryLogDecoder.decode(file, decoded);
+
+                final String[] lines = decoded.length() == 0 ? new String[0] :
+                        decoded.toString().split(System.lineSeparator());
+                assertEquals(numberOfRecords, lines.length + dropped);
+
+                int last = -1;
+                for (int i = 0; i < lines.length; i++) {
+                    assertTrue(lines[i].endsWith(" abcdefghijklmnopqrstuvwxyz"), lines[i]);
+                    final String[] words = lines[i].split(" ");
+                    final int n = Integer.parseInt(words[words.length - 2]);
+                    assertTrue(n > last);
+                    last = n;
+                }
+            } finally {
+                Files.delete(file);
+            }
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,266 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Cab;
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandCoalescingTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 16;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    @Test
+    public void testIdenticalQueriesAreExecutedOnce() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfCallers = 16;
+
+            final PositionExecutor executor = new PositionExecutor();
+
+            try (PositionTractor tractor = new PositionTractor(newCab(), executor)) {
+                assertNull(tractor.runOnWorker(() -> executor.positions[1] = 42).sync().error());
+
+                final CountDownLatch queued = new CountDownLatch(numberOfCallers);
+                final CountDownLatch release = new CountDownLatch(1);
+
+                // the worker is busy while the queries are queued, so, they come in one batch
+                final Future<VoidResult> blocker = tractor.runOnWorker(() -> {
+                    try {
+                        release.await();
+                    } catch (final InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+
+                final int[] positions = new int[numberOfCallers];
+                final Thread[] callers = new Thread[numberOfCallers];
+                for (int c = 0; c < numberOfCallers; c++) {
+                    final int caller = c;
+                    callers[c] = new Thread(() -> {
+                        try {
+                            final Future<TestResult> future = tractor.position(1);
+                            queued.countDown();
+                            positions[caller] = future.sync().value();
+                        } catch (final Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    callers[c].start();
+                }
+
+                queued.await();
+                release.countDown();
+                assertNull(blocker.sync().error());
+
+                for (int c = 0; c < numberOfCallers; c++) {
+                    callers[c].join();
+                    assertEquals(42, positions[c]);
+                }
+
+                final TractorMetrics metrics = tractor.metrics();
+                assertEquals(numberOfCallers, metrics.commandsCoalesced() + executor.queriesExecuted);
+                assertEquals(1, executor.queriesExecuted);
+            }
+        });
+    }
+
+    @Test
+    public void testQueriesSeeChangesQueuedBefore() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final PositionExecutor executor = new PositionExecutor();
+
+            try (PositionTractor tractor = new PositionTractor(newCab(), executor)) {
+                final CountDownLatch release = new CountDownLatch(1);
+
+                final Future<VoidResult> blocker = tractor.runOnWorker(() -> {
+                    try {
+                        release.await();
+                    } catch (final InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+
+                final Future<TestResult> before = tractor.position(1);
+                final Future<VoidResult> change = tractor.runOnWorker(() -> executor.positions[1] = 7);
+                final Future<TestResult> after = tractor.position(1);
+
+                release.countDown();
+
+                assertNull(blocker.sync().error());
+                assertEquals(0, before.sync().value());
+                assertNull(change.sync().error());
+                assertEquals(7, after.sync().value());
+
+                assertEquals(2, executor.queriesExecuted);
+                assertEquals(0, tractor.metrics().commandsCoalesced());
+            }
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCallersAreNotStarvedByStormOfQueries() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfCallers = 8;
+            final int queriesInFlight = 4;
+            final long stormNanos = TimeUnit.SECONDS.toNanos(2);
+            final long maxLatencyNanos = TimeUnit.SECONDS.toNanos(1);
+
+            final PositionExecutor executor = new PositionExecutor();
+
+            try (PositionTractor tractor = new PositionTractor(newCab(), executor)) {
+                assertNull(tractor.runOnWorker(() -> executor.positions[1] = 42).sync().error());
+
+                final long[] latencies = new long[numberOfCallers];
+                final Thread[] callers = new Thread[numberOfCallers];
+                for (int c = 0; c < numberOfCallers; c++) {
+                    final int caller = c;
+                    callers[c] = new Thread(() -> {
+                        try {
+                            final Future<TestResult>[] queries = new Future[queriesInFlight];
+                            final long[] sendTimes = new long[queriesInFlight];
+                            final long end = System.nanoTime() + stormNanos;
+                            // the queue of the commands is never empty, so, the batch of the commands doesn't end
+                            for (int q = 0; System.nanoTime() - end < 0; q = (q + 1) % queriesInFlight) {
+                                if (queries[q] != null) {
+                                    assertEquals(42, queries[q].sync().value());
+                                    latencies[caller] = Math.max(latencies[caller], System.nanoTime() - sendTimes[q]);
+                                }
+                                sendTimes[q] = System.nanoTime();
+                                queries[q] = tractor.slowPosition(1);
+                            }
+                            for (int q = 0; q < queriesInFlight; q++) {
+                                if (queries[q] != null) {
+                                    assertEquals(42, queries[q].sync().value());
+                                }
+                            }
+                        } catch (final Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    callers[c].start();
+                }
+
+                for (int c = 0; c < numberOfCallers; c++) {
+                    callers[c].join();
+                    assertTrue(latencies[c] < maxLatencyNanos, "Latency of the caller: " + latencies[c]);
+                }
+
+                assertTrue(tractor.metrics().commandsCoalesced() > 0);
+            }
+        });
+    }
+
+    private static Cab<TestEntry, Future> newCab() {
+        return new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS);
+    }
+
+    public static class PositionQuery extends ReadOnlyCommand<TestResult> {
+        private int id;
+
+        public PositionQuery() {
+            super(new TestResult());
+        }
+
+        void set(final int id) {
+            this.id = id;
+        }
+
+        @Override
+        protected long coalescingKey() {
+            return id;
+        }
+
+        @Override
+        protected void copyResult(final TestResult from) {
+            result.set(from.id(), from.value());
+        }
+    }
+
+    // gives the callers the time to queue more queries, while the worker copies the result
+    public static class SlowCopyPositionQuery extends PositionQuery {
+        @Override
+        protected void copyResult(final TestResult from) {
+            LockSupport.parkNanos(10_000);
+            super.copyResult(from);
+        }
+    }
+
+    private static class PositionExecutor extends DefaultExecutor<TestEntry, TractorListener> {
+        private final int[] positions = new int[2]; // accessed by the worker only
+
+        private volatile int queriesExecuted;
+
+        PositionExecutor() {
+            super("positions");
+
+            registerCommandHandler(PositionQuery.class, (query, listeners) -> {
+                query.result().set(query.id, positions[query.id]);
+                queriesExecuted++;
+            });
+            registerCommandHandler(SlowCopyPositionQuery.class, (query, listeners) -> {
+                final int id = ((PositionQuery) query).id;
+                query.result().set(id, positions[id]);
+                queriesExecuted++;
+            });
+        }
+
+        @Override
+        public void processEntry(final TestEntry entry) {
+        }
+    }
+
+    private static class PositionTractor
+            extends DefaultTractor<TestEntry, PositionExecutor, TractorListener<TestEntry, PositionExecutor>> {
+
+        PositionTractor(final Cab<TestEntry, Future> cab, final PositionExecutor executor) {
+            super(cab, executor);
+        }
+
+        Future<TestResult> position(final int id) throws TractorClosedException, InterruptedException {
+            final PositionQuery query = prepareCommand(PositionQuery.class);
+            query.set(id);
+            return executeCommand(query);
+        }
+
+        Future<TestResult> slowPosition(final int id) throws TractorClosedException, InterruptedException {
+            final SlowCopyPositionQuery query = prepareCommand(SlowCopyPositionQuery.class);
+            query.set(id);
+            return executeCommand(query);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,92 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+public class CommandQueueTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 16;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    @Test
+    public void testCommandsOfManyCallersAreExecutedInOrder() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfCallers = 8;
+            final int commandsPerCaller = 20_000;
+
+            final int[] nextValues = new int[numberOfCallers]; // accessed by the worker only
+            final int[] errors = new int[1];
+
+            try (DefaultTractor<TestEntry, DefaultExecutor<TestEntry, TractorListener>,
+                    TractorListener<TestEntry, DefaultExecutor<TestEntry, TractorListener>>> tractor =
+                         new DefaultTractor<>(
+                                 new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS),
+                                 new DefaultExecutor<>("commands"))) {
+
+                final Thread[] callers = new Thread[numberOfCallers];
+                for (int c = 0; c < numberOfCallers; c++) {
+                    final int id = c;
+                    callers[c] = new Thread(() -> {
+                        try {
+                            Future<VoidResult> last = null;
+                            for (int i = 0; i < commandsPerCaller; i++) { // the results aren't waited for
+                                final int value = i;
+                                last = tractor.runOnWorker(() -> {
+                                    if (nextValues[id] != value) {
+                                        errors[0]++;
+                                    }
+                                    nextValues[id] = value + 1;
+                                });
+                            }
+                            assertNull(last.sync().error());
+                        } catch (final Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    callers[c].start();
+                }
+                for (int c = 0; c < numberOfCallers; c++) {
+                    callers[c].join();
+                }
+
+                assertNull(tractor.runOnWorker(() -> { }).sync().error()); // the worker's writes are visible after
+
+                assertEquals(0, errors[0]);
+                for (int c = 0; c < numberOfCallers; c++) {
+                    assertEquals(commandsPerCaller, nextValues[c]);
+                }
+                assertEquals(numberOfCallers * commandsPerCaller + 1, tractor.metrics().commandsExecuted());
+            }
+        });
+    }
+}
\ No newline at end of file
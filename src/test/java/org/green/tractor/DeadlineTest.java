@@ -0,0 +1,96 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeadlineTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 1_000;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    private static final long WORKER_BUSY_MILLIS = 200;
+    private static final long DEADLINE_MILLIS = 20;
+
+    @Test
+    public void testExpiredItemsAreDropped() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfEntries = 100;
+
+            final TestExecutorListenerAdapter slowStart = new TestExecutorListenerAdapter() {
+                @Override
+                public void onStartExecuted() {
+                    try {
+                        Thread.sleep(WORKER_BUSY_MILLIS);
+                    } catch (final InterruptedException ignore) {
+                    }
+                }
+            };
+
+            try (TestTractor tractor = new TestTractor(
+                    new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS), slowStart)) {
+
+                final Future<VoidResult> start = tractor.start(); // keeps the worker busy
+
+                final EntrySender<TestEntryA> sender = tractor.newEntrySender(TestEntryA.class);
+                for (int i = 0; i < numberOfEntries; i++) {
+                    final EntryEnvelope<TestEntryA> envelope = sender.nextEnvelope();
+                    envelope.entry().set(1, i);
+                    envelope.entry().expireAfter(DEADLINE_MILLIS, TimeUnit.MILLISECONDS);
+                    envelope.send();
+                }
+
+                final Future<TestResult> expired = tractor.testCommandA(1, 1, DEADLINE_MILLIS, TimeUnit.MILLISECONDS);
+
+                assertNull(start.sync().error());
+                assertTrue(expired.sync().error() instanceof CommandExpiredException);
+
+                final Future<TestResult> fresh = tractor.testCommandA(1, 2, 1, TimeUnit.MINUTES);
+                assertNull(fresh.sync().error());
+
+                while (tractor.metrics().entriesExpired() < numberOfEntries) { // commands go before entries
+                    Thread.sleep(1);
+                }
+
+                final TractorMetrics metrics = tractor.metrics();
+                assertEquals(numberOfEntries, metrics.entriesExpired());
+                assertEquals(0, metrics.entriesProcessed());
+                assertEquals(0, metrics.ringOccupancy());
+                assertEquals(1, metrics.commandsExpired());
+                assertEquals(2, metrics.commandsExecuted());
+            }
+        });
+    }
+}
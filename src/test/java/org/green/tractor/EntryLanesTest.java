@@ -0,0 +1,261 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EntryLanesTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 16;
+    private static final int LANE_CAPACITY = 64;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    @Test
+    public void testEntriesOfEachSenderAreProcessedInOrder() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfSenders = 4;
+            final int entriesPerSender = 100_000;
+
+            final OrderCheckingExecutor executor =
+                    new OrderCheckingExecutor(numberOfSenders, numberOfSenders * entriesPerSender);
+
+            try (DefaultTractor<TestEntry, OrderCheckingExecutor, TractorListener<TestEntry, OrderCheckingExecutor>>
+                         tractor = newTractor(executor)) {
+
+                final Thread[] senders = new Thread[numberOfSenders];
+                for (int s = 0; s < numberOfSenders; s++) {
+                    final int id = s;
+                    senders[s] = new Thread(() -> {
+                        try {
+                            final EntrySender<TestEntryA> sender = tractor.newEntrySender(TestEntryA.class, id + 1);
+                            for (int i = 0; i < entriesPerSender; i++) {
+                                final EntryEnvelope<TestEntryA> envelope = sender.nextEnvelope();
+                                envelope.entry().set(id, i);
+                                envelope.send();
+                            }
+                        } catch (final Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    senders[s].start();
+                }
+                for (int s = 0; s < numberOfSenders; s++) {
+                    senders[s].join();
+                }
+
+                executor.done.await();
+
+                assertEquals(0, executor.errors);
+
+                // the entries are counted after they have been processed
+                while (tractor.metrics().entriesProcessed() < numberOfSenders * entriesPerSender) {
+                    Thread.sleep(1);
+                }
+
+                final TractorMetrics metrics = tractor.metrics();
+                assertEquals(numberOfSenders * entriesPerSender, metrics.entriesSent());
+                assertEquals(numberOfSenders * entriesPerSender, metrics.entriesProcessed());
+                assertEquals(CAB_SIZE + numberOfSenders * LANE_CAPACITY, metrics.ringCapacity());
+            }
+        });
+    }
+
+    @Test
+    public void testCommandsAreExecutedWhileLanesAreBusy() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final OrderCheckingExecutor executor = new OrderCheckingExecutor(1, 0);
+
+            try (DefaultTractor<TestEntry, OrderCheckingExecutor, TractorListener<TestEntry, OrderCheckingExecutor>>
+                         tractor = newTractor(executor)) {
+
+                final AtomicBoolean sending = new AtomicBoolean(true);
+                final Thread sender = new Thread(() -> {
+                    try {
+                        final EntrySender<TestEntryA> entrySender = tractor.newEntrySender(TestEntryA.class);
+                        for (int i = 0; sending.get(); i++) {
+                            final EntryEnvelope<TestEntryA> envelope = entrySender.nextEnvelope();
+                            envelope.entry().set(0, i);
+                            envelope.send();
+                        }
+                    } catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                sender.start();
+
+                final int[] executed = new int[1];
+                for (int i = 0; i < 1_000; i++) {
+                    assertNull(tractor.runOnWorker(() -> executed[0]++).sync().error());
+                }
+
+                sending.set(false);
+                sender.join();
+
+                assertEquals(1_000, executed[0]);
+                assertEquals(0, executor.errors);
+            }
+        });
+    }
+
+    @Test
+    public void testWaitingWorkerIsWokenUp() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfEntries = 100;
+
+            final OrderCheckingExecutor executor = new OrderCheckingExecutor(1, numberOfEntries);
+
+            try (DefaultTractor<TestEntry, OrderCheckingExecutor, TractorListener<TestEntry, OrderCheckingExecutor>>
+                         tractor = newTractor(executor)) {
+
+                final EntrySender<TestEntryA> sender = tractor.newEntrySender(TestEntryA.class);
+                for (int i = 0; i < numberOfEntries; i++) {
+                    final EntryEnvelope<TestEntryA> envelope = sender.nextEnvelope();
+                    envelope.entry().set(0, i);
+                    envelope.send();
+
+                    // the worker processes the entry and waits in the cab before the next one
+                    assertTrue(executor.awaitProcessed(i + 1, TimeUnit.SECONDS.toNanos(TEST_TIMEOUT)));
+                    Thread.sleep(1);
+                }
+
+                assertEquals(0, executor.errors);
+            }
+        });
+    }
+
+    @Test
+    public void testLanesOfClosedAndAbandonedSendersAreDropped() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfSenders = 20;
+            final int entriesPerSender = 1_000;
+
+            final OrderCheckingExecutor executor =
+                    new OrderCheckingExecutor(numberOfSenders + 1, numberOfSenders * entriesPerSender + 1);
+
+            try (DefaultTractor<TestEntry, OrderCheckingExecutor, TractorListener<TestEntry, OrderCheckingExecutor>>
+                         tractor = newTractor(executor)) {
+
+                long poolsSize = 0;
+                for (int s = 0; s < numberOfSenders; s++) {
+                    final int id = s;
+                    final Thread sender = new Thread(() -> {
+                        try {
+                            final EntrySender<TestEntryA> entrySender = tractor.newEntrySender(TestEntryA.class);
+                            for (int i = 0; i < entriesPerSender; i++) {
+                                final EntryEnvelope<TestEntryA> envelope = entrySender.nextEnvelope();
+                                envelope.entry().set(id, i);
+                                envelope.send();
+                            }
+                            if (id % 2 == 0) { // the odd senders are abandoned by their threads
+                                entrySender.nextEnvelope(); // never sent
+                                entrySender.close();
+                            }
+                        } catch (final Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    sender.start();
+                    sender.join();
+
+                    if (s == 0) {
+                        poolsSize = tractor.metrics().entryPoolsSize();
+                    }
+                }
+
+                // retires the last abandoned sender
+                final EntrySender<TestEntryA> sender = tractor.newEntrySender(TestEntryA.class);
+                final EntryEnvelope<TestEntryA> envelope = sender.nextEnvelope();
+                envelope.entry().set(numberOfSenders, 0);
+                envelope.send();
+
+                executor.done.await();
+                assertEquals(0, executor.errors);
+
+                while (tractor.metrics().ringCapacity() != CAB_SIZE + LANE_CAPACITY) { // dropped, when drained
+                    Thread.sleep(1);
+                }
+
+                final TractorMetrics metrics = tractor.metrics();
+                assertEquals(numberOfSenders * entriesPerSender + 1, metrics.entriesSent());
+                assertEquals(poolsSize, metrics.entryPoolsSize()); // the reserves of the retired senders are reused
+            }
+        });
+    }
+
+    private static DefaultTractor<TestEntry, OrderCheckingExecutor,
+            TractorListener<TestEntry, OrderCheckingExecutor>> newTractor(final OrderCheckingExecutor executor) {
+        return new DefaultTractor<>(
+                new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS), executor, LANE_CAPACITY);
+    }
+
+    // checks that the entries of each sender come in the order they have been sent
+    private static class OrderCheckingExecutor extends DefaultExecutor<TestEntry, TractorListener> {
+        private final int[] nextValues;
+        private final CountDownLatch done;
+
+        private volatile int processed;
+        private volatile int errors;
+
+        OrderCheckingExecutor(final int numberOfSenders, final int expectedEntries) {
+            super("lanes");
+            this.nextValues = new int[numberOfSenders];
+            this.done = new CountDownLatch(expectedEntries);
+        }
+
+        @Override
+        public void processEntry(final TestEntry entry) {
+            if (entry.value() != nextValues[entry.id()]) {
+                errors++;
+            }
+            nextValues[entry.id()] = entry.value() + 1;
+
+            processed++;
+            done.countDown();
+        }
+
+        boolean awaitProcessed(final int expected, final long timeoutNanos) throws InterruptedException {
+            final long deadline = System.nanoTime() + timeoutNanos;
+            while (processed < expected) {
+                if (System.nanoTime() - deadline > 0) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+            return true;
+        }
+    }
+}
\ No newline at end of file
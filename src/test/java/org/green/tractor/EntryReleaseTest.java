@@ -0,0 +1,72 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EntryReleaseTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 16;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    @Test
+    public void testPartialBatchIsBorrowableWithoutCommand() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfEntries = 32; // less than the pool's release batch
+
+            try (TestTractor tractor = new TestTractor(
+                    new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS),
+                    new TestExecutorListenerAdapter())) {
+
+                final Set<TestEntryA> sent = Collections.newSetFromMap(new IdentityHashMap<>());
+
+                final EntrySender<TestEntryA> sender = tractor.newEntrySender(TestEntryA.class);
+                for (int i = 0; i < numberOfEntries; i++) {
+                    final EntryEnvelope<TestEntryA> envelope = sender.nextEnvelope();
+                    envelope.entry().set(0, i);
+                    sent.add(envelope.entry());
+                    envelope.send();
+                }
+
+                while (tractor.metrics().entriesProcessed() < numberOfEntries) {
+                    Thread.sleep(1);
+                }
+
+                // the pool is a stack, so, the published entries are borrowed before the never used ones
+                assertTrue(sent.contains(sender.nextEnvelope().entry()));
+            }
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,304 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileTailerTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 16;
+    private static final int LANE_CAPACITY = 64;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    private static final int RECORD_SIZE = 8;
+    private static final int MAP_SIZE = 1_020; // the records cross the ends of the mappings
+
+    // a record is the id and the value of the entry
+    private static final FrameDecoder<TestEntryA> DECODER = (source, into) -> {
+        if (source.remaining() < RECORD_SIZE) {
+            return false;
+        }
+        into.set(source.getInt(), source.getInt());
+        return true;
+    };
+
+    // a record is the non-zero id and the value of the entry, the zero-filled tail of a segment holds no records
+    private static final FrameDecoder<TestEntryA> PREALLOCATED_DECODER = (source, into) -> {
+        if (source.remaining() < RECORD_SIZE || source.getInt(source.position()) == 0) {
+            return false;
+        }
+        into.set(source.getInt(), source.getInt());
+        return true;
+    };
+
+    @Test
+    public void testGrowingFileIsTailedAcrossRestarts() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfRecords = 10_000;
+
+            final Path directory = Files.createTempDirectory("tailer");
+            try {
+                final Path file = directory.resolve("data");
+                final Path positionFile = directory.resolve("position");
+                append(file, 0, numberOfRecords, RECORD_SIZE * numberOfRecords);
+
+                final OrderCheckingExecutor executor = new OrderCheckingExecutor();
+
+                try (DefaultTractor<TestEntry, OrderCheckingExecutor,
+                        TractorListener<TestEntry, OrderCheckingExecutor>> tractor = newTractor(executor)) {
+
+                    try (FileTailer<TestEntryA> tailer = newTailer(tractor, positionFile).file(file).build()) {
+                        append(file, numberOfRecords, numberOfRecords, 5); // the records are written in parts
+
+                        awaitProcessed(executor, 2 * numberOfRecords);
+                        while (tailer.committedOffset() < 2L * numberOfRecords * RECORD_SIZE) {
+                            Thread.sleep(1);
+                        }
+                        assertTrue(tailer.remappings() > 1);
+                    }
+
+                    append(file, 2 * numberOfRecords, numberOfRecords, RECORD_SIZE * 100);
+
+                    try (FileTailer<TestEntryA> tailer = newTailer(tractor, positionFile).file(file).build()) {
+                        assertEquals(2L * numberOfRecords * RECORD_SIZE, tailer.committedOffset());
+
+                        awaitProcessed(executor, 3 * numberOfRecords);
+                        while (tailer.recordsSent() < numberOfRecords) {
+                            Thread.sleep(1);
+                        }
+                        assertEquals(numberOfRecords, tailer.recordsSent()); // only the new ones
+                    }
+
+                    assertEquals(3 * numberOfRecords, executor.processed);
+                    assertEquals(0, executor.errors);
+                }
+            } finally {
+                delete(directory);
+            }
+        });
+    }
+
+    @Test
+    public void testSegmentsAreTailedInOrder() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfSegments = 3;
+            final int recordsPerSegment = 1_000;
+
+            final Path directory = Files.createTempDirectory("tailer");
+            try {
+                final OrderCheckingExecutor executor = new OrderCheckingExecutor();
+
+                try (DefaultTractor<TestEntry, OrderCheckingExecutor,
+                        TractorListener<TestEntry, OrderCheckingExecutor>> tractor = newTractor(executor);
+                     FileTailer<TestEntryA> tailer = newTailer(tractor, directory.resolve("position"))
+                             .segments(segment -> directory.resolve("segment-" + segment))
+                             .build()) {
+
+                    for (int s = 0; s < numberOfSegments; s++) { // the tailer waits for the first one
+                        append(directory.resolve("segment-" + s), s * recordsPerSegment, recordsPerSegment, 100);
+                    }
+
+                    awaitProcessed(executor, numberOfSegments * recordsPerSegment);
+                    while (tailer.committedSegment() < numberOfSegments - 1 ||
+                            tailer.committedOffset() < recordsPerSegment * RECORD_SIZE) {
+                        Thread.sleep(1);
+                    }
+                    assertEquals(0, executor.errors);
+                }
+            } finally {
+                delete(directory);
+            }
+        });
+    }
+
+    @Test
+    public void testSlowlyGrowingFileIsMappedOncePerHalfOfMapping() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfRecords = 2_000;
+
+            final Path directory = Files.createTempDirectory("tailer");
+            try {
+                final Path file = directory.resolve("data");
+                final OrderCheckingExecutor executor = new OrderCheckingExecutor();
+
+                try (DefaultTractor<TestEntry, OrderCheckingExecutor,
+                        TractorListener<TestEntry, OrderCheckingExecutor>> tractor = newTractor(executor);
+                     FileTailer<TestEntryA> tailer = newTailer(tractor, directory.resolve("position"))
+                             .file(file)
+                             .build()) {
+
+                    for (int i = 0; i < numberOfRecords; i++) { // the tailer sees almost every growth
+                        append(file, i, 1, RECORD_SIZE);
+                        if (i % 10 == 0) {
+                            Thread.sleep(1);
+                        }
+                    }
+
+                    awaitProcessed(executor, numberOfRecords);
+                    assertEquals(0, executor.errors);
+                    assertTrue(tailer.remappings() <= numberOfRecords * RECORD_SIZE / (MAP_SIZE / 2) + 1,
+                            "Remappings: " + tailer.remappings());
+                }
+            } finally {
+                delete(directory);
+            }
+        });
+    }
+
+    @Test
+    public void testPreallocatedSegmentsAreMappedOncePerHalfOfMapping() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfSegments = 2;
+            final int segmentSize = 16 * MAP_SIZE;
+            final int recordsPerSegment = 1_500; // the segments end with zeros
+
+            final Path directory = Files.createTempDirectory("tailer");
+            try {
+                final OrderCheckingExecutor executor = new OrderCheckingExecutor();
+
+                try (DefaultTractor<TestEntry, OrderCheckingExecutor,
+                        TractorListener<TestEntry, OrderCheckingExecutor>> tractor = newTractor(executor);
+                     FileTailer<TestEntryA> tailer = FileTailer.builder(tractor, TestEntryA.class, PREALLOCATED_DECODER)
+                             .positionFile(directory.resolve("position"))
+                             .segments(segment -> directory.resolve("segment-" + segment))
+                             .mapSize(MAP_SIZE)
+                             .build()) {
+
+                    for (int s = 0; s < numberOfSegments; s++) { // the records are written while being tailed
+                        write(directory.resolve("segment-" + s), segmentSize, s * recordsPerSegment,
+                                recordsPerSegment);
+                    }
+
+                    awaitProcessed(executor, numberOfSegments * recordsPerSegment);
+                    while (tailer.committedSegment() < numberOfSegments - 1 ||
+                            tailer.committedOffset() < recordsPerSegment * RECORD_SIZE) {
+                        Thread.sleep(1);
+                    }
+                    assertEquals(numberOfSegments * recordsPerSegment, executor.processed);
+                    assertEquals(0, executor.errors);
+                    assertTrue(tailer.remappings() <= numberOfSegments * (segmentSize / (MAP_SIZE / 2) + 1),
+                            "Remappings: " + tailer.remappings());
+                }
+            } finally {
+                delete(directory);
+            }
+        });
+    }
+
+    private static DefaultTractor<TestEntry, OrderCheckingExecutor,
+            TractorListener<TestEntry, OrderCheckingExecutor>> newTractor(final OrderCheckingExecutor executor) {
+        return new DefaultTractor<>(
+                new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS), executor, LANE_CAPACITY);
+    }
+
+    private static FileTailer.Builder<TestEntryA> newTailer(
+            final Tractor<TestEntry, ?, ?> tractor,
+            final Path positionFile) {
+        return FileTailer.builder(tractor, TestEntryA.class, DECODER).positionFile(positionFile).mapSize(MAP_SIZE);
+    }
+
+    private static void append(final Path file, final int firstValue, final int numberOfRecords, final int writeSize)
+            throws IOException {
+        final ByteBuffer records = ByteBuffer.allocate(RECORD_SIZE * numberOfRecords);
+        for (int i = 0; i < numberOfRecords; i++) {
+            records.putInt(0).putInt(firstValue + i);
+        }
+        records.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            while (records.hasRemaining()) {
+                records.limit(Math.min(records.capacity(), records.position() + writeSize));
+                while (records.hasRemaining()) {
+                    channel.write(records);
+                }
+                records.limit(records.capacity());
+            }
+        }
+    }
+
+    // preallocates the segment with zeros and writes the records one by one, the id after the value
+    private static void write(final Path file, final int size, final int firstValue, final int numberOfRecords)
+            throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(size), 0);
+            for (int i = 0; i < numberOfRecords; i++) {
+                channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, firstValue + i), RECORD_SIZE * i + 4);
+                channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 1), RECORD_SIZE * i);
+                if (i % 100 == 0) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+    }
+
+    private static void awaitProcessed(final OrderCheckingExecutor executor, final int processed)
+            throws InterruptedException {
+        while (executor.processed < processed) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void delete(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    // checks that the records come in the order they have been written
+    private static class OrderCheckingExecutor extends DefaultExecutor<TestEntry, TractorListener> {
+        private int nextValue; // accessed by the worker only
+
+        private volatile int processed;
+        private volatile int errors;
+
+        OrderCheckingExecutor() {
+            super("tailer");
+        }
+
+        @Override
+        public void processEntry(final TestEntry entry) {
+            if (entry.value() != nextValue++) {
+                errors++;
+            }
+            processed++;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketPrecision() {
+        long previousIndex = -1;
+        for (long value = 0; value < 10_000_000; value += 1 + value / 1000) {
+            final int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(index >= previousIndex);
+            previousIndex = index;
+
+            final long highest = LatencyHistogram.highestEquivalentValue(index);
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 64, "value=" + value + ", highest=" + highest);
+        }
+    }
+
+    @Test
+    public void testPercentilesAndIntervals() {
+        final LatencyHistogram recorded = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            recorded.record(i * 100L);
+        }
+
+        final LatencyHistogram previous = new LatencyHistogram();
+        previous.copyFrom(recorded);
+
+        assertEquals(10_000, previous.totalCount());
+        assertEquals(1_000_000, previous.maxValue());
+        assertEquals(500_000, previous.valueAtPercentile(50), 500_000 / 64);
+        assertEquals(990_000, previous.valueAtPercentile(99), 990_000 / 64);
+        assertEquals(1_000_000, previous.valueAtPercentile(99.99), 1_000_000 / 64);
+
+        recorded.record(42);
+        recorded.record(43);
+
+        final LatencyHistogram interval = new LatencyHistogram();
+        interval.copyFrom(recorded);
+        interval.subtract(previous);
+
+        assertEquals(2, interval.totalCount());
+        assertEquals(42, interval.valueAtPercentile(50));
+        assertEquals(43, interval.valueAtPercentile(100));
+    }
+}
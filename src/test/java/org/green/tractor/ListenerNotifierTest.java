@@ -0,0 +1,164 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ListenerNotifierTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 1_000;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    @Test
+    public void testNotificationsOrder() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final RecordingListener listener = new RecordingListener(0);
+
+            final ListenerNotifier notifier = new ListenerNotifier("test", 16, 2, false,
+                    new JulLoggingErrorHandler(ListenerNotifierTest.class));
+
+            try (TestTractor tractor = new TestTractor(
+                    new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS),
+                    new TestExecutorListenerAdapter(),
+                    notifier)) {
+
+                tractor.addListener(listener).sync();
+                tractor.start().sync();
+                tractor.stop().sync();
+                tractor.removeListener(listener).sync();
+            }
+
+            notifier.close();
+
+            assertEquals(Arrays.asList("add", "start", "stop", "remove"), listener.events());
+            for (final String threadName : listener.threadNames()) {
+                assertTrue(threadName.startsWith("test-notifier-"), threadName);
+            }
+            assertEquals(0, notifier.dropped());
+        });
+    }
+
+    @Test
+    public void testSlowListenerDoesNotStallWorker() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final long listenerSleepMillis = 200;
+            final int numberOfStarts = 20;
+
+            final RecordingListener listener = new RecordingListener(listenerSleepMillis);
+
+            final ListenerNotifier notifier = new ListenerNotifier("test", 4, 1, true,
+                    new JulLoggingErrorHandler(ListenerNotifierTest.class));
+
+            try (TestTractor tractor = new TestTractor(
+                    new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS),
+                    new TestExecutorListenerAdapter(),
+                    notifier)) {
+
+                tractor.addListener(listener).sync();
+
+                final long startTime = System.nanoTime();
+                for (int i = 0; i < numberOfStarts; i++) {
+                    tractor.start().sync();
+                }
+                final long duration = System.nanoTime() - startTime;
+
+                assertTrue(duration < TimeUnit.MILLISECONDS.toNanos(listenerSleepMillis * numberOfStarts / 2),
+                        "The worker waited for the listener: " + duration + " ns");
+            }
+
+            notifier.close();
+
+            assertTrue(notifier.dropped() > 0);
+            assertEquals(numberOfStarts - notifier.dropped() + 1, listener.events().size());
+        });
+    }
+
+    private static class RecordingListener implements TestTractorListener {
+        private final long sleepMillis;
+        private final List<String> events = new ArrayList<>();
+        private final List<String> threadNames = new ArrayList<>();
+
+        RecordingListener(final long sleepMillis) {
+            this.sleepMillis = sleepMillis;
+        }
+
+        synchronized List<String> events() {
+            return new ArrayList<>(events);
+        }
+
+        synchronized List<String> threadNames() {
+            return new ArrayList<>(threadNames);
+        }
+
+        private synchronized void record(final String event) {
+            events.add(event);
+            threadNames.add(Thread.currentThread().getName());
+        }
+
+        @Override
+        public void onAddProcessListener(final TestExecutor executor, final ListenerResult result) {
+            record("add");
+        }
+
+        @Override
+        public void onRemoveProcessListener(final TestExecutor executor, final ListenerResult result) {
+            record("remove");
+        }
+
+        @Override
+        public void onStart(final TestExecutor executor, final VoidResult result) {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (final InterruptedException ignore) {
+            }
+            record("start");
+        }
+
+        @Override
+        public void onStop(final TestExecutor executor, final VoidResult result) {
+            record("stop");
+        }
+
+        @Override
+        public void onTestCommandA(final TestExecutor executor, final TestResult result) {
+        }
+
+        @Override
+        public void onTestCommandB(final TestExecutor executor, final TestResult result) {
+        }
+    }
+}
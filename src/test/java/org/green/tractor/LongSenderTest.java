@@ -0,0 +1,128 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+public class LongSenderTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 16;
+    private static final int LANE_CAPACITY = 64;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    @Test
+    public void testValuesOfEachChannelAreProcessedInOrder() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfChannels = 2;
+            final int valuesPerChannel = 1_000_000;
+
+            final OrderCheckingExecutor executor = new OrderCheckingExecutor(numberOfChannels);
+
+            try (DefaultTractor<TestEntry, OrderCheckingExecutor, TractorListener<TestEntry, OrderCheckingExecutor>>
+                         tractor = newTractor(executor, LANE_CAPACITY)) {
+
+                final Thread[] senders = new Thread[numberOfChannels];
+                for (int c = 0; c < numberOfChannels; c++) {
+                    final int channel = c;
+                    senders[c] = new Thread(() -> {
+                        try {
+                            final LongSender sender = tractor.newLongSender(channel);
+                            for (long i = 0; i < valuesPerChannel; i++) {
+                                sender.send(i);
+                                if (i % 100_000 == 0) {
+                                    Thread.sleep(1); // the worker waits for the values in between
+                                }
+                            }
+                        } catch (final Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                    senders[c].start();
+                }
+                for (int c = 0; c < numberOfChannels; c++) {
+                    senders[c].join();
+                }
+
+                assertNull(tractor.runOnWorker(() -> { }).sync().error()); // the worker has seen the lanes by now
+                while (executor.processed < numberOfChannels * valuesPerChannel) {
+                    Thread.sleep(1);
+                }
+                assertEquals(0, executor.errors);
+            }
+        });
+    }
+
+    @Test
+    public void testLongSenderRequiresLanes() throws Exception {
+        try (DefaultTractor<TestEntry, OrderCheckingExecutor, TractorListener<TestEntry, OrderCheckingExecutor>>
+                     tractor = newTractor(new OrderCheckingExecutor(1), 0)) {
+            tractor.newLongSender(0);
+        } catch (final IllegalStateException e) {
+            return;
+        }
+        throw new AssertionError("IllegalStateException expected");
+    }
+
+    private static DefaultTractor<TestEntry, OrderCheckingExecutor,
+            TractorListener<TestEntry, OrderCheckingExecutor>> newTractor(
+            final OrderCheckingExecutor executor,
+            final int laneCapacity) {
+        return new DefaultTractor<>(
+                new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS), executor, laneCapacity);
+    }
+
+    // checks that the values of each channel come in the order they have been sent
+    private static class OrderCheckingExecutor extends DefaultExecutor<TestEntry, TractorListener>
+            implements LongExecutor {
+        private final long[] nextValues;
+
+        private volatile int processed;
+        private volatile int errors;
+
+        OrderCheckingExecutor(final int numberOfChannels) {
+            super("longs");
+            nextValues = new long[numberOfChannels];
+        }
+
+        @Override
+        public void processEntry(final TestEntry entry) {
+        }
+
+        @Override
+        public void processLong(final int channel, final long value) {
+            if (value != nextValues[channel]++) {
+                errors++;
+            }
+            processed++;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,121 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MbsrGrowingObjectPoolTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    @Test
+    public void testGrowAndBatchedRelease() {
+        final MbsrGrowingObjectPool<TestEntry> pool =
+                MbsrGrowingObjectPool.constructorBasedPool(TestEntry.class, 2, 2);
+
+        final TestEntry a = pool.borrow();
+        final TestEntry b = pool.borrow();
+        assertTrue(a != b);
+
+        pool.grow(1);
+        assertEquals(3, pool.size());
+
+        final TestEntry c = pool.borrow();
+        assertSame(pool, c.owner());
+
+        pool.release(a); // the batch isn't full yet, so, the object is still unavailable
+        pool.release(b); // the batch is full and published now
+
+        final IdentityHashMap<TestEntry, Boolean> borrowed = new IdentityHashMap<>();
+        borrowed.put(pool.borrow(), Boolean.TRUE);
+        borrowed.put(pool.borrow(), Boolean.TRUE);
+        assertTrue(borrowed.containsKey(a));
+        assertTrue(borrowed.containsKey(b));
+
+        pool.release(c);
+        pool.flush();
+        assertSame(c, pool.borrow());
+    }
+
+    @Test
+    public void testNoObjectIsBorrowedTwice() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int borrowers = 3;
+            final int iterations = 300_000;
+
+            final MbsrGrowingObjectPool<TestEntry> pool =
+                    MbsrGrowingObjectPool.constructorBasedPool(TestEntry.class, 16, 4);
+            pool.grow(borrowers);
+
+            final BlockingQueue<TestEntry> inUse = new ArrayBlockingQueue<>(pool.size());
+            final AtomicReference<String> error = new AtomicReference<>();
+
+            final Thread[] threads = new Thread[borrowers];
+            for (int i = 0; i < borrowers; i++) {
+                final int id = i;
+                threads[i] = new Thread(() -> {
+                    try {
+                        for (int j = 0; j < iterations; j++) {
+                            final TestEntry entry = pool.borrow();
+                            if (entry.id() != 0) {
+                                error.compareAndSet(null, "Borrowed twice: " + entry);
+                            }
+                            entry.set(id + 1, j);
+                            inUse.put(entry);
+                        }
+                    } catch (final InterruptedException e) {
+                        error.compareAndSet(null, e.toString());
+                    }
+                });
+                threads[i].start();
+            }
+
+            for (int i = 0; i < borrowers * iterations; i++) {
+                final TestEntry entry = inUse.take();
+                entry.set(0, 0);
+                pool.release(entry);
+                if (inUse.isEmpty()) {
+                    pool.flush();
+                }
+            }
+
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+
+            assertNull(error.get());
+        });
+    }
+}
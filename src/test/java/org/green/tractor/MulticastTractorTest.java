@@ -0,0 +1,206 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+public class MulticastTractorTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAPACITY = 1024;
+
+    @Test
+    public void testAllWorkersSeeAllEntriesInDependencyOrder() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfSenders = 2;
+            final int entriesPerSender = 100_000;
+            final long numberOfEntries = (long) numberOfSenders * entriesPerSender;
+
+            final SummingExecutor journal = new SummingExecutor("journal");
+            final SummingExecutor replication = new SummingExecutor("replication");
+            final SummingExecutor logic = new SummingExecutor("logic", journal, replication);
+
+            try (MulticastTractor<TestEntry> tractor = MulticastTractor.<TestEntry>builder(CAPACITY, TestEntryA::new)
+                    .consumer(journal)
+                    .consumer(replication)
+                    .consumer(logic, journal, replication)
+                    .build()) {
+
+                final Thread[] senders = new Thread[numberOfSenders];
+                for (int i = 0; i < numberOfSenders; i++) {
+                    final int id = i;
+                    senders[i] = new Thread(() -> {
+                        final EntrySender<TestEntry> sender = tractor.newEntrySender();
+                        try {
+                            for (int j = 0; j < entriesPerSender; j++) {
+                                final EntryEnvelope<TestEntry> envelope = sender.nextEnvelope();
+                                envelope.entry().set(id, j);
+                                envelope.send();
+                            }
+                        } catch (final TractorClosedException | InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    senders[i].start();
+                }
+                for (int i = 0; i < numberOfSenders; i++) {
+                    senders[i].join();
+                }
+
+                while (tractor.processed(logic) < numberOfEntries) {
+                    Thread.sleep(1);
+                }
+
+                assertEquals(numberOfEntries, tractor.processed(journal));
+                assertEquals(numberOfEntries, tractor.processed(replication));
+            }
+
+            final long expectedSum = numberOfSenders * ((long) entriesPerSender * (entriesPerSender - 1) / 2);
+            assertEquals(expectedSum, journal.sum);
+            assertEquals(expectedSum, replication.sum);
+            assertEquals(expectedSum, logic.sum);
+            assertEquals(0, logic.violations);
+        });
+    }
+
+    @Test
+    public void testClosingProcessesEntriesSentBefore() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final SummingExecutor journal = new SlowSummingExecutor("journal");
+            final SummingExecutor logic = new SummingExecutor("logic", journal);
+
+            try (MulticastTractor<TestEntry> tractor = MulticastTractor.<TestEntry>builder(CAPACITY, TestEntryA::new)
+                    .consumer(journal)
+                    .consumer(logic, journal)
+                    .build()) {
+
+                final EntrySender<TestEntry> sender = tractor.newEntrySender();
+                for (int i = 0; i < CAPACITY; i++) { // the ring isn't overflown, so, nothing waits
+                    final EntryEnvelope<TestEntry> envelope = sender.nextEnvelope();
+                    envelope.entry().set(0, i);
+                    envelope.send();
+                }
+            } // closed, while the journal is still far behind
+
+            final long expectedSum = (long) CAPACITY * (CAPACITY - 1) / 2;
+            assertEquals(CAPACITY, journal.count);
+            assertEquals(CAPACITY, logic.count);
+            assertEquals(expectedSum, journal.sum);
+            assertEquals(expectedSum, logic.sum);
+            assertEquals(0, logic.violations);
+        });
+    }
+
+    @Test
+    public void testClosedSenderSkipsClaimedEntry() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final SummingExecutor journal = new SummingExecutor("journal");
+
+            try (MulticastTractor<TestEntry> tractor = MulticastTractor.<TestEntry>builder(CAPACITY, TestEntryA::new)
+                    .consumer(journal)
+                    .build()) {
+
+                final EntrySender<TestEntry> abandoning = tractor.newEntrySender();
+                abandoning.nextEnvelope().entry().set(0, 1_000); // claimed, but never sent
+
+                final Thread sending = new Thread(() -> {
+                    final EntrySender<TestEntry> sender = tractor.newEntrySender();
+                    try {
+                        final EntryEnvelope<TestEntry> envelope = sender.nextEnvelope();
+                        envelope.entry().set(1, 5);
+                        envelope.send(); // behind the claimed slot, which the worker cannot pass
+                    } catch (final TractorClosedException | InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                sending.start();
+                sending.join();
+
+                abandoning.close();
+
+                while (tractor.processed(journal) < 2) {
+                    Thread.sleep(1);
+                }
+            }
+
+            assertEquals(1, journal.count);
+            assertEquals(5, journal.sum);
+        });
+    }
+
+    // lags behind the other workers
+    private static class SlowSummingExecutor extends SummingExecutor {
+        SlowSummingExecutor(final String name, final SummingExecutor... dependencies) {
+            super(name, dependencies);
+        }
+
+        @Override
+        public void processEntry(final TestEntry entry) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+            super.processEntry(entry);
+        }
+    }
+
+    private static class SummingExecutor implements Executor<TestEntry> {
+        private final String name;
+        private final SummingExecutor[] dependencies;
+
+        private volatile long count;
+        private volatile long sum;
+        private volatile long violations;
+
+        SummingExecutor(final String name, final SummingExecutor... dependencies) {
+            this.name = name;
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public void processEntry(final TestEntry entry) {
+            for (int i = 0; i < dependencies.length; i++) {
+                if (dependencies[i].count <= count) { // the dependency hasn't processed the entry yet
+                    violations++;
+                }
+            }
+            sum += entry.value();
+            count++;
+        }
+
+        @Override
+        public void executeCommand(final Command command) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
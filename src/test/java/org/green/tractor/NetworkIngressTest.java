@@ -0,0 +1,250 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+public class NetworkIngressTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 16;
+    private static final int LANE_CAPACITY = 64;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    private static final int FRAME_SIZE = 8;
+
+    // a frame is the id and the value of the entry
+    private static final FrameDecoder<TestEntryA> DECODER = (source, into) -> {
+        if (source.remaining() < FRAME_SIZE) {
+            return false;
+        }
+        into.set(source.getInt(), source.getInt());
+        return true;
+    };
+
+    @Test
+    public void testFramesSplitBetweenTcpSegmentsAreDecoded() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfConnections = 2;
+            final int framesPerConnection = 100_000;
+
+            final OrderCheckingExecutor executor = new OrderCheckingExecutor(numberOfConnections);
+
+            try (DefaultTractor<TestEntry, OrderCheckingExecutor, TractorListener<TestEntry, OrderCheckingExecutor>>
+                         tractor = newTractor(executor, LANE_CAPACITY);
+                 NetworkIngress<TestEntryA> ingress = NetworkIngress.builder(tractor, TestEntryA.class, DECODER)
+                         .tcp(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                         .bufferSize(1024)
+                         .build()) {
+
+                final Thread[] clients = new Thread[numberOfConnections];
+                for (int c = 0; c < numberOfConnections; c++) {
+                    final int id = c;
+                    clients[c] = new Thread(() -> {
+                        try (SocketChannel connection = SocketChannel.open(ingress.tcpAddress())) {
+                            final ByteBuffer frames = ByteBuffer.allocate(FRAME_SIZE * framesPerConnection);
+                            for (int i = 0; i < framesPerConnection; i++) {
+                                frames.putInt(id).putInt(i);
+                            }
+                            frames.flip();
+                            while (frames.hasRemaining()) { // the writes split the frames
+                                final int chunk = ThreadLocalRandom.current().nextInt(1, 4 * FRAME_SIZE);
+                                frames.limit(Math.min(frames.capacity(), frames.position() + chunk));
+                                while (frames.hasRemaining()) {
+                                    connection.write(frames);
+                                }
+                                frames.limit(frames.capacity());
+                            }
+                        } catch (final Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                    clients[c].start();
+                }
+                for (int c = 0; c < numberOfConnections; c++) {
+                    clients[c].join();
+                }
+
+                while (executor.processed < numberOfConnections * framesPerConnection) {
+                    Thread.sleep(1);
+                }
+
+                assertEquals(numberOfConnections, ingress.connectionsAccepted());
+                assertEquals(numberOfConnections * framesPerConnection, ingress.framesReceived());
+                assertEquals(0, ingress.frameErrors());
+                assertEquals(0, executor.errors);
+            }
+        });
+    }
+
+    @Test
+    public void testFramesOfDatagramsAreDecoded() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfDatagrams = 100;
+            final int framesPerDatagram = 10;
+
+            final OrderCheckingExecutor executor = new OrderCheckingExecutor(1);
+
+            try (DefaultTractor<TestEntry, OrderCheckingExecutor, TractorListener<TestEntry, OrderCheckingExecutor>>
+                         tractor = newTractor(executor, 0);
+                 NetworkIngress<TestEntryA> ingress = NetworkIngress.builder(tractor, TestEntryA.class, DECODER)
+                         .udp(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                         .build();
+                 DatagramChannel client = DatagramChannel.open()) {
+
+                final ByteBuffer datagram = ByteBuffer.allocate(FRAME_SIZE * framesPerDatagram + 3);
+                int value = 0;
+                for (int d = 0; d < numberOfDatagrams; d++) {
+                    datagram.clear();
+                    for (int i = 0; i < framesPerDatagram; i++) {
+                        datagram.putInt(0).putInt(value++);
+                    }
+                    if (d == numberOfDatagrams - 1) {
+                        datagram.put((byte) 1).put((byte) 2).put((byte) 3); // an incomplete frame
+                    }
+                    datagram.flip();
+                    client.send(datagram, ingress.udpAddress());
+                    Thread.sleep(1); // the socket's buffer isn't overflown
+                }
+
+                while (executor.processed < numberOfDatagrams * framesPerDatagram) {
+                    Thread.sleep(1);
+                }
+
+                assertEquals(numberOfDatagrams * framesPerDatagram, ingress.framesReceived());
+                assertEquals(1, ingress.frameErrors());
+                assertEquals(0, executor.errors);
+            }
+        });
+    }
+
+    @Test
+    public void testFailedAcceptDoesNotStopReceiving() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfConnections = 2;
+            final int framesPerConnection = 1_000;
+
+            final OrderCheckingExecutor executor = new OrderCheckingExecutor(numberOfConnections);
+            final AtomicInteger errors = new AtomicInteger();
+            final AtomicInteger accepted = new AtomicInteger();
+            final AtomicBoolean failed = new AtomicBoolean();
+
+            try (DefaultTractor<TestEntry, OrderCheckingExecutor, TractorListener<TestEntry, OrderCheckingExecutor>>
+                         tractor = newTractor(executor, LANE_CAPACITY);
+                 NetworkIngress<TestEntryA> ingress = NetworkIngress.builder(tractor, TestEntryA.class, DECODER)
+                         .tcp(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                         .errorHandler((in, message, t) -> errors.incrementAndGet())
+                         .acceptor(tcp -> {
+                             if (accepted.get() == 1 && failed.compareAndSet(false, true)) {
+                                 throw new IOException("Too many open files"); // the second connection waits
+                             }
+                             final SocketChannel connection = tcp.accept();
+                             if (connection != null) {
+                                 accepted.incrementAndGet();
+                             }
+                             return connection;
+                         })
+                         .build()) {
+
+                try (SocketChannel first = SocketChannel.open(ingress.tcpAddress())) {
+                    while (ingress.connectionsAccepted() < 1) {
+                        Thread.sleep(1);
+                    }
+                    try (SocketChannel second = SocketChannel.open(ingress.tcpAddress())) {
+                        while (errors.get() < 1) {
+                            Thread.sleep(1);
+                        }
+                        send(first, 0, framesPerConnection); // the accepted connection is still read
+                        send(second, 1, framesPerConnection); // accepted after the pause
+
+                        while (executor.processed < numberOfConnections * framesPerConnection) {
+                            Thread.sleep(1);
+                        }
+                    }
+                }
+
+                assertEquals(numberOfConnections, ingress.connectionsAccepted());
+                assertEquals(1, errors.get());
+                assertEquals(0, executor.errors);
+            }
+        });
+    }
+
+    private static void send(final SocketChannel connection, final int id, final int numberOfFrames)
+            throws IOException {
+        final ByteBuffer frames = ByteBuffer.allocate(FRAME_SIZE * numberOfFrames);
+        for (int i = 0; i < numberOfFrames; i++) {
+            frames.putInt(id).putInt(i);
+        }
+        frames.flip();
+        while (frames.hasRemaining()) {
+            connection.write(frames);
+        }
+    }
+
+    private static DefaultTractor<TestEntry, OrderCheckingExecutor,
+            TractorListener<TestEntry, OrderCheckingExecutor>> newTractor(
+            final OrderCheckingExecutor executor,
+            final int laneCapacity) {
+        return new DefaultTractor<>(
+                new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS), executor, laneCapacity);
+    }
+
+    // checks that the frames of each connection come in the order they have been sent
+    private static class OrderCheckingExecutor extends DefaultExecutor<TestEntry, TractorListener> {
+        private final int[] nextValues;
+
+        private volatile int processed;
+        private volatile int errors;
+
+        OrderCheckingExecutor(final int numberOfConnections) {
+            super("ingress");
+            nextValues = new int[numberOfConnections];
+        }
+
+        @Override
+        public void processEntry(final TestEntry entry) {
+            if (entry.value() != nextValues[entry.id()]++) {
+                errors++;
+            }
+            processed++;
+        }
+    }
+}
\ No newline at end of file
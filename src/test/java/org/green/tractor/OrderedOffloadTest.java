@@ -0,0 +1,124 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+public class OrderedOffloadTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 1_000;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    @Test
+    public void testTasksAreCompletedInOrder() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfEntries = 100_000;
+
+            final OffloadingExecutor executor = new OffloadingExecutor(numberOfEntries);
+
+            try (DefaultTractor<TestEntry, OffloadingExecutor, TractorListener<TestEntry, OffloadingExecutor>> tractor =
+                         new DefaultTractor<>(
+                                 new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS),
+                                 executor)) {
+
+                executor.offload.wakeUpBy(tractor);
+
+                final EntrySender<TestEntryA> sender = tractor.newEntrySender(TestEntryA.class);
+                for (int i = 0; i < numberOfEntries; i++) {
+                    final EntryEnvelope<TestEntryA> envelope = sender.nextEnvelope();
+                    envelope.entry().set(0, i);
+                    envelope.send();
+                }
+
+                executor.done.await(); // the last tasks are completed by the wake ups
+
+                assertEquals(0, executor.offload.pending());
+            } finally {
+                executor.offload.close();
+            }
+
+            assertEquals(numberOfEntries, executor.nextValue);
+            assertEquals(0, executor.errors);
+        });
+    }
+
+    private static class Task {
+        int value;
+        long hash;
+    }
+
+    private static class OffloadingExecutor extends DefaultExecutor<TestEntry, TractorListener>
+            implements OrderedOffload.Stage<TestEntry, Task> {
+        final OrderedOffload<TestEntry, Task> offload;
+        final CountDownLatch done;
+
+        int nextValue; // the state is accessed by the worker only
+        int errors;
+
+        OffloadingExecutor(final int numberOfEntries) {
+            super("Offloading executor");
+            offload = new OrderedOffload<>("test", 64, 4, Task::new, this,
+                    new JulLoggingErrorHandler(OrderedOffloadTest.class));
+            done = new CountDownLatch(numberOfEntries);
+        }
+
+        @Override
+        public void processEntry(final TestEntry entry) {
+            offload.submit(entry);
+        }
+
+        @Override
+        public void prepare(final TestEntry entry, final Task task) {
+            task.value = entry.value();
+            task.hash = 0;
+        }
+
+        @Override
+        public void compute(final Task task) {
+            long hash = task.value;
+            for (int i = 0; i < 1 + task.value % 100; i++) { // different duration of the tasks
+                hash = hash * 31 + i;
+            }
+            task.hash = hash;
+        }
+
+        @Override
+        public void complete(final Task task) {
+            if (task.value != nextValue || task.hash == 0 && task.value != 0) {
+                errors++;
+            }
+            nextValue++;
+            done.countDown();
+        }
+    }
+}
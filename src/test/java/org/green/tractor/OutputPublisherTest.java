@@ -0,0 +1,180 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OutputPublisherTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 16;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    private static final int RING_CAPACITY = 64;
+    private static final long IDLE_PARK_NANOS = 1_000;
+
+    @Test
+    public void testEachSubscriberGetsAllOutputsInOrder() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfEntries = 100_000;
+
+            final OutputPublisher<Fill> fills = new OutputPublisher<>("fills", RING_CAPACITY, Fill::new, false,
+                    new JulLoggingErrorHandler(OutputPublisherTest.class));
+
+            final OrderCheckingSubscriber fast = new OrderCheckingSubscriber();
+            final OrderCheckingSubscriber slow = new OrderCheckingSubscriber() {
+                @Override
+                public void onOutput(final Fill output, final long sequence, final boolean endOfBatch) {
+                    super.onOutput(output, sequence, endOfBatch);
+                    if (sequence % 1_000 == 0) {
+                        Thread.yield();
+                    }
+                }
+            };
+            fills.subscribe(fast, IDLE_PARK_NANOS);
+            fills.subscribe(slow, IDLE_PARK_NANOS);
+
+            try (DefaultTractor<TestEntry, FillingExecutor, TractorListener<TestEntry, FillingExecutor>> tractor =
+                         new DefaultTractor<>(
+                                 new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS),
+                                 new FillingExecutor(fills))) {
+
+                final EntrySender<TestEntryA> sender = tractor.newEntrySender(TestEntryA.class);
+                for (int i = 0; i < numberOfEntries; i++) {
+                    final EntryEnvelope<TestEntryA> envelope = sender.nextEnvelope();
+                    envelope.entry().set(1, i);
+                    envelope.send();
+                }
+
+                while (fills.published() < numberOfEntries) {
+                    Thread.sleep(1);
+                }
+            }
+
+            fills.close(); // delivers the rest
+
+            assertEquals(0, fills.dropped());
+            assertEquals(numberOfEntries, fast.received);
+            assertEquals(numberOfEntries, slow.received);
+            assertEquals(0, fast.errors);
+            assertEquals(0, slow.errors);
+            assertTrue(fast.lastEndedBatch);
+            assertTrue(slow.lastEndedBatch);
+        });
+    }
+
+    @Test
+    public void testOutputsAreDroppedWhenRingIsFull() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfDropped = 10;
+
+            final OutputPublisher<Fill> fills = new OutputPublisher<>("fills", RING_CAPACITY, Fill::new, true,
+                    new JulLoggingErrorHandler(OutputPublisherTest.class));
+
+            final CountDownLatch firstReceived = new CountDownLatch(1);
+            final CountDownLatch blocked = new CountDownLatch(1);
+            final OrderCheckingSubscriber subscriber = new OrderCheckingSubscriber() {
+                @Override
+                public void onOutput(final Fill output, final long sequence, final boolean endOfBatch) {
+                    super.onOutput(output, sequence, endOfBatch);
+                    if (sequence == 0) {
+                        firstReceived.countDown();
+                        try {
+                            blocked.await();
+                        } catch (final InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }
+            };
+            fills.subscribe(subscriber, IDLE_PARK_NANOS);
+
+            for (int i = 0; i < RING_CAPACITY + numberOfDropped; i++) { // this thread is the producer
+                final Fill fill = fills.claim();
+                if (fill != null) {
+                    fill.value = i;
+                    fills.publish();
+                }
+                if (i == 0) {
+                    firstReceived.await();
+                }
+            }
+
+            assertEquals(RING_CAPACITY, fills.published());
+            assertEquals(numberOfDropped, fills.dropped());
+
+            blocked.countDown();
+            fills.close();
+
+            assertEquals(RING_CAPACITY, subscriber.received);
+            assertEquals(0, subscriber.errors);
+        });
+    }
+
+    private static class Fill {
+        private int value;
+    }
+
+    private static class FillingExecutor extends DefaultExecutor<TestEntry, TractorListener> {
+        private final OutputPublisher<Fill> fills;
+
+        FillingExecutor(final OutputPublisher<Fill> fills) {
+            super("filling");
+            this.fills = fills;
+        }
+
+        @Override
+        public void processEntry(final TestEntry entry) {
+            final Fill fill = fills.claim();
+            if (fill != null) {
+                fill.value = entry.value();
+                fills.publish();
+            }
+        }
+    }
+
+    private static class OrderCheckingSubscriber implements OutputSubscriber<Fill> {
+        private volatile int received;
+        private volatile int errors;
+        private volatile boolean lastEndedBatch;
+
+        @Override
+        public void onOutput(final Fill output, final long sequence, final boolean endOfBatch) {
+            if (output.value != received || sequence != received) {
+                errors++;
+            }
+            received++;
+            lastEndedBatch = endOfBatch;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,135 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PublishedStateTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    @Test
+    public void testReadersSeeConsistentViews() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfReaders = 3;
+            final int numberOfPublications = 1_000_000;
+
+            final PublishedState<Position> state = new PublishedState<>(Position::new, Position::copy);
+
+            final Position position = new Position();
+            position.set(0);
+            state.publish(position); // version 1
+
+            final AtomicBoolean publishing = new AtomicBoolean(true);
+            final int[] errors = new int[numberOfReaders];
+            final long[] reads = new long[numberOfReaders];
+
+            final Thread[] readers = new Thread[numberOfReaders];
+            for (int r = 0; r < numberOfReaders; r++) {
+                final int reader = r;
+                readers[r] = new Thread(() -> {
+                    final Position view = new Position();
+                    long lastVersion = 0;
+                    while (publishing.get()) {
+                        final long version = state.read(view);
+                        if (version < lastVersion || !view.isConsistent() || view.quantity != version - 1) {
+                            errors[reader]++;
+                        }
+                        lastVersion = version;
+                        reads[reader]++;
+                    }
+                });
+                readers[r].start();
+            }
+
+            for (int i = 1; i <= numberOfPublications; i++) {
+                position.set(i);
+                state.publish(position);
+            }
+            publishing.set(false);
+
+            for (int r = 0; r < numberOfReaders; r++) {
+                readers[r].join();
+                assertEquals(0, errors[r]);
+                assertTrue(reads[r] > 0);
+            }
+
+            assertEquals(numberOfPublications + 1, state.version());
+
+            final Position last = new Position();
+            assertEquals(numberOfPublications + 1, state.read(last));
+            assertEquals(numberOfPublications, last.quantity);
+        });
+    }
+
+    @Test
+    public void testErrorOfConsistentCopyIsRethrown() {
+        final PublishedState<Position> state = new PublishedState<>(Position::new, (from, to) -> {
+            throw new IllegalStateException("test");
+        });
+
+        try {
+            state.read(new Position());
+        } catch (final IllegalStateException e) {
+            assertEquals("test", e.getMessage());
+            return;
+        }
+        throw new AssertionError("IllegalStateException expected");
+    }
+
+    private static class Position {
+        private long quantity;
+        private final long[] history = new long[8];
+        private long checksum;
+
+        void set(final long quantity) {
+            this.quantity = quantity;
+            for (int i = 0; i < history.length; i++) {
+                history[i] = quantity + i;
+            }
+            checksum = -quantity;
+        }
+
+        boolean isConsistent() {
+            for (int i = 0; i < history.length; i++) {
+                if (history[i] != quantity + i) {
+                    return false;
+                }
+            }
+            return checksum == -quantity;
+        }
+
+        static void copy(final Position from, final Position to) {
+            to.quantity = from.quantity;
+            System.arraycopy(from.history, 0, to.history, 0, from.history.length);
+            to.checksum = from.checksum;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,173 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.Cab;
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+public class QueryCacheTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 16;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    @Test
+    public void testQueriesAreAnsweredFromCacheUntilInvalidated() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfQueries = 10_000;
+
+            final QueryCache<BalanceQuery> cache =
+                    new QueryCache<>(BalanceQuery.class, 16, 0, TimeUnit.SECONDS, BalanceQuery::new);
+            final BalanceExecutor executor = new BalanceExecutor(cache);
+
+            try (BalanceTractor tractor = new BalanceTractor(newCab(), executor, cache)) {
+                assertNull(tractor.deposit(1, 100).sync().error());
+
+                for (int i = 0; i < numberOfQueries; i++) { // the queries kept by the caller are reused
+                    final TestResult result = tractor.balance(1).sync();
+                    assertNull(result.error());
+                    assertEquals(1, result.id());
+                    assertEquals(100, result.value());
+                }
+                assertEquals(1, executor.queriesExecuted);
+
+                assertEquals(0, tractor.balance(2).sync().value());
+                assertEquals(2, executor.queriesExecuted);
+
+                assertNull(tractor.deposit(1, 50).sync().error());
+                assertEquals(2, cache.version());
+
+                assertEquals(150, tractor.balance(1).sync().value());
+                assertEquals(150, tractor.balance(1).sync().value());
+                assertEquals(0, tractor.balance(2).sync().value());
+                assertEquals(4, executor.queriesExecuted);
+            }
+        });
+    }
+
+    @Test
+    public void testCachedResultsExpire() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final QueryCache<BalanceQuery> cache =
+                    new QueryCache<>(BalanceQuery.class, 16, 10, TimeUnit.MILLISECONDS, BalanceQuery::new);
+            final BalanceExecutor executor = new BalanceExecutor(cache);
+
+            try (BalanceTractor tractor = new BalanceTractor(newCab(), executor, cache)) {
+                assertEquals(0, tractor.balance(1).sync().value());
+                assertEquals(1, executor.queriesExecuted);
+
+                Thread.sleep(50);
+
+                assertEquals(0, tractor.balance(1).sync().value());
+                assertEquals(2, executor.queriesExecuted);
+            }
+        });
+    }
+
+    private static Cab<TestEntry, Future> newCab() {
+        return new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS);
+    }
+
+    public static class BalanceQuery extends ReadOnlyCommand<TestResult> {
+        private int account;
+
+        public BalanceQuery() {
+            super(new TestResult());
+        }
+
+        void set(final int account) {
+            this.account = account;
+        }
+
+        @Override
+        protected long coalescingKey() {
+            return account;
+        }
+
+        @Override
+        protected void copyResult(final TestResult from) {
+            result.set(from.id(), from.value());
+        }
+    }
+
+    private static class BalanceExecutor extends DefaultExecutor<TestEntry, TractorListener> {
+        private final int[] balances = new int[3]; // accessed by the worker only
+        private final QueryCache<BalanceQuery> cache;
+
+        private volatile int queriesExecuted;
+
+        BalanceExecutor(final QueryCache<BalanceQuery> cache) {
+            super("balances");
+            this.cache = cache;
+
+            registerCommandHandler(BalanceQuery.class, (query, listeners) -> {
+                query.result().set(query.account, balances[query.account]);
+                queriesExecuted++;
+            });
+        }
+
+        void deposit(final int account, final int amount) {
+            balances[account] += amount;
+            cache.invalidate();
+        }
+
+        @Override
+        public void processEntry(final TestEntry entry) {
+        }
+    }
+
+    private static class BalanceTractor
+            extends DefaultTractor<TestEntry, BalanceExecutor, TractorListener<TestEntry, BalanceExecutor>> {
+        private final BalanceExecutor executor;
+
+        BalanceTractor(
+                final Cab<TestEntry, Future> cab,
+                final BalanceExecutor executor,
+                final QueryCache<BalanceQuery> cache) {
+            super(cab, executor);
+            this.executor = executor;
+            cacheQueries(cache);
+        }
+
+        Future<TestResult> balance(final int account) throws TractorClosedException, InterruptedException {
+            final BalanceQuery query = prepareCommand(BalanceQuery.class);
+            query.set(account);
+            return executeCommand(query);
+        }
+
+        Future<VoidResult> deposit(final int account, final int amount)
+                throws TractorClosedException, InterruptedException {
+            return runOnWorker(() -> executor.deposit(account, amount));
+        }
+    }
+}
\ No newline at end of file
@@ -45,8 +45,14 @@ public class TestExecutor extends DefaultExecutor<TestEntry, TestTractorListener
     private final Listener listener;
 
     public TestExecutor(final Listener listener) {
-        super("Test executor");
+        this(listener, null);
+    }
+
+    public TestExecutor(final Listener listener, final ListenerNotifier notifier) {
+        super("Test executor", new JulLoggingErrorHandler(TestExecutor.class), notifier);
         this.listener = listener;
+
+        registerCommandHandler(TestCommandB.class, this::testCommandB); // TestCommandA goes through doCustom()
     }
 
     @Override
@@ -90,22 +96,19 @@ public class TestExecutor extends DefaultExecutor<TestEntry, TestTractorListener
             return;
         }
 
-        if (command instanceof TestCommandB) {
-            final TestCommandB testCommandB = (TestCommandB) command;
+        throw new UnsupportedOperationException("Unknown command: " + command);
+    }
 
-            listener.onTestCommandBExecuted();
+    private void testCommandB(final TestCommandB testCommandB, final List<TestTractorListener> listeners) {
+        listener.onTestCommandBExecuted();
 
-            for (int i = 0; i < listeners.size(); i++) {
-                try {
-                    listeners.get(i).onTestCommandB(this, testCommandB.result());
-                } catch (final Exception e) {
-                    errorHandler.onError(this, "An error while onTestCommandB notification: " +
-                            e.getLocalizedMessage(), e);
-                }
+        for (int i = 0; i < listeners.size(); i++) {
+            try {
+                listeners.get(i).onTestCommandB(this, testCommandB.result());
+            } catch (final Exception e) {
+                errorHandler.onError(this, "An error while onTestCommandB notification: " +
+                        e.getLocalizedMessage(), e);
             }
-            return;
         }
-
-        throw new UnsupportedOperationException("Unknown command: " + command);
     }
 }
\ No newline at end of file
@@ -25,11 +25,20 @@ package org.green.tractor;
 
 import org.green.cab.Cab;
 
+import java.util.concurrent.TimeUnit;
+
 public class TestTractor extends DefaultTractor<TestEntry, TestExecutor, TestTractorListener> {
     public TestTractor(final Cab<TestEntry, Future> cab, final TestExecutor.Listener listener) {
         super(cab, new TestExecutor(listener));
     }
 
+    public TestTractor(
+            final Cab<TestEntry, Future> cab,
+            final TestExecutor.Listener listener,
+            final ListenerNotifier notifier) {
+        super(cab, new TestExecutor(listener, notifier));
+    }
+
     public Future<TestResult> testCommandA(final int id, final int value)
             throws TractorClosedException, InterruptedException {
 
@@ -39,6 +48,16 @@ public class TestTractor extends DefaultTractor<TestEntry, TestExecutor, TestTra
         return result;
     }
 
+    public Future<TestResult> testCommandA(final int id, final int value, final long timeout, final TimeUnit unit)
+            throws TractorClosedException, InterruptedException {
+
+        final TestCommandA result = prepareCommand(TestCommandA.class);
+        result.set(id, value);
+        result.expireAfter(timeout, unit);
+        executeCommand(result);
+        return result;
+    }
+
     public Future<TestResult> testCommandB(final int id, final int value)
             throws TractorClosedException, InterruptedException {
 
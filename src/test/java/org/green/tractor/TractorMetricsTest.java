@@ -0,0 +1,143 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TractorMetricsTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 1_000;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+    private static final int LANE_CAPACITY = 64;
+
+    @Test
+    public void testCounters() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfEntries = 10_000;
+
+            try (TestTractor tractor = new TestTractor(
+                    new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS),
+                    new TestExecutorListenerAdapter())) {
+
+                final EntrySender<TestEntryA> sender = tractor.newEntrySender(TestEntryA.class);
+                for (int i = 0; i < numberOfEntries; i++) {
+                    final EntryEnvelope<TestEntryA> envelope = sender.nextEnvelope();
+                    envelope.entry().set(1, i);
+                    envelope.send();
+                }
+
+                tractor.start().sync();
+
+                while (tractor.metrics().entriesProcessed() < numberOfEntries) { // commands go before entries
+                    Thread.sleep(1);
+                }
+
+                final TractorMetrics metrics = tractor.metrics();
+                assertEquals(CAB_SIZE, metrics.ringCapacity());
+                assertEquals(numberOfEntries, metrics.entriesSent());
+                assertEquals(numberOfEntries, metrics.entriesProcessed());
+                assertEquals(0, metrics.ringOccupancy());
+                assertEquals(1, metrics.commandsExecuted());
+                assertEquals(0, metrics.entryErrors());
+                assertEquals(0, metrics.commandErrors());
+                assertTrue(metrics.entryPoolsSize() < 2 * CAB_SIZE);
+
+                final ObjectName name = TractorMetricsJmx.register(tractor);
+                try {
+                    assertEquals((long) numberOfEntries,
+                            ManagementFactory.getPlatformMBeanServer().getAttribute(name, "EntriesProcessed"));
+                } finally {
+                    TractorMetricsJmx.unregister(name);
+                }
+                assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+                try (TractorMetricsHttpExporter exporter = new TractorMetricsHttpExporter(0, tractor)) {
+                    assertTrue(exporter.format().contains(
+                            "green_tractor_entries_processed{tractor=\"Test executor\"} " + numberOfEntries + "\n"));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testWaitsForFullLaneAreCounted() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final CountDownLatch release = new CountDownLatch(1);
+            final DefaultExecutor<TestEntry, TractorListener> executor =
+                    new DefaultExecutor<TestEntry, TractorListener>("Blocking executor") {
+                        @Override
+                        public void processEntry(final TestEntry entry) {
+                            try {
+                                release.await(); // the lane is filled meanwhile
+                            } catch (final InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    };
+
+            try (DefaultTractor<TestEntry, DefaultExecutor<TestEntry, TractorListener>,
+                    TractorListener<TestEntry, DefaultExecutor<TestEntry, TractorListener>>> tractor =
+                         new DefaultTractor<>(new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS,
+                                 BACKING_OFF_MAX_YIELDS), executor, LANE_CAPACITY)) {
+
+                final Thread sender = new Thread(() -> {
+                    try (EntrySender<TestEntryA> entrySender = tractor.newEntrySender(TestEntryA.class)) {
+                        for (int i = 0; i < LANE_CAPACITY + 2; i++) {
+                            final EntryEnvelope<TestEntryA> envelope = entrySender.nextEnvelope();
+                            envelope.entry().set(1, i);
+                            envelope.send();
+                        }
+                    } catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                sender.start();
+
+                while (tractor.metrics().laneFullWaits() == 0) {
+                    Thread.sleep(1);
+                }
+                release.countDown();
+                sender.join();
+
+                while (tractor.metrics().entriesProcessed() < LANE_CAPACITY + 2) {
+                    Thread.sleep(1);
+                }
+                assertTrue(tractor.metrics().laneFullWaits() > 0);
+            }
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,155 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+public class TractorPipelineTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 16;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    @Test
+    public void testEntriesPassAllStages() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfEntries = 100_000;
+
+            final StageExecutor first = new StageExecutor("first", 0, 1, -1, 0);
+            final StageExecutor second = new StageExecutor("second", 1, 2, -1, 0);
+            final StageExecutor last = new StageExecutor("last", 2, 3, -1, numberOfEntries);
+
+            try (TractorPipeline<TestEntry> pipeline = TractorPipeline.<TestEntry>builder()
+                    .stage(newTractor(first))
+                    .stage(newTractor(second))
+                    .stage(newTractor(last))
+                    .build()) {
+
+                final EntrySender<TestEntryA> sender = pipeline.newEntrySender(TestEntryA.class);
+                for (int i = 0; i < numberOfEntries; i++) {
+                    final EntryEnvelope<TestEntryA> envelope = sender.nextEnvelope();
+                    envelope.entry().set(0, i);
+                    envelope.send();
+                }
+
+                last.done.await();
+
+                assertEquals(0, first.errors);
+                assertEquals(0, second.errors);
+                assertEquals(0, last.errors);
+
+                for (int i = 0; i < pipeline.numberOfStages(); i++) {
+                    final TractorMetrics metrics = pipeline.stage(i).metrics();
+                    assertEquals(numberOfEntries, metrics.entriesSent());
+                    assertEquals(numberOfEntries, metrics.entriesProcessed());
+                }
+                assertEquals(0, pipeline.stage(1).metrics().entryPoolsSize());
+                assertEquals(0, pipeline.stage(2).metrics().entryPoolsSize());
+            }
+        });
+    }
+
+    @Test
+    public void testStopForwarding() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfEntries = 100_000;
+
+            final StageExecutor first = new StageExecutor("first", 0, 1, 2, 0); // forwards even values only
+            final StageExecutor last = new StageExecutor("last", 1, 2, -1, numberOfEntries / 2);
+
+            try (TractorPipeline<TestEntry> pipeline = TractorPipeline.<TestEntry>builder()
+                    .stage(newTractor(first))
+                    .stage(newTractor(last))
+                    .build()) {
+
+                final EntrySender<TestEntryA> sender = pipeline.newEntrySender(TestEntryA.class);
+                for (int i = 0; i < numberOfEntries; i++) {
+                    final EntryEnvelope<TestEntryA> envelope = sender.nextEnvelope();
+                    envelope.entry().set(0, i);
+                    envelope.send();
+                }
+
+                last.done.await();
+
+                assertEquals(0, first.errors);
+                assertEquals(0, last.errors);
+                assertEquals(numberOfEntries / 2, pipeline.stage(1).metrics().entriesProcessed());
+            }
+        });
+    }
+
+    private static DefaultTractor<TestEntry, StageExecutor, TractorListener<TestEntry, StageExecutor>> newTractor(
+            final StageExecutor executor) {
+        return new DefaultTractor<>(
+                new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS), executor);
+    }
+
+    // checks that the entry has been processed by the previous stage and marks it with its own id
+    private static class StageExecutor extends DefaultExecutor<TestEntry, TractorListener> {
+        private final int expectedId;
+        private final int id;
+        private final int forwardedDivisor;
+        private final CountDownLatch done;
+
+        private int nextValue;
+        private volatile int errors;
+
+        StageExecutor(
+                final String name,
+                final int expectedId,
+                final int id,
+                final int forwardedDivisor,
+                final int expectedEntries) {
+            super(name);
+            this.expectedId = expectedId;
+            this.id = id;
+            this.forwardedDivisor = forwardedDivisor;
+            this.done = new CountDownLatch(expectedEntries);
+        }
+
+        @Override
+        public void processEntry(final TestEntry entry) {
+            if (entry.id() != expectedId || entry.value() < nextValue) {
+                errors++;
+            }
+            nextValue = entry.value() + 1;
+
+            entry.set(id, entry.value());
+
+            if (forwardedDivisor > 0 && entry.value() % forwardedDivisor != 0) {
+                entry.stopForwarding();
+            }
+
+            done.countDown();
+        }
+    }
+}
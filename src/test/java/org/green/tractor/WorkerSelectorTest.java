@@ -0,0 +1,151 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+public class WorkerSelectorTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 16;
+    private static final int LANE_CAPACITY = 64;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    @Test
+    public void testChannelsEntriesAndCommandsShareWorker() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final int numberOfEntries = 100_000;
+            final int numberOfBytes = 100_000;
+
+            final CountingExecutor executor = new CountingExecutor();
+            final Selector selector = Selector.open();
+            final Pipe pipe = Pipe.open();
+
+            try (DefaultTractor<TestEntry, CountingExecutor, TractorListener<TestEntry, CountingExecutor>> tractor =
+                         new DefaultTractor<>(
+                                 new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS),
+                                 executor,
+                                 LANE_CAPACITY,
+                                 selector)) {
+
+                pipe.source().configureBlocking(false);
+                assertNull(tractor.runOnWorker(() -> {
+                    try {
+                        tractor.register(pipe.source(), SelectionKey.OP_READ, executor::read);
+                    } catch (final Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }).sync().error());
+
+                final Thread writer = new Thread(() -> {
+                    final ByteBuffer bytes = ByteBuffer.allocate(100);
+                    try {
+                        for (int i = 0; i < numberOfBytes / bytes.capacity(); i++) {
+                            bytes.clear();
+                            while (bytes.hasRemaining()) {
+                                pipe.sink().write(bytes);
+                            }
+                            if (i % 100 == 0) {
+                                Thread.sleep(1); // the worker waits in the selector in between
+                            }
+                        }
+                    } catch (final Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                writer.start();
+
+                final EntrySender<TestEntryA> sender = tractor.newEntrySender(TestEntryA.class);
+                for (int i = 0; i < numberOfEntries; i++) {
+                    final EntryEnvelope<TestEntryA> envelope = sender.nextEnvelope();
+                    envelope.entry().set(1, i);
+                    envelope.send();
+                    if (i % 10_000 == 0) {
+                        Thread.sleep(1);
+                    }
+                }
+
+                writer.join();
+
+                while (executor.entriesProcessed < numberOfEntries || executor.bytesRead < numberOfBytes) {
+                    assertNull(tractor.runOnWorker(() -> { }).sync().error()); // the commands wake the worker up
+                }
+                assertEquals(numberOfEntries, executor.entriesProcessed);
+                assertEquals(numberOfBytes, executor.bytesRead);
+            }
+
+            assertFalse(selector.isOpen());
+            pipe.sink().close();
+            pipe.source().close();
+        });
+    }
+
+    @Test
+    public void testSelectorRequiresLanes() throws Exception {
+        try (Selector selector = Selector.open()) {
+            new DefaultTractor<>(new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS),
+                    new CountingExecutor(), 0, selector);
+        } catch (final IllegalArgumentException e) {
+            return;
+        }
+        throw new AssertionError("IllegalArgumentException expected");
+    }
+
+    private static class CountingExecutor extends DefaultExecutor<TestEntry, TractorListener> {
+        private final ByteBuffer buffer = ByteBuffer.allocate(64); // accessed by the worker only
+
+        private volatile int entriesProcessed;
+        private volatile int bytesRead;
+
+        CountingExecutor() {
+            super("selector");
+        }
+
+        @Override
+        public void processEntry(final TestEntry entry) {
+            entriesProcessed++;
+        }
+
+        void read(final SelectionKey key) throws Exception {
+            buffer.clear();
+            final int n = ((Pipe.SourceChannel) key.channel()).read(buffer);
+            if (n > 0) {
+                bytesRead += n;
+            }
+        }
+    }
+}
\ No newline at end of file
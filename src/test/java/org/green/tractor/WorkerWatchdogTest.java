@@ -0,0 +1,131 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2019 Anatoly Gudkov
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE  LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.green.tractor;
+
+import org.green.cab.CabBackingOff;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// needs the org.green.tractor.watchdog system property set to true, see the watchdogTest task in build.gradle
+public class WorkerWatchdogTest {
+    private static final int TEST_TIMEOUT = 20;
+
+    private static final int CAB_SIZE = 16;
+    private static final int BACKING_OFF_MAX_SPINS = 1_000;
+    private static final int BACKING_OFF_MAX_YIELDS = 10_000;
+
+    private static final long STALL_THRESHOLD_MILLIS = 50;
+    private static final long SLOW_COMMAND_MILLIS = 500;
+
+    @Test
+    public void testSlowCommandIsReportedOnce() throws Exception {
+        assertTimeout(ofSeconds(TEST_TIMEOUT), () -> {
+            final List<String> messages = new ArrayList<>();
+            final List<Throwable> errors = new ArrayList<>();
+            final ErrorHandler errorHandler = (in, message, t) -> {
+                synchronized (messages) {
+                    messages.add(message);
+                    errors.add(t);
+                }
+            };
+
+            try (TestTractor tractor = new TestTractor(newCab(), new SlowCommandAListener());
+                 WorkerWatchdog watchdog = new WorkerWatchdog(
+                         STALL_THRESHOLD_MILLIS, TimeUnit.MILLISECONDS, 4, errorHandler, tractor)) {
+
+                assertNull(tractor.testCommandB(1, 1).sync().error()); // fast
+                assertNull(tractor.testCommandA(2, 2).sync().error()); // slow
+
+                assertEquals(1, watchdog.numberOfStalls());
+
+                final WorkerStall[] stalls = new WorkerStall[4];
+                assertEquals(1, watchdog.recentStalls(stalls));
+                assertEquals(TestCommandA.class, stalls[0].itemClass());
+                assertTrue(stalls[0].isCommand());
+                assertTrue(stalls[0].duration() >= TimeUnit.MILLISECONDS.toNanos(STALL_THRESHOLD_MILLIS));
+                assertTrue(hasFrame(stalls[0].stackTrace(), "onTestCommandAExecuted"));
+
+                synchronized (messages) {
+                    assertEquals(1, messages.size());
+                    assertTrue(messages.get(0).contains(TestCommandA.class.getName()), messages.get(0));
+                    assertTrue(errors.get(0) instanceof WorkerStallException);
+                    assertTrue(hasFrame(errors.get(0).getStackTrace(), "onTestCommandAExecuted"));
+                }
+            }
+        });
+    }
+
+    private static boolean hasFrame(final StackTraceElement[] stackTrace, final String method) {
+        for (final StackTraceElement element : stackTrace) {
+            if (method.equals(element.getMethodName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static CabBackingOff<TestEntry, Future> newCab() {
+        return new CabBackingOff<>(CAB_SIZE, BACKING_OFF_MAX_SPINS, BACKING_OFF_MAX_YIELDS);
+    }
+
+    private static class SlowCommandAListener implements TestExecutor.Listener {
+        @Override
+        public void onTestEntryAProcessed() {
+        }
+
+        @Override
+        public void onTestEntryBProcessed() {
+        }
+
+        @Override
+        public void onStartExecuted() {
+        }
+
+        @Override
+        public void onStopExecuted() {
+        }
+
+        @Override
+        public void onTestCommandAExecuted() {
+            try {
+                Thread.sleep(SLOW_COMMAND_MILLIS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onTestCommandBExecuted() {
+        }
+    }
+}
\ No newline at end of file